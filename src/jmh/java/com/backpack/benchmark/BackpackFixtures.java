@@ -0,0 +1,213 @@
+package com.backpack.benchmark;
+
+import com.backpack.inventory.backpack.InventoryBackpackFunction;
+import com.backpack.item.ItemModBackpack;
+import com.backpack.register.RegisterItem;
+import com.mojang.authlib.GameProfile;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.enchantment.Enchantment;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.init.Blocks;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.init.Items;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.nbt.NBTTagString;
+import net.minecraft.profiler.Profiler;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.GameType;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldProviderSurface;
+import net.minecraft.world.WorldSettings;
+import net.minecraft.world.WorldType;
+import net.minecraft.world.chunk.IChunkProvider;
+import net.minecraft.world.storage.WorldInfo;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * 基准测试使用的合成背包。
+ * 在不启动游戏的情况下初始化原版注册表，并按指定内容生成背包和玩家。
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public final class BackpackFixtures {
+
+    // 可堆叠物品，依次填入背包
+    private static final Item[] STACKABLE_ITEMS;
+
+    static {
+        // 物品堆需要原版注册表，必须在访问任何物品之前初始化
+        Bootstrap.register();
+        STACKABLE_ITEMS = new Item[]{
+                Item.getItemFromBlock(Blocks.COBBLESTONE), Item.getItemFromBlock(Blocks.DIRT),
+                Item.getItemFromBlock(Blocks.PLANKS), Item.getItemFromBlock(Blocks.SAND),
+                Items.IRON_INGOT, Items.GOLD_INGOT, Items.DIAMOND, Items.REDSTONE,
+                Items.COAL, Items.STRING, Items.BONE, Items.ARROW,
+                Items.WHEAT, Items.BREAD, Items.ENDER_PEARL, Items.PAPER
+        };
+    }
+
+    /**
+     * 背包内容的种类。
+     */
+    public enum Contents {
+        // 空背包
+        EMPTY,
+        // 每个槽位都是满的可堆叠物品
+        FULL,
+        // 每个槽位都是带大量附魔和显示名称的物品
+        HEAVY_NBT,
+        // 物品槽位为空，每个槽位都设置了记忆物品
+        TEMPLATES,
+        // 随机排列的未堆满物品，每 8 个槽位中有一个把当前物品设为记忆物品
+        SCATTERED
+    }
+
+    private BackpackFixtures() {
+    }
+
+    /**
+     * 用于合并测试的物品，模板背包中有一部分槽位记忆的就是这种物品。
+     *
+     * @return 一组圆石
+     */
+    public static ItemStack insertedStack() {
+        return new ItemStack(Blocks.COBBLESTONE, 64);
+    }
+
+    /**
+     * 创建指定内容的背包库存，内容同时写回背包物品堆。
+     *
+     * @param contents 背包内容
+     * @param size     槽位数量
+     * @return 背包库存
+     */
+    public static InventoryBackpackFunction create(Contents contents, int size) {
+        InventoryBackpackFunction inventory = new InventoryBackpackFunction(createBackpackStack(size, null), size);
+        // 固定种子，每次运行的内容相同
+        Random random = new Random(size);
+        for (int i = 0; i < size; i++) {
+            switch (contents) {
+                case FULL:
+                    Item item = STACKABLE_ITEMS[i % STACKABLE_ITEMS.length];
+                    inventory.setInventorySlotContents(i, new ItemStack(item, item.getItemStackLimit()));
+                    break;
+                case HEAVY_NBT:
+                    inventory.setInventorySlotContents(i, heavyStack(i));
+                    break;
+                case TEMPLATES:
+                    inventory.setMemoryItem(i, new ItemStack(STACKABLE_ITEMS[i % STACKABLE_ITEMS.length]));
+                    break;
+                case SCATTERED:
+                    Item scattered = STACKABLE_ITEMS[random.nextInt(STACKABLE_ITEMS.length)];
+                    ItemStack stack = new ItemStack(scattered, 1 + random.nextInt(scattered.getItemStackLimit()));
+                    inventory.setInventorySlotContents(i, stack);
+                    if (i % 8 == 0) {
+                        inventory.setMemoryItem(i, stack);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return inventory;
+    }
+
+    /**
+     * 创建一个背包物品堆，内容直接保存在物品堆的 NBT 上。
+     *
+     * @param size     槽位数量
+     * @param contents 背包内容，为 null 时创建空背包
+     * @return 背包物品堆
+     */
+    public static ItemStack createBackpackStack(int size, @Nullable NBTTagCompound contents) {
+        ItemStack stack = new ItemStack(RegisterItem.backpack_huge);
+        NBTTagCompound nbt = contents == null ? new NBTTagCompound() : contents.copy();
+        nbt.setInteger(ItemModBackpack.SLOTS_TAG, size);
+        stack.setTagCompound(nbt);
+        return stack;
+    }
+
+    /**
+     * 创建一个带有全部附魔、显示名称和说明文字的物品。
+     *
+     * @param index 槽位索引，用于区分名称
+     * @return 物品堆
+     */
+    private static ItemStack heavyStack(int index) {
+        ItemStack stack = new ItemStack(Items.DIAMOND_SWORD);
+        for (Enchantment enchantment : Enchantment.REGISTRY) {
+            stack.addEnchantment(enchantment, enchantment.getMaxLevel());
+        }
+        stack.setStackDisplayName("Benchmark Sword #" + index);
+        NBTTagList lore = new NBTTagList();
+        for (int line = 0; line < 4; line++) {
+            lore.appendTag(new NBTTagString("Lore line " + line + " of slot " + index));
+        }
+        stack.getOrCreateSubCompound("display").setTag("Lore", lore);
+        return stack;
+    }
+
+    /**
+     * 创建一个不依赖服务器的玩家，位于只包含世界信息的虚拟世界中。
+     *
+     * @return 玩家
+     */
+    public static EntityPlayer createPlayer() {
+        return new BenchmarkPlayer(new BenchmarkWorld());
+    }
+
+    /**
+     * 只提供世界信息的服务器端世界，不加载任何区块。
+     */
+    private static final class BenchmarkWorld extends World {
+
+        BenchmarkWorld() {
+            super(null, new WorldInfo(new WorldSettings(0L, GameType.SURVIVAL, false, false, WorldType.FLAT), "benchmark"),
+                    new WorldProviderSurface(), new Profiler(), false);
+            this.provider.setWorld(this);
+        }
+
+        @Nullable
+        @Override
+        protected IChunkProvider createChunkProvider() {
+            return null;
+        }
+
+        @Override
+        protected boolean isChunkLoaded(int x, int z, boolean allowEmpty) {
+            return false;
+        }
+
+        @Override
+        public BlockPos getSpawnPoint() {
+            return BlockPos.ORIGIN;
+        }
+    }
+
+    /**
+     * 基准测试使用的玩家。
+     */
+    private static final class BenchmarkPlayer extends EntityPlayer {
+
+        BenchmarkPlayer(World world) {
+            super(world, new GameProfile(UUID.randomUUID(), "benchmark"));
+        }
+
+        @Override
+        public boolean isSpectator() {
+            return false;
+        }
+
+        @Override
+        public boolean isCreative() {
+            return false;
+        }
+    }
+}
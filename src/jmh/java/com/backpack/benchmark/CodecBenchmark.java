@@ -0,0 +1,128 @@
+package com.backpack.benchmark;
+
+import com.backpack.inventory.backpack.InventoryBackpackFunction;
+import com.backpack.storage.BackpackCodec;
+import net.minecraft.nbt.CompressedStreamTools;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 背包文件格式的对比：{@link BackpackCodec} 与直接保存 serializeNBT 的结果。
+ * 两种方式都从同一个背包的 serializeNBT 开始，读取后都交给 deserializeNBT。
+ * gzip 为 true 时与背包文件一样压缩。编码得到的字节数通过 {@link WrittenBytes} 报告。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CodecBenchmark {
+
+    @Param({"36", "256", "1024"})
+    public int size;
+
+    @Param({"EMPTY", "FULL", "HEAVY_NBT", "TEMPLATES", "SCATTERED"})
+    public BackpackFixtures.Contents contents;
+
+    @Param({"true", "false"})
+    public boolean gzip;
+
+    // 已经解码全部槽位的背包
+    private InventoryBackpackFunction source;
+    // 用于反复读取的背包
+    private InventoryBackpackFunction target;
+    // 两种格式编码后的数据
+    private byte[] codecData;
+    private byte[] nbtData;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.source = BackpackFixtures.create(this.contents, this.size);
+        this.target = new InventoryBackpackFunction(BackpackFixtures.createBackpackStack(this.size, null), this.size);
+        this.codecData = encodeCodec();
+        this.nbtData = encodeNbt();
+    }
+
+    @Benchmark
+    public byte[] codecEncode(WrittenBytes written) throws IOException {
+        byte[] data = encodeCodec();
+        written.bytes += data.length;
+        return data;
+    }
+
+    @Benchmark
+    public byte[] nbtEncode(WrittenBytes written) throws IOException {
+        byte[] data = encodeNbt();
+        written.bytes += data.length;
+        return data;
+    }
+
+    @Benchmark
+    public InventoryBackpackFunction codecDecode() throws IOException {
+        byte[] data = this.codecData;
+        if (this.gzip) {
+            data = readAll(new GZIPInputStream(new ByteArrayInputStream(data)));
+        }
+        this.target.deserializeNBT(BackpackCodec.decode(data));
+        return this.target;
+    }
+
+    @Benchmark
+    public InventoryBackpackFunction nbtDecode() throws IOException {
+        InputStream input = new ByteArrayInputStream(this.nbtData);
+        if (this.gzip) {
+            input = new GZIPInputStream(input);
+        }
+        this.target.deserializeNBT(CompressedStreamTools.read(new DataInputStream(input)));
+        return this.target;
+    }
+
+    private byte[] encodeCodec() throws IOException {
+        byte[] data = BackpackCodec.encode(this.source.serializeNBT());
+        return this.gzip ? compress(data) : data;
+    }
+
+    private byte[] encodeNbt() throws IOException {
+        byte[] data = WrittenBytes.toBytes(this.source.serializeNBT());
+        return this.gzip ? compress(data) : data;
+    }
+
+    private static byte[] compress(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream output = new GZIPOutputStream(bytes)) {
+            output.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] readAll(InputStream input) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,118 @@
+package com.backpack.benchmark;
+
+import com.backpack.container.ContainerBackpack;
+import com.backpack.inventory.backpack.InventoryBackpackFunction;
+import com.backpack.inventory.backpack.InventoryBackpackPage;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.entity.player.InventoryPlayer;
+import net.minecraft.item.ItemStack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 背包容器中潜行点击转移物品的基准测试。
+ * 每次调用后只恢复被修改的槽位，插入索引保持有效，测到的是背包打开后反复转移的开销。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ContainerBackpackBenchmark {
+
+    // 玩家库存第一个槽位在容器中的索引
+    private static final int PLAYER_SLOT = InventoryBackpackPage.PAGE_SIZE;
+    // 该槽位在玩家库存中的索引
+    private static final int PLAYER_INVENTORY_SLOT = 9;
+
+    @Param({"36", "256", "1024"})
+    public int size;
+
+    @Param({"EMPTY", "FULL", "HEAVY_NBT", "TEMPLATES"})
+    public BackpackFixtures.Contents contents;
+
+    private EntityPlayer player;
+    private InventoryBackpackFunction inventory;
+    private BenchmarkContainer container;
+    // 背包初始内容，用于恢复被修改的槽位
+    private ItemStack[] expected;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.player = BackpackFixtures.createPlayer();
+        this.inventory = BackpackFixtures.create(this.contents, this.size);
+        this.container = new BenchmarkContainer(this.player.inventory, this.inventory);
+        this.expected = new ItemStack[this.size];
+        for (int i = 0; i < this.size; i++) {
+            this.expected[i] = this.inventory.getStackInSlot(i).copy();
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void fillPlayerSlot() {
+        this.player.inventory.setInventorySlotContents(PLAYER_INVENTORY_SLOT, BackpackFixtures.insertedStack());
+    }
+
+    @TearDown(Level.Invocation)
+    public void restore() {
+        for (int i = 0; i < this.size; i++) {
+            if (!ItemStack.areItemStacksEqual(this.inventory.getStackInSlot(i), this.expected[i])) {
+                this.inventory.setInventorySlotContents(i, this.expected[i].copy());
+            }
+        }
+        this.player.inventory.clear();
+    }
+
+    /**
+     * 从玩家库存潜行点击到背包。
+     */
+    @Benchmark
+    public ItemStack transferToBackpack() {
+        return this.container.transferStackInSlot(this.player, PLAYER_SLOT);
+    }
+
+    /**
+     * 从背包当前页的第一个槽位潜行点击到玩家库存，空背包时立即返回。
+     */
+    @Benchmark
+    public ItemStack transferToPlayer() {
+        return this.container.transferStackInSlot(this.player, 0);
+    }
+
+    /**
+     * 直接把物品合并进整个背包，不经过槽位。
+     */
+    @Benchmark
+    public boolean mergeIntoBackpack() {
+        ItemStack stack = BackpackFixtures.insertedStack();
+        return this.container.merge(stack, 0, PLAYER_SLOT, false);
+    }
+
+    /**
+     * 暴露合并方法的背包容器。
+     */
+    private static final class BenchmarkContainer extends ContainerBackpack {
+
+        BenchmarkContainer(InventoryPlayer playerInventory, InventoryBackpackFunction backpackInventory) {
+            super(playerInventory, backpackInventory);
+        }
+
+        boolean merge(ItemStack stack, int startIndex, int endIndex, boolean reverseDirection) {
+            return this.mergeItemStack(stack, startIndex, endIndex, reverseDirection);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.backpack.benchmark;
+
+import com.backpack.container.ContainerSelect;
+import com.backpack.inventory.backpack.InventoryBackpackFunction;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.EnumHand;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 选择界面把主手物品放回背包的基准测试。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ContainerSelectBenchmark {
+
+    @Param({"36", "256", "1024"})
+    public int size;
+
+    @Param({"EMPTY", "FULL", "HEAVY_NBT", "TEMPLATES"})
+    public BackpackFixtures.Contents contents;
+
+    private EntityPlayer player;
+    private InventoryBackpackFunction inventory;
+    private ContainerSelect container;
+    // 背包初始内容，用于恢复被修改的槽位
+    private ItemStack[] expected;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.player = BackpackFixtures.createPlayer();
+        this.inventory = BackpackFixtures.create(this.contents, this.size);
+        this.container = new ContainerSelect(this.player.inventory, this.inventory);
+        this.expected = new ItemStack[this.size];
+        for (int i = 0; i < this.size; i++) {
+            this.expected[i] = this.inventory.getStackInSlot(i).copy();
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void fillMainHand() {
+        this.player.setHeldItem(EnumHand.MAIN_HAND, BackpackFixtures.insertedStack());
+    }
+
+    @TearDown(Level.Invocation)
+    public void restore() {
+        for (int i = 0; i < this.size; i++) {
+            if (!ItemStack.areItemStacksEqual(this.inventory.getStackInSlot(i), this.expected[i])) {
+                this.inventory.setInventorySlotContents(i, this.expected[i].copy());
+            }
+        }
+    }
+
+    /**
+     * 服务器端处理选择界面的快速放回。
+     */
+    @Benchmark
+    public void buttonClicked() {
+        this.container.buttonClicked(this.player);
+    }
+}
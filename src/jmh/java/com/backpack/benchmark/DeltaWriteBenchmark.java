@@ -0,0 +1,112 @@
+package com.backpack.benchmark;
+
+import com.backpack.inventory.backpack.InventoryBackpackFunction;
+import net.minecraft.nbt.NBTTagCompound;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 只写回脏槽位与完整重写背包内容的对比。
+ * 每次调用修改 changed 个槽位的物品后写回一次：deltaWrite 只重写这些槽位的条目，
+ * fullRewrite 按修改前的方式把 serializeNBT 的结果合并到背包物品堆上。
+ * 写出的字节数通过 {@link WrittenBytes} 报告，即每次写回新编码的 NBT 条目大小。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DeltaWriteBenchmark {
+
+    @Param({"36", "256", "1024"})
+    public int size;
+
+    @Param({"FULL", "HEAVY_NBT", "SCATTERED"})
+    public BackpackFixtures.Contents contents;
+
+    // 每次写回前修改的槽位数量
+    @Param({"1", "8"})
+    public int changed;
+
+    private InventoryBackpackFunction inventory;
+    // 背包物品堆上保存内容的 NBT
+    private NBTTagCompound target;
+    // 每次修改的槽位，均匀分布在整个背包中
+    private int[] slots;
+    private boolean flip;
+    // 两种写回方式每次新编码的字节数
+    private int deltaBytes;
+    private int fullBytes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.inventory = BackpackFixtures.create(this.contents, this.size);
+        this.slots = new int[this.changed];
+        for (int i = 0; i < this.changed; i++) {
+            this.slots[i] = i * this.size / this.changed;
+        }
+        // 先修改一次，让物品标签的大小在之后的调用中保持不变
+        touch();
+        this.inventory.flush();
+        // 访问所有槽位，两种方式都从全部解码的状态开始
+        for (int i = 0; i < this.size; i++) {
+            this.inventory.getStackInSlot(i);
+        }
+        this.target = this.inventory.getBackpackStack().getTagCompound();
+
+        this.fullBytes = WrittenBytes.sizeOf(this.inventory.serializeNBT());
+        // 只包含被修改槽位的背包，与空背包的差就是这些槽位条目的大小
+        InventoryBackpackFunction changedOnly = new InventoryBackpackFunction(BackpackFixtures.createBackpackStack(this.size, null), this.size);
+        InventoryBackpackFunction empty = new InventoryBackpackFunction(BackpackFixtures.createBackpackStack(this.size, null), this.size);
+        for (int slot : this.slots) {
+            changedOnly.setInventorySlotContents(slot, this.inventory.getStackInSlot(slot).copy());
+        }
+        this.deltaBytes = WrittenBytes.sizeOf(changedOnly.serializeNBT()) - WrittenBytes.sizeOf(empty.serializeNBT());
+    }
+
+    /**
+     * 原地修改槽位中的物品，与合并物品时一样通过 markSlotDirty 通知背包。
+     */
+    private void touch() {
+        this.flip = !this.flip;
+        for (int slot : this.slots) {
+            this.inventory.getStackInSlot(slot).setRepairCost(this.flip ? 1 : 0);
+            this.inventory.markSlotDirty(slot);
+        }
+    }
+
+    /**
+     * 只重写脏槽位的条目。
+     */
+    @Benchmark
+    public NBTTagCompound deltaWrite(WrittenBytes written) {
+        touch();
+        this.inventory.flush();
+        written.bytes += this.deltaBytes;
+        return this.target;
+    }
+
+    /**
+     * 重新编码全部槽位并合并到背包物品堆上。
+     */
+    @Benchmark
+    public NBTTagCompound fullRewrite(WrittenBytes written) {
+        touch();
+        this.target.merge(this.inventory.serializeNBT());
+        written.bytes += this.fullBytes;
+        return this.target;
+    }
+}
@@ -0,0 +1,101 @@
+package com.backpack.benchmark;
+
+import com.backpack.inventory.backpack.InventoryBackpackFunction;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NBTTagCompound;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 背包内容读写和背包库存构造的基准测试。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class InventorySerializationBenchmark {
+
+    @Param({"36", "256", "1024"})
+    public int size;
+
+    @Param({"EMPTY", "FULL", "HEAVY_NBT", "TEMPLATES"})
+    public BackpackFixtures.Contents contents;
+
+    // 已经解码全部槽位的背包，用于测试完整编码
+    private InventoryBackpackFunction decoded;
+    // 背包内容的 NBT
+    private NBTTagCompound snapshot;
+    // 内容保存在 NBT 上的背包物品堆
+    private ItemStack backpackStack;
+    // 用于反复读取的背包
+    private InventoryBackpackFunction target;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.decoded = BackpackFixtures.create(this.contents, this.size);
+        this.snapshot = this.decoded.serializeNBT();
+        this.backpackStack = BackpackFixtures.createBackpackStack(this.size, this.snapshot);
+        this.target = new InventoryBackpackFunction(BackpackFixtures.createBackpackStack(this.size, null), this.size);
+    }
+
+    /**
+     * 所有槽位都已解码时的完整编码。
+     */
+    @Benchmark
+    public NBTTagCompound serialize() {
+        return this.decoded.serializeNBT();
+    }
+
+    /**
+     * 刚读取、尚未访问任何槽位时的完整编码，原始标签直接复用。
+     */
+    @Benchmark
+    public NBTTagCompound serializeUntouched() {
+        this.target.deserializeNBT(this.snapshot);
+        return this.target.serializeNBT();
+    }
+
+    /**
+     * 只读取 NBT，不访问槽位。
+     */
+    @Benchmark
+    public InventoryBackpackFunction deserialize() {
+        this.target.deserializeNBT(this.snapshot);
+        return this.target;
+    }
+
+    /**
+     * 读取 NBT 后访问所有槽位和记忆物品，包含解码的全部开销。
+     */
+    @Benchmark
+    public void deserializeAndRead(Blackhole blackhole) {
+        this.target.deserializeNBT(this.snapshot);
+        for (int i = 0; i < this.size; i++) {
+            blackhole.consume(this.target.getStackInSlot(i));
+            blackhole.consume(this.target.getMemoryItem(i));
+        }
+    }
+
+    /**
+     * 从背包物品堆构造背包库存，对应打开背包时的开销。
+     */
+    @Benchmark
+    public InventoryBackpackFunction construct() {
+        return new InventoryBackpackFunction(this.backpackStack, this.size);
+    }
+}
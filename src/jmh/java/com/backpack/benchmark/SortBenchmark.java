@@ -0,0 +1,60 @@
+package com.backpack.benchmark;
+
+import com.backpack.inventory.backpack.InventoryBackpackFunction;
+import net.minecraft.nbt.NBTTagCompound;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 服务器端整理背包的基准测试，重点是大型和巨型背包。
+ * 每次调用前重新读取原始内容，测到的时间包含整理时解码全部槽位的开销。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SortBenchmark {
+
+    @Param({"36", "256", "1024"})
+    public int size;
+
+    @Param({"FULL", "HEAVY_NBT", "SCATTERED"})
+    public BackpackFixtures.Contents contents;
+
+    private InventoryBackpackFunction inventory;
+    // 整理前的背包内容
+    private NBTTagCompound snapshot;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.inventory = BackpackFixtures.create(this.contents, this.size);
+        this.snapshot = this.inventory.serializeNBT();
+    }
+
+    @Setup(Level.Invocation)
+    public void reset() {
+        this.inventory.deserializeNBT(this.snapshot);
+    }
+
+    /**
+     * 整理一次背包。
+     */
+    @Benchmark
+    public boolean sort() {
+        return this.inventory.sort();
+    }
+}
@@ -0,0 +1,58 @@
+package com.backpack.benchmark;
+
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTTagCompound;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * 基准测试中写出的字节数。
+ * 作为 JMH 辅助计数器与主结果一起报告，吞吐量模式下单位为字节每秒，
+ * 除以主结果的操作每秒即为每次操作写出的字节数。
+ */
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+@State(Scope.Thread)
+public class WrittenBytes {
+
+    // 本轮迭代中写出的字节数
+    public long bytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        this.bytes = 0;
+    }
+
+    /**
+     * 计算 NBT 以未压缩格式写出时的字节数。
+     *
+     * @param compound NBT 标签复合对象
+     * @return 字节数
+     */
+    public static int sizeOf(NBTTagCompound compound) {
+        return toBytes(compound).length;
+    }
+
+    /**
+     * 把 NBT 以未压缩格式写出。
+     *
+     * @param compound NBT 标签复合对象
+     * @return 写出的数据
+     */
+    public static byte[] toBytes(NBTTagCompound compound) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            CompressedStreamTools.write(compound, output);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
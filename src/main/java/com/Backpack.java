@@ -1,14 +1,23 @@
 package com;
 
+import com.backpack.command.CommandBackpack;
+import com.backpack.config.BackpackConfig;
 import com.backpack.gui.GuiHandler;
 import com.backpack.keybindings.BackpackClientEvents;
 import com.backpack.keybindings.KeyBindings;
+import com.backpack.metrics.BackpackMetrics;
 import com.backpack.network.PacketHandler;
+import com.backpack.storage.BackpackInventoryCache;
+import com.backpack.storage.BackpackSaveScheduler;
+import com.backpack.storage.BackpackStore;
 import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.fml.common.event.FMLInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLPostInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLPreInitializationEvent;
+import net.minecraftforge.fml.common.event.FMLServerStartingEvent;
+import net.minecraftforge.fml.common.event.FMLServerStoppedEvent;
+import net.minecraftforge.fml.common.event.FMLServerStoppingEvent;
 
 /**
  * Backpack模组的主类，负责模组的初始化和GUI处理
@@ -32,6 +41,9 @@ public class Backpack {
     // 预初始化事件处理方法
     @Mod.EventHandler
     public void preInit(FMLPreInitializationEvent event) {
+        // 读取配置文件
+        BackpackConfig.load(event.getSuggestedConfigurationFile());
+
         // 初始化网络包
         PacketHandler.init();
     }
@@ -54,4 +66,33 @@ public class Backpack {
     @Mod.EventHandler
     public void postInit(FMLPostInitializationEvent event) {
     }
+
+    // 服务器启动事件处理方法
+    @Mod.EventHandler
+    public void serverStarting(FMLServerStartingEvent event) {
+        // 打开当前存档的背包存储
+        BackpackStore.open();
+
+        // 注册管理命令
+        event.registerServerCommand(new CommandBackpack());
+
+        // 通过 JMX 公开运行时统计
+        BackpackMetrics.registerMBean();
+    }
+
+    // 服务器关闭事件处理方法
+    @Mod.EventHandler
+    public void serverStopping(FMLServerStoppingEvent event) {
+        // 在保存玩家数据之前写回所有待保存的背包
+        BackpackSaveScheduler.flushAll();
+    }
+
+    // 服务器关闭完成事件处理方法
+    @Mod.EventHandler
+    public void serverStopped(FMLServerStoppedEvent event) {
+        // 清空已解码背包的缓存，保存剩余的背包内容并释放存储
+        BackpackInventoryCache.clear();
+        BackpackStore.close();
+        BackpackMetrics.unregisterMBean();
+    }
 }
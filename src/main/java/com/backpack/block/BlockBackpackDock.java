@@ -0,0 +1,87 @@
+package com.backpack.block;
+
+import com.backpack.item.ItemModBackpack;
+import com.backpack.tileentity.TileEntityBackpackDock;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.block.SoundType;
+import net.minecraft.block.material.Material;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.inventory.InventoryHelper;
+import net.minecraft.item.ItemStack;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.EnumHand;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * 背包坞
+ * 手持背包右击放入背包，空手右击取出背包。停靠的背包可以被漏斗和管道存取。
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class BlockBackpackDock extends BlockMod {
+
+    public BlockBackpackDock(String name) {
+        super(name, Material.WOOD);
+        setHardness(2.0F);
+        setSoundType(SoundType.WOOD);
+    }
+
+    @Override
+    public boolean hasTileEntity(IBlockState state) {
+        return true;
+    }
+
+    @Override
+    public TileEntity createTileEntity(World world, IBlockState state) {
+        return new TileEntityBackpackDock();
+    }
+
+    /**
+     * 右击时放入或取出背包。手持背包时总是拦截右击，避免同时打开背包界面。
+     */
+    @Override
+    public boolean onBlockActivated(World worldIn, BlockPos pos, IBlockState state, EntityPlayer playerIn, EnumHand hand,
+                                    EnumFacing facing, float hitX, float hitY, float hitZ) {
+        ItemStack held = playerIn.getHeldItem(hand);
+        boolean holdingBackpack = held.getItem() instanceof ItemModBackpack;
+        if (!holdingBackpack && !held.isEmpty()) {
+            return false;
+        }
+        if (worldIn.isRemote) {
+            return true;
+        }
+        TileEntity tileEntity = worldIn.getTileEntity(pos);
+        if (!(tileEntity instanceof TileEntityBackpackDock)) {
+            return false;
+        }
+        TileEntityBackpackDock dock = (TileEntityBackpackDock) tileEntity;
+        if (holdingBackpack) {
+            if (dock.insertBackpack(held)) {
+                playerIn.setHeldItem(hand, ItemStack.EMPTY);
+            }
+        } else if (dock.hasBackpack()) {
+            playerIn.setHeldItem(hand, dock.removeBackpack());
+        }
+        return true;
+    }
+
+    /**
+     * 方块被破坏时掉落停靠的背包，与箱子一样不受 doTileDrops 规则影响。
+     */
+    @Override
+    public void breakBlock(World worldIn, BlockPos pos, IBlockState state) {
+        TileEntity tileEntity = worldIn.getTileEntity(pos);
+        if (tileEntity instanceof TileEntityBackpackDock) {
+            ItemStack backpack = ((TileEntityBackpackDock) tileEntity).removeBackpack();
+            if (!backpack.isEmpty()) {
+                InventoryHelper.spawnItemStack(worldIn, pos.getX(), pos.getY(), pos.getZ(), backpack);
+            }
+        }
+        super.breakBlock(worldIn, pos, state);
+    }
+}
@@ -0,0 +1,41 @@
+package com.backpack.block;
+
+import com.backpack.register.RegisterBlock;
+import com.backpack.register.RegisterItem;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.block.Block;
+import net.minecraft.block.material.Material;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * 自定义方块类，用于创建模组中的新方块。
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class BlockMod extends Block {
+
+    /**
+     * 构造函数，初始化自定义方块。
+     *
+     * @param name     方块的注册名和非本地化名
+     * @param material 方块材质
+     */
+    public BlockMod(String name, Material material) {
+        // 调用父类构造函数
+        super(material);
+
+        // 设置方块所属的物品栏
+        setCreativeTab(RegisterItem.BACKPACK_TAB);
+
+        // 设置方块的注册名
+        setRegistryName(name);
+
+        // 设置方块的非本地化名（用于语言文件）
+        // 添加模组前缀以避免冲突
+        setUnlocalizedName("backpack." + name);
+
+        // 将方块添加到方块列表中
+        RegisterBlock.BLOCKS_LIST.add(this);
+    }
+}
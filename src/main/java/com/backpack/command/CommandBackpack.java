@@ -0,0 +1,163 @@
+package com.backpack.command;
+
+import com.backpack.loadtest.BackpackLoadSimulator;
+import com.backpack.metrics.BackpackMetrics;
+import com.backpack.network.BackpackSlotSyncMessage;
+import com.backpack.network.OpenRequestLimiter;
+import com.backpack.storage.BackpackInventoryCache;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.command.WrongUsageException;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.text.TextComponentTranslation;
+import net.minecraft.world.WorldServer;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 背包模组的管理命令
+ * /backpack loadtest <玩家数> [刻数]：用假玩家模拟背包操作并报告服务器开销
+ * /backpack loadtest stop：提前结束负载测试
+ * /backpack stats [reset|timing <true|false>]：查看、清零统计数据或开关计时
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class CommandBackpack extends CommandBase {
+
+    // 负载测试默认持续的服务器刻数
+    private static final int DEFAULT_TICKS = 1200;
+    // 负载测试的玩家数量上限
+    private static final int MAX_PLAYERS = 1000;
+
+    @Override
+    public String getName() {
+        return "backpack";
+    }
+
+    @Override
+    public String getUsage(ICommandSender sender) {
+        return "commands.backpack.usage";
+    }
+
+    @Override
+    public int getRequiredPermissionLevel() {
+        return 2;
+    }
+
+    @Override
+    public void execute(MinecraftServer server, ICommandSender sender, String[] args) throws CommandException {
+        if (args.length < 1) {
+            throw new WrongUsageException(getUsage(sender));
+        }
+        if ("loadtest".equals(args[0])) {
+            executeLoadTest(server, sender, args);
+            return;
+        }
+        if ("stats".equals(args[0])) {
+            executeStats(sender, args);
+            return;
+        }
+        throw new WrongUsageException(getUsage(sender));
+    }
+
+    private void executeLoadTest(MinecraftServer server, ICommandSender sender, String[] args) throws CommandException {
+        if (args.length < 2) {
+            throw new WrongUsageException("commands.backpack.loadtest.usage");
+        }
+        if ("stop".equals(args[1])) {
+            if (!BackpackLoadSimulator.stop()) {
+                throw new CommandException("commands.backpack.loadtest.notRunning");
+            }
+            return;
+        }
+        int players = parseInt(args[1], 1, MAX_PLAYERS);
+        int ticks = args.length > 2 ? parseInt(args[2], 1, Integer.MAX_VALUE / 2) : DEFAULT_TICKS;
+        WorldServer world = server.getWorld(0);
+        if (!BackpackLoadSimulator.start(world, players, ticks, sender)) {
+            throw new CommandException("commands.backpack.loadtest.running");
+        }
+        sender.sendMessage(new TextComponentTranslation("commands.backpack.loadtest.started", players, ticks));
+    }
+
+    private void executeStats(ICommandSender sender, String[] args) throws CommandException {
+        if (args.length >= 2) {
+            if ("reset".equals(args[1])) {
+                BackpackMetrics.reset();
+                sender.sendMessage(new TextComponentTranslation("commands.backpack.stats.reset"));
+                return;
+            }
+            if ("timing".equals(args[1]) && args.length == 3) {
+                boolean enabled = parseBoolean(args[2]);
+                BackpackMetrics.setTimingEnabled(enabled);
+                sender.sendMessage(new TextComponentTranslation(enabled ? "commands.backpack.stats.timing.on" : "commands.backpack.stats.timing.off"));
+                return;
+            }
+            throw new WrongUsageException("commands.backpack.stats.usage");
+        }
+
+        sender.sendMessage(new TextComponentTranslation("commands.backpack.stats.opens",
+                BackpackMetrics.BACKPACK_OPENS.sum(), BackpackMetrics.SELECT_OPENS.sum(),
+                OpenRequestLimiter.getAccepted(), OpenRequestLimiter.getCoalesced(), OpenRequestLimiter.getDeferred()));
+        sender.sendMessage(new TextComponentTranslation("commands.backpack.stats.cache",
+                BackpackInventoryCache.getSize(), BackpackInventoryCache.getCachedSlots(),
+                BackpackInventoryCache.getHits(), BackpackInventoryCache.getMisses(), BackpackInventoryCache.getEvictions()));
+        sendTimer(sender, "commands.backpack.stats.serialize", BackpackMetrics.SERIALIZE);
+        sendTimer(sender, "commands.backpack.stats.deserialize", BackpackMetrics.DESERIALIZE);
+        sendTimer(sender, "commands.backpack.stats.flush", BackpackMetrics.FLUSH);
+        sendTimer(sender, "commands.backpack.stats.merge", BackpackMetrics.MERGE);
+        sendTimer(sender, "commands.backpack.stats.ghostLayer", BackpackMetrics.GHOST_LAYER);
+        sender.sendMessage(new TextComponentTranslation("commands.backpack.stats.storage",
+                BackpackMetrics.MARK_DIRTY.sum(), BackpackMetrics.MERGE_SLOTS_VISITED.sum(),
+                BackpackMetrics.BYTES_WRITTEN.sum(), BackpackMetrics.BYTES_READ.sum()));
+        sender.sendMessage(new TextComponentTranslation("commands.backpack.stats.packets",
+                formatCounts(BackpackMetrics.getPacketsSent()), formatCounts(BackpackMetrics.getPacketsReceived()),
+                BackpackSlotSyncMessage.getBytesSent()));
+        if (!BackpackMetrics.isTimingEnabled()) {
+            sender.sendMessage(new TextComponentTranslation("commands.backpack.stats.timingHint"));
+        }
+    }
+
+    private static void sendTimer(ICommandSender sender, String key, BackpackMetrics.Timer timer) {
+        long count = timer.getCount();
+        String average = count > 0 ? String.format("%.1f", timer.getNanos() / 1000.0 / count) : "-";
+        sender.sendMessage(new TextComponentTranslation(key, count, String.format("%.1f", timer.getNanos() / 1e6), average));
+    }
+
+    private static String formatCounts(Map<String, Long> counts) {
+        if (counts.isEmpty()) {
+            return "-";
+        }
+        StringBuilder builder = new StringBuilder();
+        counts.forEach((type, count) -> {
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            builder.append(type).append('=').append(count);
+        });
+        return builder.toString();
+    }
+
+    @Override
+    public List<String> getTabCompletions(MinecraftServer server, ICommandSender sender, String[] args, @Nullable BlockPos targetPos) {
+        if (args.length == 1) {
+            return getListOfStringsMatchingLastWord(args, "loadtest", "stats");
+        }
+        if (args.length == 2 && "loadtest".equals(args[0])) {
+            return getListOfStringsMatchingLastWord(args, "stop");
+        }
+        if (args.length == 2 && "stats".equals(args[0])) {
+            return getListOfStringsMatchingLastWord(args, "reset", "timing");
+        }
+        if (args.length == 3 && "stats".equals(args[0]) && "timing".equals(args[1])) {
+            return getListOfStringsMatchingLastWord(args, "true", "false");
+        }
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,42 @@
+package com.backpack.config;
+
+import net.minecraftforge.common.config.Configuration;
+
+import java.io.File;
+
+/**
+ * 模组配置
+ * 在预初始化阶段从配置文件读取，之后只读。
+ */
+public class BackpackConfig {
+
+    // 背包等级配置的分类名称
+    private static final String CATEGORY_TIERS = "tiers";
+
+    // 背包允许的最大槽位数量，槽位索引以 short 保存
+    public static final int MAX_SLOTS = 4096;
+
+    // 大型背包的槽位数量
+    public static int largeBackpackSlots = 256;
+    // 巨型背包的槽位数量
+    public static int hugeBackpackSlots = 1024;
+
+    /**
+     * 读取配置文件，文件不存在或缺少条目时写入默认值。
+     *
+     * @param file 配置文件
+     */
+    public static void load(File file) {
+        Configuration config = new Configuration(file);
+        config.load();
+
+        largeBackpackSlots = config.getInt("largeBackpackSlots", CATEGORY_TIERS, largeBackpackSlots, 36, MAX_SLOTS,
+                "Slot count of newly created large backpacks. Existing backpacks keep their size.");
+        hugeBackpackSlots = config.getInt("hugeBackpackSlots", CATEGORY_TIERS, hugeBackpackSlots, 36, MAX_SLOTS,
+                "Slot count of newly created huge backpacks. Existing backpacks keep their size.");
+
+        if (config.hasChanged()) {
+            config.save();
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.backpack.container;
+
+import com.backpack.inventory.backpack.InventoryBackpackFunction;
+import com.backpack.inventory.backpack.InventoryBackpackPage;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.item.Item;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.util.ResourceLocation;
+import net.minecraftforge.common.util.Constants;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Locale;
+
+/**
+ * 服务器端对整个背包的搜索
+ * 客户端只有当前页的内容，其他页面是否有匹配的物品由服务器判断，只把有匹配的页码发给客户端。
+ * 服务器端的物品名称是服务器的语言，提示文本只能在客户端生成，因此这里只匹配与语言无关的数据：
+ * 普通关键字匹配注册名（下划线视为空格）和玩家设置的名称，@ 匹配模组ID，# 匹配玩家设置的名称和物品说明（Lore）。
+ * 客户端的 BackpackSearchIndex 同样匹配注册名，这些关键字在所有页面上的结果一致；
+ * 只按本地化名称或其他提示文本才能匹配的物品只会在客户端的当前页中标出。
+ * 匹配用的文本从槽位的原始数据读取，不会解码物品，按槽位缓存并根据槽位版本号失效，
+ * 与客户端的 BackpackSearchIndex 一样，追加字符时只重新检查上次匹配的槽位。
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+class BackpackPageSearch {
+
+    // 关键字的最大长度，与搜索输入框一致
+    static final int MAX_QUERY_LENGTH = 50;
+
+    private final InventoryBackpackFunction inventory;
+    private final int size;
+    // 已经处理到的内容版本号和每个槽位的版本号
+    private long indexedVersion;
+    private final long[] indexedSlotVersions;
+    // 每个槽位的搜索文本缓存，尚未生成时为 null
+    private final String[] names;
+    private final String[] modIds;
+    private final String[] customNames;
+    private final String[] lores;
+
+    // 当前关键字，已转为小写并去掉模式前缀
+    private String query = "";
+    // 当前搜索模式：0 注册名和玩家设置的名称，'@' 模组ID，'#' 玩家设置的名称和物品说明
+    private char mode = 0;
+    // 当前关键字匹配的槽位，matchesValid 为 false 时需要重新计算
+    private final BitSet matches = new BitSet();
+    private boolean matchesValid = false;
+
+    BackpackPageSearch(InventoryBackpackFunction inventory) {
+        this.inventory = inventory;
+        this.size = inventory.getSizeInventory();
+        this.indexedVersion = inventory.getContentsVersion();
+        this.indexedSlotVersions = new long[this.size];
+        for (int i = 0; i < this.size; i++) {
+            this.indexedSlotVersions[i] = inventory.getSlotVersion(i);
+        }
+        this.names = new String[this.size];
+        this.modIds = new String[this.size];
+        this.customNames = new String[this.size];
+        this.lores = new String[this.size];
+    }
+
+    /**
+     * 设置搜索关键字。
+     *
+     * @param text 客户端输入框中的文本
+     * @return 如果关键字发生变化则返回true
+     */
+    boolean setQuery(String text) {
+        if (text.length() > MAX_QUERY_LENGTH) {
+            text = text.substring(0, MAX_QUERY_LENGTH);
+        }
+        String normalized = text.trim().toLowerCase(Locale.ROOT);
+        char newMode = 0;
+        if (!normalized.isEmpty() && (normalized.charAt(0) == '@' || normalized.charAt(0) == '#')) {
+            newMode = normalized.charAt(0);
+            normalized = normalized.substring(1);
+        }
+        if (newMode == 0) {
+            normalized = normalized.replace('_', ' ');
+        }
+        if (newMode == this.mode && normalized.equals(this.query)) {
+            return false;
+        }
+        refresh();
+        // 追加字符只会让结果变少，只需要检查上次匹配的槽位
+        boolean narrowing = this.matchesValid && newMode == this.mode && normalized.startsWith(this.query);
+        this.mode = newMode;
+        this.query = normalized;
+        if (narrowing) {
+            for (int i = this.matches.nextSetBit(0); i >= 0; i = this.matches.nextSetBit(i + 1)) {
+                if (!test(i)) {
+                    this.matches.clear(i);
+                }
+            }
+        } else {
+            this.matchesValid = false;
+        }
+        return true;
+    }
+
+    boolean isActive() {
+        return !this.query.isEmpty();
+    }
+
+    /**
+     * 获取包含匹配物品的页码。
+     *
+     * @return 有匹配槽位的页码，没有关键字时为空
+     */
+    BitSet getPages() {
+        BitSet pages = new BitSet();
+        if (!isActive()) {
+            return pages;
+        }
+        refresh();
+        if (!this.matchesValid) {
+            this.matches.clear();
+            for (int i = 0; i < this.size; i++) {
+                if (test(i)) {
+                    this.matches.set(i);
+                }
+            }
+            this.matchesValid = true;
+        }
+        for (int i = this.matches.nextSetBit(0); i >= 0; i = this.matches.nextSetBit(i + 1)) {
+            int page = i / InventoryBackpackPage.PAGE_SIZE;
+            pages.set(page);
+            // 同一页只需要一个匹配的槽位
+            i = (page + 1) * InventoryBackpackPage.PAGE_SIZE - 1;
+        }
+        return pages;
+    }
+
+    /**
+     * 根据背包内容的版本号处理发生变化的槽位。
+     * 内容没有变化时只比较一次版本号；变化的槽位超过四分之一时整体作废。
+     */
+    private void refresh() {
+        long version = this.inventory.getContentsVersion();
+        if (version == this.indexedVersion) {
+            return;
+        }
+        this.indexedVersion = version;
+
+        BitSet changed = new BitSet(this.size);
+        for (int i = 0; i < this.size; i++) {
+            long slotVersion = this.inventory.getSlotVersion(i);
+            if (slotVersion != this.indexedSlotVersions[i]) {
+                this.indexedSlotVersions[i] = slotVersion;
+                changed.set(i);
+            }
+        }
+
+        if (changed.cardinality() > this.size / 4) {
+            Arrays.fill(this.names, null);
+            Arrays.fill(this.modIds, null);
+            Arrays.fill(this.customNames, null);
+            Arrays.fill(this.lores, null);
+            this.matchesValid = false;
+            return;
+        }
+        for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1)) {
+            this.names[i] = null;
+            this.modIds[i] = null;
+            this.customNames[i] = null;
+            this.lores[i] = null;
+            if (this.matchesValid) {
+                this.matches.set(i, isActive() && test(i));
+            }
+        }
+    }
+
+    /**
+     * 检查槽位中的物品是否匹配当前关键字。
+     */
+    private boolean test(int index) {
+        Item item = this.inventory.getSlotItem(index);
+        if (item == null) {
+            return false;
+        }
+        switch (this.mode) {
+            case '@':
+                return getModId(index, item).contains(this.query);
+            case '#':
+                return getCustomName(index).contains(this.query) || getLore(index).contains(this.query);
+            default:
+                return getName(index, item).contains(this.query) || getCustomName(index).contains(this.query);
+        }
+    }
+
+    /**
+     * 注册名中的路径部分，下划线换成空格，例如 "iron ingot"。
+     */
+    private String getName(int index, Item item) {
+        String name = this.names[index];
+        if (name == null) {
+            ResourceLocation registryName = item.getRegistryName();
+            name = registryName != null ? registryName.getResourcePath().toLowerCase(Locale.ROOT).replace('_', ' ') : "";
+            this.names[index] = name;
+        }
+        return name;
+    }
+
+    private String getModId(int index, Item item) {
+        String modId = this.modIds[index];
+        if (modId == null) {
+            ResourceLocation registryName = item.getRegistryName();
+            modId = registryName != null ? registryName.getResourceDomain().toLowerCase(Locale.ROOT) : "";
+            this.modIds[index] = modId;
+        }
+        return modId;
+    }
+
+    /**
+     * 玩家设置的名称，保存在物品标签的 display 中，与语言无关。
+     */
+    private String getCustomName(int index) {
+        String customName = this.customNames[index];
+        if (customName == null) {
+            NBTTagCompound display = getDisplayTag(index);
+            customName = display != null ? display.getString("Name").toLowerCase(Locale.ROOT) : "";
+            this.customNames[index] = customName;
+        }
+        return customName;
+    }
+
+    private String getLore(int index) {
+        String lore = this.lores[index];
+        if (lore == null) {
+            StringBuilder builder = new StringBuilder();
+            NBTTagCompound display = getDisplayTag(index);
+            if (display != null) {
+                NBTTagList lines = display.getTagList("Lore", Constants.NBT.TAG_STRING);
+                for (int i = 0; i < lines.tagCount(); i++) {
+                    builder.append(lines.getStringTagAt(i)).append('\n');
+                }
+            }
+            lore = builder.toString().toLowerCase(Locale.ROOT);
+            this.lores[index] = lore;
+        }
+        return lore;
+    }
+
+    @Nullable
+    private NBTTagCompound getDisplayTag(int index) {
+        NBTTagCompound tag = this.inventory.getSlotTag(index);
+        return tag != null && tag.hasKey("display", Constants.NBT.TAG_COMPOUND) ? tag.getCompoundTag("display") : null;
+    }
+}
@@ -1,15 +1,28 @@
 package com.backpack.container;
 
 import com.backpack.inventory.backpack.InventoryBackpackFunction;
+import com.backpack.inventory.backpack.InventoryBackpackPage;
+import com.backpack.item.ItemModBackpack;
+import com.backpack.network.BackpackSearchResultMessage;
+import com.backpack.network.BackpackSlotSyncMessage;
+import com.backpack.network.MemorySyncMessage;
+import com.backpack.network.PacketHandler;
 import com.backpack.slot.SlotBackpack;
+import com.backpack.storage.BackpackStore;
 import mcp.MethodsReturnNonnullByDefault;
 import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.entity.player.InventoryPlayer;
 import net.minecraft.inventory.Container;
+import net.minecraft.inventory.IContainerListener;
 import net.minecraft.inventory.Slot;
 import net.minecraft.item.ItemStack;
+import net.minecraft.util.text.TextComponentTranslation;
 
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.BitSet;
+import java.util.UUID;
 
 @ParametersAreNonnullByDefault
 @MethodsReturnNonnullByDefault
@@ -17,6 +30,23 @@ public class ContainerBackpack extends Container {
 
     // 背包库存实例
     private final InventoryBackpackFunction backpackInventory;
+    // 已经发送给玩家的记忆物品版本号
+    private long memoryVersionSent;
+    // 背包的分页视图，容器只注册当前页的槽位
+    private final InventoryBackpackPage page;
+    // 是否为客户端的容器，客户端只有当前页的背包内容
+    private final boolean clientSide;
+    // 服务器端刚把物品快速移动到整个背包，下一次同步需要发送真实结果
+    private boolean resyncAfterQuickMove;
+    // 服务器端对整个背包的搜索，玩家第一次搜索时创建
+    @Nullable
+    private BackpackPageSearch search;
+    // 已经发送给玩家的搜索结果和搜索时的内容版本号，关键字变化后为 null
+    @Nullable
+    private BitSet searchPagesSent;
+    private long searchVersionSent;
+    // 客户端收到的有匹配物品的页码
+    private BitSet searchPages = new BitSet();
 
     /**
      * 构造函数
@@ -27,11 +57,14 @@ public class ContainerBackpack extends Container {
      */
     public ContainerBackpack(InventoryPlayer playerInventory, InventoryBackpackFunction backpackInventory) {
         this.backpackInventory = backpackInventory;
+        this.page = new InventoryBackpackPage(backpackInventory);
+        this.clientSide = playerInventory.player.world.isRemote;
+        backpackInventory.openInventory(playerInventory.player);
 
-        // 添加背包槽位
+        // 添加当前页的背包槽位
         for (int y = 0; y < 4; ++y) {
             for (int x = 0; x < 9; ++x) {
-                addSlotToContainer(new SlotBackpack(backpackInventory, x + y * 9, 8 + x * 18, 18 + y * 18));
+                addSlotToContainer(new SlotBackpack(this.page, x + y * 9, 8 + x * 18, 18 + y * 18));
             }
         }
 
@@ -48,6 +81,192 @@ public class ContainerBackpack extends Container {
         }
     }
 
+    /**
+     * 获取容器对应的背包库存
+     *
+     * @return 背包库存
+     */
+    public InventoryBackpackFunction getBackpackInventory() {
+        return this.backpackInventory;
+    }
+
+    public int getPage() {
+        return this.page.getPage();
+    }
+
+    public int getPageCount() {
+        return this.page.getPageCount();
+    }
+
+    /**
+     * 切换背包页面
+     * 只修改分页视图的偏移量，不会重新打开界面或解码背包。
+     * 服务器端会把新页面的所有槽位发送给玩家，覆盖客户端可能过期的内容。
+     *
+     * @param page 页码
+     */
+    public void setPage(int page) {
+        if (!this.page.setPage(page)) {
+            return;
+        }
+        BackpackSlotSyncMessage message = new BackpackSlotSyncMessage(this.windowId);
+        for (int i = 0; i < InventoryBackpackPage.PAGE_SIZE; i++) {
+            ItemStack stack = this.inventorySlots.get(i).getStack().copy();
+            this.inventoryItemStacks.set(i, stack);
+            message.add(i, stack);
+        }
+        for (IContainerListener listener : this.listeners) {
+            if (listener instanceof EntityPlayerMP) {
+                PacketHandler.sendTo(message, (EntityPlayerMP) listener);
+            }
+        }
+    }
+
+    /**
+     * 设置服务器端的搜索关键字，有匹配物品的页码在下一次 detectAndSendChanges 中发送给玩家
+     *
+     * @param query 客户端搜索输入框中的文本
+     */
+    public void setSearch(String query) {
+        if (this.search == null) {
+            this.search = new BackpackPageSearch(this.backpackInventory);
+        }
+        if (this.search.setQuery(query)) {
+            this.searchPagesSent = null;
+        }
+    }
+
+    /**
+     * 获取客户端收到的有匹配物品的页码
+     *
+     * @return 页码
+     */
+    public BitSet getSearchPages() {
+        return this.searchPages;
+    }
+
+    public void setSearchPages(BitSet pages) {
+        this.searchPages = pages;
+    }
+
+    /**
+     * 添加容器监听器，服务器端向玩家发送记忆物品
+     *
+     * @param listener 容器监听器
+     */
+    @Override
+    public void addListener(IContainerListener listener) {
+        super.addListener(listener);
+        if (listener instanceof EntityPlayerMP) {
+            PacketHandler.sendTo(new MemorySyncMessage(this.windowId, this.backpackInventory), (EntityPlayerMP) listener);
+            this.memoryVersionSent = this.backpackInventory.getMemoryVersion();
+        }
+    }
+
+    /**
+     * 记忆物品发生变化时，只把变化的槽位发送给玩家
+     */
+    private void sendMemoryChanges() {
+        long version = this.backpackInventory.getMemoryVersion();
+        if (version == this.memoryVersionSent) {
+            return;
+        }
+        MemorySyncMessage message = new MemorySyncMessage(this.windowId, this.backpackInventory,
+                this.backpackInventory.getMemorySlotsChangedSince(this.memoryVersionSent));
+        this.memoryVersionSent = version;
+        for (IContainerListener listener : this.listeners) {
+            if (listener instanceof EntityPlayerMP) {
+                PacketHandler.sendTo(message, (EntityPlayerMP) listener);
+            }
+        }
+    }
+
+    /**
+     * 关键字或背包内容变化后重新搜索，有匹配物品的页码发生变化时发送给玩家
+     * 没有关键字时不发送，客户端清空搜索框时自己清除结果
+     */
+    private void sendSearchResults() {
+        if (this.search == null || !this.search.isActive()) {
+            return;
+        }
+        long version = this.backpackInventory.getContentsVersion();
+        if (this.searchPagesSent != null && version == this.searchVersionSent) {
+            return;
+        }
+        this.searchVersionSent = version;
+        BitSet pages = this.search.getPages();
+        if (pages.equals(this.searchPagesSent)) {
+            return;
+        }
+        this.searchPagesSent = pages;
+        BackpackSearchResultMessage message = new BackpackSearchResultMessage(this.windowId, pages);
+        for (IContainerListener listener : this.listeners) {
+            if (listener instanceof EntityPlayerMP) {
+                PacketHandler.sendTo(message, (EntityPlayerMP) listener);
+            }
+        }
+    }
+
+    /**
+     * 检测槽位变化并同步给监听者
+     * 背包槽位的变化合并为一个 BackpackSlotSyncMessage 发送给玩家，玩家库存槽位仍由原版逻辑同步
+     * 快速移动到整个背包后，客户端只预测了当前页，预测可能与服务器的结果不同，
+     * 这次把当前页的所有槽位发送给包括正在点击的玩家在内的所有玩家，玩家的点击状态保持不变
+     */
+    @Override
+    public void detectAndSendChanges() {
+        boolean forceSync = this.resyncAfterQuickMove;
+        this.resyncAfterQuickMove = false;
+
+        BackpackSlotSyncMessage message = null;
+        for (int i = 0; i < InventoryBackpackPage.PAGE_SIZE; i++) {
+            ItemStack stack = this.inventorySlots.get(i).getStack();
+            ItemStack last = this.inventoryItemStacks.get(i);
+            boolean changed = !ItemStack.areItemStacksEqual(last, stack);
+            if (!changed && !forceSync) {
+                continue;
+            }
+            ItemStack copy = stack.isEmpty() ? ItemStack.EMPTY : stack.copy();
+            this.inventoryItemStacks.set(i, copy);
+            if (message == null) {
+                message = new BackpackSlotSyncMessage(this.windowId);
+            }
+            message.add(i, copy);
+            if (changed) {
+                for (IContainerListener listener : this.listeners) {
+                    if (!(listener instanceof EntityPlayerMP)) {
+                        listener.sendSlotContents(this, i, copy);
+                    }
+                }
+            }
+        }
+
+        if (message != null) {
+            for (IContainerListener listener : this.listeners) {
+                // 玩家正在点击时客户端已经预测了结果，与原版一样不发送；快速移动后的当前页总是发送
+                if (listener instanceof EntityPlayerMP && (forceSync || !((EntityPlayerMP) listener).isChangingQuantityOnly)) {
+                    PacketHandler.sendTo(message, (EntityPlayerMP) listener);
+                }
+            }
+        }
+
+        // 背包槽位的记录已经更新，原版逻辑只会同步玩家库存槽位
+        super.detectAndSendChanges();
+        sendMemoryChanges();
+        sendSearchResults();
+    }
+
+    /**
+     * 容器关闭时调用，立即写回背包内容
+     *
+     * @param playerIn 玩家实体
+     */
+    @Override
+    public void onContainerClosed(EntityPlayer playerIn) {
+        super.onContainerClosed(playerIn);
+        this.backpackInventory.closeInventory(playerIn);
+    }
+
     /**
      * 检查玩家是否可以与背包交互
      *
@@ -78,8 +297,8 @@ public class ContainerBackpack extends Container {
         ItemStack stack = slot.getStack();
         ItemStack copy = stack.copy();
 
-        // 获取背包和总槽位的数量
-        int backpackSize = this.backpackInventory.getSizeInventory();
+        // 获取容器中背包槽位（当前页）和总槽位的数量
+        int backpackSize = InventoryBackpackPage.PAGE_SIZE;
         int totalSlots = this.inventorySlots.size();
 
         // 确定起始和结束槽位索引
@@ -118,145 +337,84 @@ public class ContainerBackpack extends Container {
         return stack.getCount() == copy.getCount() ? ItemStack.EMPTY : copy;
     }
 
+    /**
+     * 将物品堆合并到指定范围的槽位中
+     * 目标是背包时交给背包的插入索引处理，只访问匹配的槽位；目标是玩家库存时使用原版逻辑
+     * 服务器端放入整个背包。客户端没有其他页面的内容，只预测放入当前页，真实结果由服务器在下一次同步中发送
+     *
+     * @param stack            要合并的物品堆
+     * @param startIndex       起始槽位索引
+     * @param endIndex         结束槽位索引（不包含）
+     * @param reverseDirection 是否从后往前合并
+     * @return 如果有物品被移动则返回true
+     */
     @Override
     protected boolean mergeItemStack(ItemStack stack, int startIndex, int endIndex, boolean reverseDirection) {
-        boolean flag = false;
-        int i = startIndex;
-
-        if (reverseDirection) {
-            i = endIndex - 1;
-        }
-
-        boolean flag1 = false;
-        boolean flag2 = false;
         if (startIndex == 0) {
-            flag1 = true;
-            flag2 = true;
-        }
-
-        if (stack.isStackable()) {
-            while (!stack.isEmpty()) {
-                if (reverseDirection) {
-                    if (flag1 && i < startIndex) {
-                        flag1 = false;
-                        i = endIndex - 1;
-                    } else if (i < startIndex) {
-                        break;
-                    }
-                } else {
-                    if (flag1 && i >= endIndex) {
-                        flag1 = false;
-                        i = startIndex;
-                    } else if (i >= endIndex) {
-                        break;
-                    }
-                }
-
-                Slot slot = this.inventorySlots.get(i);
-                ItemStack itemstack = slot.getStack();
-                if (flag1){
-                    ItemStack memoryitemstack = this.backpackInventory.getMemoryItem(i);
-                    if ((itemstack.getItem() == memoryitemstack.getItem()) && !itemstack.isEmpty() && itemstack.getItem() == stack.getItem() && (!stack.getHasSubtypes() || stack.getMetadata() == itemstack.getMetadata()) && ItemStack.areItemStackTagsEqual(stack, itemstack)) {
-                        int j = itemstack.getCount() + stack.getCount();
-                        int maxSize = Math.min(slot.getSlotStackLimit(), stack.getMaxStackSize());
-
-                        if (j <= maxSize) {
-                            stack.setCount(0);
-                            itemstack.setCount(j);
-                            slot.onSlotChanged();
-                            flag = true;
-                        } else if (itemstack.getCount() < maxSize) {
-                            stack.shrink(maxSize - itemstack.getCount());
-                            itemstack.setCount(maxSize);
-                            slot.onSlotChanged();
-                            flag = true;
-                        }
-                    }
-                } else if (!itemstack.isEmpty() && itemstack.getItem() == stack.getItem() && (!stack.getHasSubtypes() || stack.getMetadata() == itemstack.getMetadata()) && ItemStack.areItemStackTagsEqual(stack, itemstack)) {
-                    int j = itemstack.getCount() + stack.getCount();
-                    int maxSize = Math.min(slot.getSlotStackLimit(), stack.getMaxStackSize());
-
-                    if (j <= maxSize) {
-                        stack.setCount(0);
-                        itemstack.setCount(j);
-                        slot.onSlotChanged();
-                        flag = true;
-                    } else if (itemstack.getCount() < maxSize) {
-                        stack.shrink(maxSize - itemstack.getCount());
-                        itemstack.setCount(maxSize);
-                        slot.onSlotChanged();
-                        flag = true;
-                    }
-                }
-
-                if (reverseDirection) {
-                    --i;
-                } else {
-                    ++i;
-                }
+            if (this.clientSide) {
+                int offset = this.page.getOffset();
+                int end = Math.min(offset + InventoryBackpackPage.PAGE_SIZE, this.backpackInventory.getSizeInventory());
+                return this.backpackInventory.insertItem(stack, offset, end, reverseDirection);
             }
+            // 插入整个背包而不只是当前页，其他页面的物品也会被合并
+            this.resyncAfterQuickMove = true;
+            return this.backpackInventory.insertItem(stack, 0, this.backpackInventory.getSizeInventory(), reverseDirection);
         }
+        return super.mergeItemStack(stack, startIndex, endIndex, reverseDirection);
+    }
 
-        if (!stack.isEmpty()) {
-            if (reverseDirection) {
-                i = endIndex - 1;
-            } else {
-                i = startIndex;
-            }
-
-            while (true) {
-                if (reverseDirection) {
-                    if (i < startIndex && flag2) {
-                        flag2 = false;
-                        i = endIndex - 1;
-                    } else if (i < startIndex) {
-                        break;
-                    }
-                } else {
-                    if (i >= endIndex && flag2) {
-                        flag2 = false;
-                        i = startIndex;
-                    } else if (i >= endIndex) {
-                        break;
-                    }
-                }
+    /**
+     * 把玩家主库存（不含快捷栏）中背包里已有或有记忆物品的物品全部放入背包
+     * 作为一次操作执行，背包只保存一次，变化在下一次 detectAndSendChanges 中一起同步
+     *
+     * @param player 玩家实体
+     * @return 放入背包的物品数量
+     */
+    public int depositAll(EntityPlayer player) {
+        return this.backpackInventory.depositMatching(player.inventory, 9, 36);
+    }
 
-                Slot slot1 = this.inventorySlots.get(i);
-                ItemStack itemstack1 = slot1.getStack();
-                if (flag2){
-                    ItemStack memoryitemstack1 = this.backpackInventory.getMemoryItem(i);
-                    if ((stack.getItem() == memoryitemstack1.getItem()) && itemstack1.isEmpty()) {
-                        if (stack.getCount() > slot1.getSlotStackLimit()) {
-                            slot1.putStack(stack.splitStack(slot1.getSlotStackLimit()));
-                        } else {
-                            slot1.putStack(stack.splitStack(stack.getCount()));
-                        }
-
-                        slot1.onSlotChanged();
-                        flag = true;
-                        break;
-                    }
-                } else if (itemstack1.isEmpty() && slot1.isItemValid(stack)) {
-                    if (stack.getCount() > slot1.getSlotStackLimit()) {
-                        slot1.putStack(stack.splitStack(slot1.getSlotStackLimit()));
-                    } else {
-                        slot1.putStack(stack.splitStack(stack.getCount()));
-                    }
+    /**
+     * 用背包中的物品补满玩家主库存和快捷栏中未堆满的物品堆
+     *
+     * @param player 玩家实体
+     * @return 从背包取出的物品数量
+     */
+    public int restock(EntityPlayer player) {
+        return this.backpackInventory.restock(player.inventory, 0, 36);
+    }
 
-                    slot1.onSlotChanged();
-                    flag = true;
-                    break;
-                }
+    /**
+     * 整理整个背包，变化的槽位在下一次 detectAndSendChanges 中一起同步
+     *
+     * @return 如果有槽位发生变化则返回true
+     */
+    public boolean sort() {
+        return this.backpackInventory.sort();
+    }
 
-                if (reverseDirection) {
-                    --i;
-                } else {
-                    ++i;
-                }
+    /**
+     * 切换背包的自动拾取，并在快捷栏上方提示结果
+     * 缓存中的库存可能绑定着旧的物品堆对象，因此按 UUID 在玩家库存中查找背包物品堆，修改随库存同步到客户端
+     *
+     * @param player 玩家实体
+     * @return 如果找到了背包物品堆则返回true
+     */
+    public boolean toggleAutoPickup(EntityPlayer player) {
+        UUID id = this.backpackInventory.getBackpackId();
+        if (id == null) {
+            return false;
+        }
+        for (int i = 0; i < player.inventory.getSizeInventory(); i++) {
+            ItemStack stack = player.inventory.getStackInSlot(i);
+            if (stack.getItem() instanceof ItemModBackpack && id.equals(BackpackStore.getId(stack))) {
+                boolean enabled = ItemModBackpack.toggleAutoPickup(stack);
+                player.sendStatusMessage(new TextComponentTranslation(
+                        enabled ? "message.backpack.autoPickup.on" : "message.backpack.autoPickup.off"), true);
+                return true;
             }
         }
-
-        return flag;
+        return false;
     }
 
     /**
@@ -265,19 +423,20 @@ public class ContainerBackpack extends Container {
      * @param mouseButton 鼠标按钮，0表示左键，1表示右键
      */
     public void handleSlotInteraction(int slotId, int mouseButton) {
-        // 确保槽ID在背包库存的有效范围内
-        if (slotId >= 0 && slotId < this.backpackInventory.getSizeInventory()) {
+        // 确保槽ID在当前页的有效范围内
+        if (slotId >= 0 && slotId < InventoryBackpackPage.PAGE_SIZE && this.page.contains(slotId)) {
+            int backpackIndex = this.page.getOffset() + slotId;
             // 根据鼠标按钮决定是设置记忆中的物品还是清除记忆中的物品
             if (mouseButton == 0) {
                 Slot slot = this.inventorySlots.get(slotId);
                 ItemStack stack = slot.getStack();
                 // 左键点击时，将当前槽中的物品设置为记忆中的物品
                 if (!stack.isEmpty()) {
-                    this.backpackInventory.setMemoryItem(slotId, stack);
+                    this.backpackInventory.setMemoryItem(backpackIndex, stack);
                 }
             } else if (mouseButton == 1) {
                 // 右键点击时，清除当前槽中的记忆物品
-                this.backpackInventory.clearMemoryItem(slotId);
+                this.backpackInventory.clearMemoryItem(backpackIndex);
             }
         }
     }
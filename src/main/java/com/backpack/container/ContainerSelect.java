@@ -1,14 +1,17 @@
 package com.backpack.container;
 
 import com.backpack.inventory.backpack.InventoryBackpackFunction;
+import com.backpack.network.MemorySyncMessage;
 import com.backpack.network.PacketHandler;
 import com.backpack.network.SelectQuickMove;
 import com.backpack.slot.SlotBackpack;
 import mcp.MethodsReturnNonnullByDefault;
 import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.entity.player.InventoryPlayer;
 import net.minecraft.inventory.ClickType;
 import net.minecraft.inventory.Container;
+import net.minecraft.inventory.IContainerListener;
 import net.minecraft.inventory.Slot;
 import net.minecraft.item.ItemStack;
 import net.minecraft.util.EnumHand;
@@ -26,10 +29,13 @@ public class ContainerSelect extends Container {
     private final InventoryPlayer playerInventory;
 
     private final InventoryBackpackFunction backpackInventory;
+    // 已经发送给玩家的记忆物品版本号
+    private long memoryVersionSent;
 
     public ContainerSelect(InventoryPlayer playerInventory, InventoryBackpackFunction backpackInventory) {
         this.playerInventory = playerInventory;
         this.backpackInventory = backpackInventory;
+        backpackInventory.openInventory(playerInventory.player);
 
         addSlotToContainer(new SlotBackpack(backpackInventory, 27, 42, 7));
         addSlotToContainer(new SlotBackpack(backpackInventory, 28, 62, 11));
@@ -43,6 +49,67 @@ public class ContainerSelect extends Container {
 
     }
 
+    /**
+     * 获取容器对应的背包库存
+     *
+     * @return 背包库存
+     */
+    public InventoryBackpackFunction getBackpackInventory() {
+        return this.backpackInventory;
+    }
+
+    /**
+     * 添加容器监听器，服务器端向玩家发送记忆物品
+     *
+     * @param listener 容器监听器
+     */
+    @Override
+    public void addListener(IContainerListener listener) {
+        super.addListener(listener);
+        if (listener instanceof EntityPlayerMP) {
+            PacketHandler.sendTo(new MemorySyncMessage(this.windowId, this.backpackInventory), (EntityPlayerMP) listener);
+            this.memoryVersionSent = this.backpackInventory.getMemoryVersion();
+        }
+    }
+
+    /**
+     * 记忆物品发生变化时，只把变化的槽位发送给玩家
+     */
+    private void sendMemoryChanges() {
+        long version = this.backpackInventory.getMemoryVersion();
+        if (version == this.memoryVersionSent) {
+            return;
+        }
+        MemorySyncMessage message = new MemorySyncMessage(this.windowId, this.backpackInventory,
+                this.backpackInventory.getMemorySlotsChangedSince(this.memoryVersionSent));
+        this.memoryVersionSent = version;
+        for (IContainerListener listener : this.listeners) {
+            if (listener instanceof EntityPlayerMP) {
+                PacketHandler.sendTo(message, (EntityPlayerMP) listener);
+            }
+        }
+    }
+
+    /**
+     * 容器关闭时调用，立即写回背包内容
+     *
+     * @param playerIn 玩家实体
+     */
+    @Override
+    public void onContainerClosed(EntityPlayer playerIn) {
+        super.onContainerClosed(playerIn);
+        this.backpackInventory.closeInventory(playerIn);
+    }
+
+    /**
+     * 检测槽位变化并同步给监听者，同时同步变化的记忆物品
+     */
+    @Override
+    public void detectAndSendChanges() {
+        super.detectAndSendChanges();
+        sendMemoryChanges();
+    }
+
     @Override
     public boolean canInteractWith(EntityPlayer playerIn) {
         return this.backpackInventory.isUsableByPlayer(playerIn);
@@ -160,9 +227,14 @@ public class ContainerSelect extends Container {
                 }
 
                 // 阶段2：槽位为空时检测记忆标签
-                ItemStack memoryTag = backpackInventory.getMemoryItem(slotIndex);
-                if (!memoryTag.isEmpty()) {
+                if (backpackInventory.hasMemoryItem(slotIndex)) {
+                    // 先通过记忆物品索引排除其他物品的槽位，不需要解码记忆物品
+                    if (!backpackInventory.isMemoryItem(slotIndex, mainHandStack.getItem())) {
+                        continue; // 不匹配记忆标签，跳过
+                    }
+
                     // 记忆标签存在时检测匹配性
+                    ItemStack memoryTag = backpackInventory.getMemoryItem(slotIndex);
                     boolean tagMatch = ItemStack.areItemsEqual(memoryTag, mainHandStack)
                             && ItemStack.areItemStackTagsEqual(memoryTag, mainHandStack);
 
@@ -181,7 +253,7 @@ public class ContainerSelect extends Container {
             // 最后进行环境判断
             if (player.world.isRemote) {
                 // 客户端发送网络包
-                PacketHandler.sendToServer(new SelectQuickMove());
+                PacketHandler.sendToServer(SelectQuickMove.INSTANCE);
             } else {
                 player.closeScreen();
             }
@@ -0,0 +1,192 @@
+package com.backpack.gui;
+
+import com.backpack.inventory.backpack.InventoryBackpackFunction;
+import com.backpack.metrics.BackpackMetrics;
+import com.backpack.slot.SlotBackpack;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.gui.Gui;
+import net.minecraft.client.renderer.BufferBuilder;
+import net.minecraft.client.renderer.GlStateManager;
+import net.minecraft.client.renderer.RenderHelper;
+import net.minecraft.client.renderer.RenderItem;
+import net.minecraft.client.renderer.Tessellator;
+import net.minecraft.client.renderer.vertex.DefaultVertexFormats;
+import net.minecraft.inventory.Container;
+import net.minecraft.item.ItemStack;
+import net.minecraftforge.fml.relauncher.Side;
+import net.minecraftforge.fml.relauncher.SideOnly;
+import org.lwjgl.opengl.GL11;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 记忆物品的虚影渲染层
+ * 缓存需要绘制虚影的槽位和记忆物品，只有记忆物品、槽位是否为空或当前页发生变化时才重新收集；
+ * 所有半透明遮罩合并为一次绘制，没有虚影时不修改任何渲染状态。
+ * 每帧的耗时记录在 BackpackMetrics.GHOST_LAYER 中；以 -Dbackpack.ghostLayerCache=false 启动时
+ * 按缓存之前的方式逐个槽位绘制，用于在同一个背包上对比两种方式的耗时。
+ */
+@SideOnly(Side.CLIENT)
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class GhostItemLayer {
+
+    // 遮罩颜色的透明度，与原来的 0x99000000 一致
+    private static final float OVERLAY_ALPHA = 0x99 / 255.0F;
+    // 是否使用缓存，关闭时每帧重新读取记忆物品并逐个槽位绘制遮罩
+    private static final boolean CACHE_ENABLED = !"false".equals(System.getProperty("backpack.ghostLayerCache"));
+
+    private final InventoryBackpackFunction backpackInventory;
+    // 容器中前 slotCount 个槽位是背包槽位
+    private final int slotCount;
+
+    // 缓存的虚影：槽位坐标和记忆物品
+    private final List<int[]> ghostPositions = new ArrayList<>();
+    private final List<ItemStack> ghostItems = new ArrayList<>();
+    // 缓存建立时的记忆物品版本号、第一个槽位对应的背包索引和空槽位掩码
+    private long cachedVersion = -1;
+    private int cachedOffset = -1;
+    private long cachedEmptyMask = -1;
+
+    /**
+     * @param backpackInventory 背包库存
+     * @param slotCount         容器中背包槽位的数量，不能超过64
+     */
+    public GhostItemLayer(InventoryBackpackFunction backpackInventory, int slotCount) {
+        this.backpackInventory = backpackInventory;
+        this.slotCount = Math.min(slotCount, Long.SIZE);
+    }
+
+    /**
+     * 在容器的前景层绘制记忆物品虚影。
+     *
+     * @param mc        Minecraft 实例
+     * @param container 容器，前 slotCount 个槽位必须是 SlotBackpack
+     */
+    public void draw(Minecraft mc, Container container) {
+        long start = BackpackMetrics.startTimer();
+        if (CACHE_ENABLED) {
+            drawCached(mc, container);
+        } else {
+            drawUncached(mc, container);
+        }
+        BackpackMetrics.GHOST_LAYER.stop(start);
+    }
+
+    private void drawCached(Minecraft mc, Container container) {
+        long emptyMask = 0;
+        for (int slotId = 0; slotId < this.slotCount; ++slotId) {
+            if (container.getSlot(slotId).getStack().isEmpty()) {
+                emptyMask |= 1L << slotId;
+            }
+        }
+        int offset = ((SlotBackpack) container.getSlot(0)).getBackpackIndex();
+        long version = this.backpackInventory.getMemoryVersion();
+        if (emptyMask != this.cachedEmptyMask || offset != this.cachedOffset || version != this.cachedVersion) {
+            rebuild(container, emptyMask);
+            this.cachedEmptyMask = emptyMask;
+            this.cachedOffset = offset;
+            this.cachedVersion = version;
+        }
+
+        if (this.ghostItems.isEmpty()) {
+            return;
+        }
+
+        // 开始绘制前设置渲染状态
+        GlStateManager.pushMatrix();
+        RenderHelper.disableStandardItemLighting();
+        GlStateManager.disableLighting(); // 禁用光照
+        GlStateManager.disableDepth(); // 禁用深度测试
+        RenderHelper.enableGUIStandardItemLighting();
+        GlStateManager.enableBlend(); // 启用混合
+        GlStateManager.tryBlendFuncSeparate(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA, 1, 0); // 混合模式
+
+        // 绘制物品
+        RenderItem renderItem = mc.getRenderItem();
+        for (int i = 0; i < this.ghostItems.size(); i++) {
+            int[] position = this.ghostPositions.get(i);
+            renderItem.renderItemAndEffectIntoGUI(this.ghostItems.get(i), position[0], position[1]);
+        }
+
+        // 一次绘制所有半透明黑色遮罩
+        GlStateManager.disableTexture2D();
+        GlStateManager.enableBlend();
+        GlStateManager.tryBlendFuncSeparate(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA, 1, 0);
+        GlStateManager.color(0.0F, 0.0F, 0.0F, OVERLAY_ALPHA);
+        Tessellator tessellator = Tessellator.getInstance();
+        BufferBuilder buffer = tessellator.getBuffer();
+        buffer.begin(GL11.GL_QUADS, DefaultVertexFormats.POSITION);
+        for (int[] position : this.ghostPositions) {
+            int x = position[0];
+            int y = position[1];
+            buffer.pos(x, y + 16, 0.0D).endVertex();
+            buffer.pos(x + 16, y + 16, 0.0D).endVertex();
+            buffer.pos(x + 16, y, 0.0D).endVertex();
+            buffer.pos(x, y, 0.0D).endVertex();
+        }
+        tessellator.draw();
+        GlStateManager.enableTexture2D();
+        GlStateManager.color(1.0F, 1.0F, 1.0F, 1.0F);
+
+        // 结束绘制后恢复渲染状态
+        GlStateManager.enableDepth();
+        GlStateManager.enableLighting();
+        GlStateManager.disableBlend();
+        GlStateManager.popMatrix();
+    }
+
+    /**
+     * 缓存之前的绘制方式：每帧读取每个槽位的记忆物品，每个遮罩单独绘制。
+     */
+    private void drawUncached(Minecraft mc, Container container) {
+        GlStateManager.pushMatrix();
+        RenderHelper.disableStandardItemLighting();
+        GlStateManager.disableLighting();
+        GlStateManager.disableDepth();
+        RenderHelper.enableGUIStandardItemLighting();
+        GlStateManager.enableBlend();
+        GlStateManager.tryBlendFuncSeparate(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA, 1, 0);
+
+        for (int slotId = 0; slotId < this.slotCount; ++slotId) {
+            SlotBackpack slot = (SlotBackpack) container.getSlot(slotId);
+            if (!slot.isPresent()) {
+                break;
+            }
+            ItemStack memoryItem = this.backpackInventory.getMemoryItem(slot.getBackpackIndex());
+            if (slot.getStack().isEmpty() && !memoryItem.isEmpty()) {
+                mc.getRenderItem().renderItemAndEffectIntoGUI(memoryItem, slot.xPos, slot.yPos);
+                Gui.drawRect(slot.xPos, slot.yPos, slot.xPos + 16, slot.yPos + 16, 0x99000000);
+            }
+        }
+
+        GlStateManager.enableDepth();
+        GlStateManager.enableLighting();
+        GlStateManager.disableBlend();
+        GlStateManager.popMatrix();
+    }
+
+    /**
+     * 重新收集需要绘制虚影的槽位：槽位为空且设置了记忆物品。
+     */
+    private void rebuild(Container container, long emptyMask) {
+        this.ghostPositions.clear();
+        this.ghostItems.clear();
+        for (int slotId = 0; slotId < this.slotCount; ++slotId) {
+            if ((emptyMask & (1L << slotId)) == 0) {
+                continue;
+            }
+            SlotBackpack slot = (SlotBackpack) container.getSlot(slotId);
+            int backpackIndex = slot.getBackpackIndex();
+            // 最后一页可能不满，只通过索引判断是否有记忆物品，不解码
+            if (!slot.isPresent() || !this.backpackInventory.hasMemoryItem(backpackIndex)) {
+                continue;
+            }
+            this.ghostPositions.add(new int[]{slot.xPos, slot.yPos});
+            this.ghostItems.add(this.backpackInventory.getMemoryItem(backpackIndex));
+        }
+    }
+}
@@ -7,6 +7,9 @@ import com.backpack.gui.backpack.GuiBackpack;
 import com.backpack.gui.select.GuiSelect;
 import com.backpack.inventory.backpack.InventoryBackpackFunction;
 import com.backpack.item.ItemModBackpack;
+import com.backpack.metrics.BackpackMetrics;
+import com.backpack.storage.BackpackInventoryCache;
+import com.backpack.storage.BackpackStore;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.item.ItemStack;
 import net.minecraft.world.World;
@@ -17,6 +20,8 @@ import net.minecraftforge.fml.relauncher.SideOnly;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.UUID;
+
 public class GuiHandler implements IGuiHandler {
 
     private static final Logger LOGGER = LogManager.getLogger();
@@ -31,7 +36,8 @@ public class GuiHandler implements IGuiHandler {
             case Backpack.GUI_ID_BACKPACK:
                 ItemStack backpackItem = player.inventory.getStackInSlot(x);
                 if (!backpackItem.isEmpty() && backpackItem.getItem() instanceof ItemModBackpack) {
-                    return new ContainerBackpack(player.inventory, new InventoryBackpackFunction(backpackItem));
+                    BackpackMetrics.BACKPACK_OPENS.increment();
+                    return new ContainerBackpack(player.inventory, createServerInventory(player, backpackItem));
                 } else {
                     LOGGER.warn("服务器，玩家打开背包界面 {} 在槽位 {} 中没有背包。", player.getName(), x);
                 }
@@ -39,7 +45,8 @@ public class GuiHandler implements IGuiHandler {
             case Backpack.GUI_ID_SELECT:
                 ItemStack backpackItem1 = player.inventory.getStackInSlot(x);
                 if (!backpackItem1.isEmpty() && backpackItem1.getItem() instanceof ItemModBackpack) {
-                    return new ContainerSelect(player.inventory, new InventoryBackpackFunction(backpackItem1));
+                    BackpackMetrics.SELECT_OPENS.increment();
+                    return new ContainerSelect(player.inventory, createServerInventory(player, backpackItem1));
                 } else {
                     LOGGER.warn("服务器，玩家打开选择界面 {} 在槽位 {} 中没有背包。", player.getName(), x);
                 }
@@ -48,6 +55,58 @@ public class GuiHandler implements IGuiHandler {
         return null;
     }
 
+    /**
+     * 获取服务器端使用的背包库存，修改合并到每个服务器刻写回一次
+     * 背包存储可用时从缓存中获取已解码的库存。玩家身上有其他物品堆与它共用 UUID 时
+     * （例如创造模式复制或带 NBT 的 /give），先让打开的物品堆改用新的 UUID，两者的内容从此各自独立
+     *
+     * @param player       打开背包的玩家
+     * @param backpackItem 背包物品堆
+     * @return 背包库存
+     */
+    private static InventoryBackpackFunction createServerInventory(EntityPlayer player, ItemStack backpackItem) {
+        BackpackStore store = BackpackStore.get();
+        if (store != null) {
+            if (hasDuplicate(player, backpackItem)) {
+                BackpackInventoryCache.separate(backpackItem, store);
+            }
+            return BackpackInventoryCache.get(backpackItem, store);
+        }
+        InventoryBackpackFunction inventory = new InventoryBackpackFunction(backpackItem);
+        inventory.setWriteBack(true);
+        return inventory;
+    }
+
+    /**
+     * 检查玩家库存中是否有另一个物品堆与背包绑定了同一个 UUID。
+     */
+    private static boolean hasDuplicate(EntityPlayer player, ItemStack backpackItem) {
+        UUID id = BackpackStore.getId(backpackItem);
+        if (id == null) {
+            return false;
+        }
+        for (int i = 0; i < player.inventory.getSizeInventory(); i++) {
+            ItemStack other = player.inventory.getStackInSlot(i);
+            if (other != backpackItem && other.getItem() instanceof ItemModBackpack && id.equals(BackpackStore.getId(other))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 创建客户端使用的背包库存
+     * 槽位数量以服务器通过 GUI 参数告知的为准，物品堆上的记录可能还没有同步过来
+     *
+     * @param backpackItem 背包物品堆
+     * @param slots        服务器告知的槽位数量，0 表示未知
+     * @return 背包库存
+     */
+    @SideOnly(Side.CLIENT)
+    private static InventoryBackpackFunction createClientInventory(ItemStack backpackItem, int slots) {
+        return new InventoryBackpackFunction(backpackItem, slots > 0 ? slots : ItemModBackpack.getSlotCount(backpackItem));
+    }
+
     @Override
     @SideOnly(Side.CLIENT)
     public Object getClientGuiElement(int ID, EntityPlayer player, World world, int x, int y, int z) {
@@ -55,7 +114,7 @@ public class GuiHandler implements IGuiHandler {
             case Backpack.GUI_ID_BACKPACK:
                 ItemStack backpackItem = player.inventory.getStackInSlot(x);
                 if (!backpackItem.isEmpty() && backpackItem.getItem() instanceof ItemModBackpack) {
-                    return new GuiBackpack(player.inventory, new InventoryBackpackFunction(backpackItem), x);
+                    return new GuiBackpack(player.inventory, createClientInventory(backpackItem, y), x);
                 } else {
                     LOGGER.warn("客户端，玩家打开背包界面 {} 在槽位 {} 中没有背包。", player.getName(), x);
                 }
@@ -63,7 +122,7 @@ public class GuiHandler implements IGuiHandler {
             case Backpack.GUI_ID_SELECT:
                 ItemStack backpackItem1 = player.inventory.getStackInSlot(x);
                 if (!backpackItem1.isEmpty() && backpackItem1.getItem() instanceof ItemModBackpack) {
-                    return new GuiSelect(player, player.inventory, new InventoryBackpackFunction(backpackItem1));
+                    return new GuiSelect(player, player.inventory, createClientInventory(backpackItem1, y));
                 } else {
                     LOGGER.warn("客户端，玩家打开选择界面 {} 在槽位 {} 中没有背包。", player.getName(), x);
                 }
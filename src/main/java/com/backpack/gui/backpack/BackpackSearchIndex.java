@@ -0,0 +1,222 @@
+package com.backpack.gui.backpack;
+
+import com.backpack.inventory.backpack.InventoryBackpack;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.util.ITooltipFlag;
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.text.TextFormatting;
+import net.minecraftforge.fml.relauncher.Side;
+import net.minecraftforge.fml.relauncher.SideOnly;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 背包内容的搜索索引
+ * 每个槽位的名称、模组ID和提示文本在第一次需要时生成并缓存，槽位变化时只清除该槽位的缓存。
+ * 搜索结果也会缓存：输入在原有关键字后追加字符时只重新检查上次匹配的槽位，
+ * 槽位变化时只重新检查变化的槽位；大量槽位同时变化时整体作废，在下次查询时再重建。
+ * 关键字以 @ 开头时匹配模组ID，以 # 开头时匹配提示文本，否则匹配物品名称和注册名（下划线视为空格）。
+ * 其他页面的结果由服务器的 BackpackPageSearch 给出，它不能使用客户端语言的名称，只按注册名等与语言无关的数据匹配。
+ */
+@SideOnly(Side.CLIENT)
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class BackpackSearchIndex {
+
+    private final InventoryBackpack inventory;
+    private final int size;
+    // 已经处理到的内容版本号和每个槽位的版本号
+    private long indexedVersion;
+    private final long[] indexedSlotVersions;
+    // 每个槽位的搜索文本缓存，尚未生成时为 null
+    private final String[] names;
+    private final String[] modIds;
+    private final String[] tooltips;
+
+    // 当前关键字，已转为小写并去掉模式前缀
+    private String query = "";
+    // 当前搜索模式：0 名称，'@' 模组ID，'#' 提示文本
+    private char mode = 0;
+    // 当前关键字匹配的槽位，matchesValid 为 false 时需要重新计算
+    private final BitSet matches = new BitSet();
+    private boolean matchesValid = false;
+
+    public BackpackSearchIndex(InventoryBackpack inventory) {
+        this.inventory = inventory;
+        this.size = inventory.getSizeInventory();
+        this.indexedVersion = inventory.getContentsVersion();
+        this.indexedSlotVersions = new long[this.size];
+        for (int i = 0; i < this.size; i++) {
+            this.indexedSlotVersions[i] = inventory.getSlotVersion(i);
+        }
+        this.names = new String[this.size];
+        this.modIds = new String[this.size];
+        this.tooltips = new String[this.size];
+    }
+
+    /**
+     * 设置搜索关键字。
+     *
+     * @param text 输入框中的文本
+     */
+    public void setQuery(String text) {
+        String normalized = text.trim().toLowerCase(Locale.ROOT);
+        char newMode = 0;
+        if (!normalized.isEmpty() && (normalized.charAt(0) == '@' || normalized.charAt(0) == '#')) {
+            newMode = normalized.charAt(0);
+            normalized = normalized.substring(1);
+        }
+        if (newMode == 0) {
+            normalized = normalized.replace('_', ' ');
+        }
+        if (newMode == this.mode && normalized.equals(this.query)) {
+            return;
+        }
+        refresh();
+        // 追加字符只会让结果变少，只需要检查上次匹配的槽位
+        boolean narrowing = this.matchesValid && newMode == this.mode && normalized.startsWith(this.query);
+        this.mode = newMode;
+        this.query = normalized;
+        if (narrowing) {
+            for (int i = this.matches.nextSetBit(0); i >= 0; i = this.matches.nextSetBit(i + 1)) {
+                if (!test(i)) {
+                    this.matches.clear(i);
+                }
+            }
+        } else {
+            this.matchesValid = false;
+        }
+    }
+
+    /**
+     * 是否正在搜索。
+     *
+     * @return 关键字不为空时返回true
+     */
+    public boolean isActive() {
+        return !this.query.isEmpty();
+    }
+
+    /**
+     * 检查槽位是否匹配当前关键字，没有关键字时所有槽位都匹配。
+     *
+     * @param index 背包槽位索引
+     * @return 如果匹配则返回true
+     */
+    public boolean matches(int index) {
+        if (!isActive()) {
+            return true;
+        }
+        refresh();
+        if (!this.matchesValid) {
+            this.matches.clear();
+            for (int i = 0; i < this.size; i++) {
+                if (test(i)) {
+                    this.matches.set(i);
+                }
+            }
+            this.matchesValid = true;
+        }
+        return this.matches.get(index);
+    }
+
+    /**
+     * 根据背包内容的版本号处理发生变化的槽位。
+     * 内容没有变化时只比较一次版本号；变化的槽位超过四分之一时整体作废。
+     */
+    public void refresh() {
+        long version = this.inventory.getContentsVersion();
+        if (version == this.indexedVersion) {
+            return;
+        }
+        this.indexedVersion = version;
+
+        BitSet changed = new BitSet(this.size);
+        for (int i = 0; i < this.size; i++) {
+            long slotVersion = this.inventory.getSlotVersion(i);
+            if (slotVersion != this.indexedSlotVersions[i]) {
+                this.indexedSlotVersions[i] = slotVersion;
+                changed.set(i);
+            }
+        }
+
+        if (changed.cardinality() > this.size / 4) {
+            Arrays.fill(this.names, null);
+            Arrays.fill(this.modIds, null);
+            Arrays.fill(this.tooltips, null);
+            this.matchesValid = false;
+            return;
+        }
+        for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1)) {
+            this.names[i] = null;
+            this.modIds[i] = null;
+            this.tooltips[i] = null;
+            if (this.matchesValid) {
+                this.matches.set(i, isActive() && test(i));
+            }
+        }
+    }
+
+    /**
+     * 检查槽位中的物品是否匹配当前关键字。
+     */
+    private boolean test(int index) {
+        ItemStack stack = this.inventory.getStackInSlot(index);
+        if (stack.isEmpty()) {
+            return false;
+        }
+        switch (this.mode) {
+            case '@':
+                return getModId(index, stack).contains(this.query);
+            case '#':
+                return getTooltip(index, stack).contains(this.query);
+            default:
+                return getName(index, stack).contains(this.query);
+        }
+    }
+
+    private String getName(int index, ItemStack stack) {
+        String name = this.names[index];
+        if (name == null) {
+            ResourceLocation registryName = stack.getItem().getRegistryName();
+            String path = registryName != null ? registryName.getResourcePath().replace('_', ' ') : "";
+            name = (stack.getDisplayName() + '\n' + path).toLowerCase(Locale.ROOT);
+            this.names[index] = name;
+        }
+        return name;
+    }
+
+    private String getModId(int index, ItemStack stack) {
+        String modId = this.modIds[index];
+        if (modId == null) {
+            ResourceLocation registryName = stack.getItem().getRegistryName();
+            modId = registryName != null ? registryName.getResourceDomain().toLowerCase(Locale.ROOT) : "";
+            this.modIds[index] = modId;
+        }
+        return modId;
+    }
+
+    /**
+     * 提示文本的生成代价最高，只在按提示文本搜索时才生成。
+     */
+    private String getTooltip(int index, ItemStack stack) {
+        String tooltip = this.tooltips[index];
+        if (tooltip == null) {
+            List<String> lines = stack.getTooltip(Minecraft.getMinecraft().player, ITooltipFlag.TooltipFlags.NORMAL);
+            StringBuilder builder = new StringBuilder();
+            for (String line : lines) {
+                String plain = TextFormatting.getTextWithoutFormattingCodes(line);
+                builder.append(plain != null ? plain : line).append('\n');
+            }
+            tooltip = builder.toString().toLowerCase(Locale.ROOT);
+            this.tooltips[index] = tooltip;
+        }
+        return tooltip;
+    }
+}
@@ -1,27 +1,35 @@
 package com.backpack.gui.backpack;
 
 import com.backpack.container.ContainerBackpack;
+import com.backpack.gui.GhostItemLayer;
 import com.backpack.gui.button.CustomButton;
 import com.backpack.inventory.backpack.InventoryBackpackFunction;
+import com.backpack.inventory.backpack.InventoryBackpackPage;
+import com.backpack.item.ItemModBackpack;
 import com.backpack.keybindings.KeyBindings;
+import com.backpack.network.BackpackActionMessage;
+import com.backpack.network.BackpackPageMessage;
+import com.backpack.network.BackpackSearchMessage;
 import com.backpack.network.MemorySlotMessage;
 import com.backpack.network.PacketHandler;
+import com.backpack.slot.SlotBackpack;
 import mcp.MethodsReturnNonnullByDefault;
 import net.minecraft.client.gui.GuiButton;
+import net.minecraft.client.gui.GuiTextField;
 import net.minecraft.client.gui.inventory.GuiContainer;
 import net.minecraft.client.renderer.GlStateManager;
-import net.minecraft.client.renderer.RenderHelper;
 import net.minecraft.entity.player.InventoryPlayer;
 import net.minecraft.inventory.ClickType;
 import net.minecraft.inventory.Slot;
 import net.minecraft.item.ItemStack;
 import net.minecraft.util.ResourceLocation;
-import net.minecraft.util.text.ITextComponent;
 import net.minecraft.util.text.TextComponentTranslation;
-import org.lwjgl.opengl.GL11;
+import org.lwjgl.input.Keyboard;
 
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.io.IOException;
+import java.util.BitSet;
 
 /**
  * GuiBackpack类扩展了GuiContainer，用于渲染背包的GUI。
@@ -35,12 +43,33 @@ public class GuiBackpack extends GuiContainer {
     private static final ResourceLocation TEXTURE = new ResourceLocation("backpack:textures/gui/backpack.png");
     // 定义按钮的纹理资源位置
     private static final ResourceLocation BUTTON_TEXTURE = new ResourceLocation("backpack:textures/gui/icons.png");
+    // 标记有搜索结果的页面使用的颜色
+    private static final int SEARCH_HIT_COLOR = 0xFFAA00;
     // 当前打开的背包 ItemStack
     private final ItemStack openBackpackStack;
+    // 当前打开的背包所在的槽位索引
+    private final int backpackSlotIndex;
+    // 自动拾取按钮，在 initGui 中创建
+    private GuiButton autoPickupButton;
     // 背包库存
     private final InventoryBackpackFunction backpackInventory;
+    // 记忆物品虚影渲染层
+    private final GhostItemLayer ghostLayer;
+    // 已翻译的标题，在 initGui 中生成，不需要每帧创建文本组件
+    private String backpackTitle = "";
+    private String inventoryTitle = "";
     // 记录槽位记忆编辑模式是否开启
     private int isEditMode = -1;
+    // 编辑模式下正在拖动涂抹使用的鼠标按钮，-1 表示没有在涂抹
+    private int paintButton = -1;
+    // 本次涂抹经过的槽位
+    private final BitSet paintedSlots = new BitSet();
+    // 背包内容的搜索索引
+    private final BackpackSearchIndex searchIndex;
+    // 搜索输入框，在 initGui 中创建
+    private GuiTextField searchField;
+    // 最后一次发送给服务器的搜索文本
+    private String searchSent = "";
 
     /**
      * 构造函数，初始化背包GUI。
@@ -56,21 +85,75 @@ public class GuiBackpack extends GuiContainer {
 
         // 获取当前打开的背包 ItemStack
         this.openBackpackStack = playerInventory.getStackInSlot(backpackSlotIndex);
+        this.backpackSlotIndex = backpackSlotIndex;
         this.backpackInventory = backpackInventory;
+        this.ghostLayer = new GhostItemLayer(backpackInventory, InventoryBackpackPage.PAGE_SIZE);
+        this.searchIndex = new BackpackSearchIndex(backpackInventory);
     }
 
     @Override
     public void initGui() {
         super.initGui();
+        this.backpackTitle = new TextComponentTranslation("container.backpack").getFormattedText();
+        this.inventoryTitle = new TextComponentTranslation("container.inventory").getFormattedText();
         this.buttonList.add(new CustomButton(0, this.guiLeft + 26, this.guiTop + 5, 12, 10, "", BUTTON_TEXTURE, 2, 3));
+
+        // 搜索输入框，窗口大小改变时保留已输入的内容
+        String searchText = this.searchField != null ? this.searchField.getText() : "";
+        this.searchField = new GuiTextField(10, this.fontRenderer, this.guiLeft + 42, this.guiTop + 4, 78, 12);
+        this.searchField.setMaxStringLength(50);
+        this.searchField.setText(searchText);
+        Keyboard.enableRepeatEvents(true);
+
+        // 整理按钮
+        this.buttonList.add(new GuiButton(5, this.guiLeft + 124, this.guiTop + 4, 12, 12, "S"));
+
+        // 背包超过一页时显示翻页按钮
+        ContainerBackpack container = (ContainerBackpack) this.inventorySlots;
+        if (container.getPageCount() > 1) {
+            this.buttonList.add(new GuiButton(1, this.guiLeft + 140, this.guiTop + 4, 12, 12, "<"));
+            this.buttonList.add(new GuiButton(2, this.guiLeft + 156, this.guiTop + 4, 12, 12, ">"));
+        }
+
+        // 批量放入和补充按钮，位于玩家库存标题一侧
+        this.buttonList.add(new GuiButton(3, this.guiLeft + 140, this.guiTop + 90, 12, 12, "\u2193"));
+        this.buttonList.add(new GuiButton(4, this.guiLeft + 156, this.guiTop + 90, 12, 12, "\u2191"));
+
+        // 自动拾取按钮，开启时文字为绿色
+        this.autoPickupButton = new GuiButton(6, this.guiLeft + 124, this.guiTop + 90, 12, 12, "A");
+        this.buttonList.add(this.autoPickupButton);
+        updateAutoPickupButton();
+    }
+
+    /**
+     * 按背包物品堆上的设置更新自动拾取按钮的颜色。服务器修改设置后物品堆随库存同步，需要重新从槽位中获取。
+     */
+    private void updateAutoPickupButton() {
+        ItemStack stack = this.mc.player.inventory.getStackInSlot(this.backpackSlotIndex);
+        this.autoPickupButton.packedFGColour = ItemModBackpack.isAutoPickup(stack) ? 0x55FF55 : 0;
     }
 
     @Override
     public void drawScreen(int mouseX, int mouseY, float partialTicks) {
         super.drawScreen(mouseX, mouseY, partialTicks);
+        GlStateManager.disableLighting();
+        this.searchField.drawTextBox();
         this.renderHoveredToolTip(mouseX, mouseY);
     }
 
+    @Override
+    public void updateScreen() {
+        super.updateScreen();
+        this.searchField.updateCursorCounter();
+        updateAutoPickupButton();
+    }
+
+    @Override
+    public void onGuiClosed() {
+        super.onGuiClosed();
+        Keyboard.enableRepeatEvents(false);
+    }
+
     /**
      * 绘制GUI容器的前景层。
      * 这里主要用于绘制背包界面的标题和玩家库存的标题。
@@ -80,43 +163,49 @@ public class GuiBackpack extends GuiContainer {
      */
     @Override
     protected void drawGuiContainerForegroundLayer(int mouseX, int mouseY) {
-        ITextComponent backpackTitle = new TextComponentTranslation("container.backpack");
-        ITextComponent inventoryTitle = new TextComponentTranslation("container.inventory");
-
-        fontRenderer.drawString(backpackTitle.getFormattedText(), 8, 6, 4210752);
-        fontRenderer.drawString(inventoryTitle.getFormattedText(), 8, this.ySize - 96 + 2, 4210752);
-
-        // 开始绘制前设置渲染状态
-        GlStateManager.pushMatrix();
-        RenderHelper.disableStandardItemLighting();
-        GlStateManager.disableLighting(); // 禁用光照
-        GlStateManager.disableDepth(); // 禁用深度测试
-        RenderHelper.enableGUIStandardItemLighting();
-        GlStateManager.enableBlend(); // 启用混合
-        GlStateManager.tryBlendFuncSeparate(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA, 1, 0); // 混合模式
-
-        for (int slotId = 0; slotId < this.backpackInventory.getSizeInventory(); ++slotId) {
-            Slot slot = this.inventorySlots.getSlot(slotId);
-            ItemStack itemstack = slot.getStack();
-            ItemStack memoryItem = this.backpackInventory.getMemoryItem(slotId);
-
-            if (itemstack.isEmpty() && !(memoryItem.isEmpty())) {
-                int x = slot.xPos;
-                int y = slot.yPos;
-
-                // 绘制物品
-                this.mc.getRenderItem().renderItemAndEffectIntoGUI(memoryItem, x, y);
-
-                // 叠加半透明黑色遮罩
-                drawRect(x, y, x + 16, y + 16, 0x99000000); // 半透明黑色遮罩（99 表示透明度）
+        fontRenderer.drawString(this.backpackTitle, 8, 6, 4210752);
+        fontRenderer.drawString(this.inventoryTitle, 8, this.ySize - 96 + 2, 4210752);
+
+        // 绘制页码
+        ContainerBackpack container = (ContainerBackpack) this.inventorySlots;
+        if (container.getPageCount() > 1) {
+            String pageText = (container.getPage() + 1) + "/" + container.getPageCount();
+            BitSet hits = container.getSearchPages();
+            boolean searching = this.searchIndex.isActive();
+            int color = searching && hits.get(container.getPage()) ? SEARCH_HIT_COLOR : 4210752;
+            fontRenderer.drawString(pageText, 136 - fontRenderer.getStringWidth(pageText), 6, color);
+            // 前后的页面有搜索结果时在翻页按钮的角上做标记
+            if (searching && hits.previousSetBit(container.getPage() - 1) >= 0) {
+                drawRect(148, 5, 151, 8, 0xFF000000 | SEARCH_HIT_COLOR);
+            }
+            if (searching && hits.nextSetBit(container.getPage() + 1) >= 0) {
+                drawRect(164, 5, 167, 8, 0xFF000000 | SEARCH_HIT_COLOR);
             }
         }
 
-        // 结束绘制后恢复渲染状态
+        // 绘制记忆物品虚影
+        this.ghostLayer.draw(this.mc, this.inventorySlots);
+
+        // 搜索时遮暗当前页中不匹配的槽位
+        if (this.searchIndex.isActive()) {
+            drawSearchMask();
+        }
+    }
+
+    /**
+     * 在当前页不匹配搜索关键字的背包槽位上绘制半透明遮罩。
+     */
+    private void drawSearchMask() {
+        GlStateManager.disableLighting();
+        GlStateManager.disableDepth();
+        for (int slotId = 0; slotId < InventoryBackpackPage.PAGE_SIZE; ++slotId) {
+            SlotBackpack slot = (SlotBackpack) this.inventorySlots.getSlot(slotId);
+            if (slot.isPresent() && !this.searchIndex.matches(slot.getBackpackIndex())) {
+                drawRect(slot.xPos, slot.yPos, slot.xPos + 16, slot.yPos + 16, 0xB0000000);
+            }
+        }
         GlStateManager.enableDepth();
         GlStateManager.enableLighting();
-        GlStateManager.disableBlend();
-        GlStateManager.popMatrix();
     }
 
     /**
@@ -132,6 +221,17 @@ public class GuiBackpack extends GuiContainer {
         GlStateManager.color(1.0F, 1.0F, 1.0F, 1.0F);
         mc.getTextureManager().bindTexture(TEXTURE);
         drawTexturedModalRect(this.guiLeft, this.guiTop, 0, 0, this.xSize, this.ySize);
+
+        // 最后一页超出背包大小的槽位用背景色盖住槽位边框
+        for (int slotId = 0; slotId < InventoryBackpackPage.PAGE_SIZE; ++slotId) {
+            SlotBackpack slot = (SlotBackpack) this.inventorySlots.getSlot(slotId);
+            if (!slot.isPresent()) {
+                int x = this.guiLeft + slot.xPos;
+                int y = this.guiTop + slot.yPos;
+                drawRect(x - 1, y - 1, x + 17, y + 17, 0xFFC6C6C6);
+            }
+        }
+        GlStateManager.color(1.0F, 1.0F, 1.0F, 1.0F);
     }
 
     /**
@@ -145,8 +245,7 @@ public class GuiBackpack extends GuiContainer {
     @Override
     protected void handleMouseClick(Slot slotIn, int slotId, int mouseButton, ClickType type) {
         if (isEditMode != -1) {
-            ((ContainerBackpack) this.inventorySlots).handleSlotInteraction(slotId, mouseButton);
-            PacketHandler.sendToServer(new MemorySlotMessage(slotId, mouseButton));
+            // 编辑模式下背包槽位由涂抹处理，其他槽位不响应点击
             return;
         } else {
             // 检查是否为快捷栏槽位且背包正在打开
@@ -158,12 +257,120 @@ public class GuiBackpack extends GuiContainer {
                 }
             }
         }
+        // 原版点击数据包依赖当前页，先发送队列中的翻页等操作
+        PacketHandler.flushToServer();
         // 调用父类的方法以处理其他情况
         super.handleMouseClick(slotIn, slotId, mouseButton, type);
     }
 
+    /**
+     * 编辑模式下在背包槽位上按下鼠标时开始涂抹，左键设置记忆物品，右键清除记忆物品。
+     */
+    @Override
+    protected void mouseClicked(int mouseX, int mouseY, int mouseButton) throws IOException {
+        // 点击搜索框获得焦点，右键点击清空搜索内容
+        if (this.searchField.mouseClicked(mouseX, mouseY, mouseButton)) {
+            if (mouseButton == 1) {
+                this.searchField.setText("");
+                updateSearch();
+            }
+            return;
+        }
+        if (isEditMode != -1 && (mouseButton == 0 || mouseButton == 1)) {
+            Slot slot = getBackpackSlotAt(mouseX, mouseY);
+            if (slot != null) {
+                this.paintButton = mouseButton;
+                this.paintedSlots.clear();
+                paintSlot(slot);
+                return;
+            }
+        }
+        super.mouseClicked(mouseX, mouseY, mouseButton);
+    }
+
+    /**
+     * 涂抹时拖动经过的背包槽位都应用同样的操作。
+     */
+    @Override
+    protected void mouseClickMove(int mouseX, int mouseY, int clickedMouseButton, long timeSinceLastClick) {
+        if (this.paintButton != -1) {
+            Slot slot = getBackpackSlotAt(mouseX, mouseY);
+            if (slot != null) {
+                paintSlot(slot);
+            }
+            return;
+        }
+        super.mouseClickMove(mouseX, mouseY, clickedMouseButton, timeSinceLastClick);
+    }
+
+    /**
+     * 松开鼠标时结束涂抹，把经过的所有槽位合并到一个消息中发送给服务器。
+     */
+    @Override
+    protected void mouseReleased(int mouseX, int mouseY, int state) {
+        if (this.paintButton != -1) {
+            int[] slotIds = this.paintedSlots.stream().toArray();
+            PacketHandler.queueToServer(new MemorySlotMessage(slotIds, this.paintButton));
+            this.paintButton = -1;
+            this.paintedSlots.clear();
+            return;
+        }
+        super.mouseReleased(mouseX, mouseY, state);
+    }
+
+    /**
+     * 在客户端预先应用涂抹操作，服务器处理后会发回变化的记忆物品。
+     */
+    private void paintSlot(Slot slot) {
+        if (!this.paintedSlots.get(slot.slotNumber)) {
+            this.paintedSlots.set(slot.slotNumber);
+            ((ContainerBackpack) this.inventorySlots).handleSlotInteraction(slot.slotNumber, this.paintButton);
+        }
+    }
+
+    /**
+     * 获取鼠标位置上的背包槽位。
+     *
+     * @return 背包槽位，鼠标不在背包槽位上时返回 null
+     */
+    @Nullable
+    private Slot getBackpackSlotAt(int mouseX, int mouseY) {
+        for (int slotId = 0; slotId < InventoryBackpackPage.PAGE_SIZE; ++slotId) {
+            SlotBackpack slot = (SlotBackpack) this.inventorySlots.getSlot(slotId);
+            if (slot.isPresent() && isPointInRegion(slot.xPos, slot.yPos, 16, 16, mouseX, mouseY)) {
+                return slot;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 搜索文本变化后更新当前页的遮罩，背包有多页时请服务器在整个背包中搜索。
+     */
+    private void updateSearch() {
+        String text = this.searchField.getText();
+        this.searchIndex.setQuery(text);
+        ContainerBackpack container = (ContainerBackpack) this.inventorySlots;
+        if (!this.searchIndex.isActive()) {
+            container.setSearchPages(new BitSet());
+        }
+        if (container.getPageCount() > 1 && !text.equals(this.searchSent)) {
+            this.searchSent = text;
+            PacketHandler.queueToServer(new BackpackSearchMessage(container.windowId, text));
+        }
+    }
+
     @Override
     protected void keyTyped(char typedChar, int keyCode) throws IOException {
+        // 搜索框有焦点时按键都用于输入，Esc 仍然关闭界面
+        if (this.searchField.isFocused() && keyCode != Keyboard.KEY_ESCAPE) {
+            if (this.searchField.textboxKeyTyped(typedChar, keyCode)) {
+                updateSearch();
+            }
+            return;
+        }
+        // 按键可能关闭界面或发送原版点击数据包，先发送队列中的操作
+        PacketHandler.flushToServer();
         // 检查是否是打开背包的键被按下
         if (keyCode == KeyBindings.OPEN_BACKPACK.getKeyCode()) {
             // 关闭背包 GUI
@@ -200,6 +407,28 @@ public class GuiBackpack extends GuiContainer {
             } else if (isEditMode == 0) {
                 isEditMode = -1;
             }
+        } else if (button.id == 1 || button.id == 2) {
+            // 客户端立即切换页面，服务器切换后会重新发送新页面的槽位
+            // 搜索时跳到该方向上最近的有搜索结果的页面，没有时翻到相邻页面
+            ContainerBackpack container = (ContainerBackpack) this.inventorySlots;
+            int page = container.getPage() + (button.id == 1 ? -1 : 1);
+            if (this.searchIndex.isActive()) {
+                BitSet hits = container.getSearchPages();
+                int hit = button.id == 1 ? hits.previousSetBit(page) : hits.nextSetBit(page);
+                if (hit >= 0) {
+                    page = hit;
+                }
+            }
+            if (page >= 0 && page < container.getPageCount()) {
+                container.setPage(page);
+                PacketHandler.queueToServer(new BackpackPageMessage(container.windowId, page));
+            }
+        } else if (button.id >= 3 && button.id <= 6) {
+            // 批量操作和自动拾取的切换只在服务器执行，结果随下一次同步返回
+            BackpackActionMessage.Action action = button.id == 3 ? BackpackActionMessage.Action.DEPOSIT
+                    : button.id == 4 ? BackpackActionMessage.Action.RESTOCK
+                    : button.id == 5 ? BackpackActionMessage.Action.SORT : BackpackActionMessage.Action.TOGGLE_AUTO_PICKUP;
+            PacketHandler.queueToServer(new BackpackActionMessage(this.inventorySlots.windowId, action));
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,323 @@
+package com.backpack.inventory.backpack;
+
+import com.backpack.item.ItemModBackpack;
+import com.backpack.storage.BackpackInventoryCache;
+import com.backpack.storage.BackpackStore;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.EnumFacing;
+import net.minecraftforge.common.capabilities.Capability;
+import net.minecraftforge.common.capabilities.ICapabilityProvider;
+import net.minecraftforge.fml.common.FMLCommonHandler;
+import net.minecraftforge.fml.relauncher.Side;
+import net.minecraftforge.items.CapabilityItemHandler;
+import net.minecraftforge.items.IItemHandlerModifiable;
+import net.minecraftforge.items.ItemHandlerHelper;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * 背包物品堆的 IItemHandler 能力
+ * 直接操作 {@link BackpackInventoryCache} 中已解码的背包库存，不在每次调用时解码背包。
+ * 单槽位操作通过插入索引判断槽位是否可用，不匹配的槽位不会被解码；
+ * {@link #insertItem(ItemStack, boolean)} 和 {@link #extractItem(int, boolean)} 不需要指定槽位，
+ * 只访问索引中匹配的槽位。修改只登记写回，同一服务器刻内的所有修改只保存一次。
+ * 背包内容只存在于服务器，客户端和服务器未运行时背包没有槽位。
+ * 还没有绑定 UUID 的背包在第一次被修改前视为等级对应大小的空背包，只读的调用不会为它生成 UUID 或存储条目，
+ * 从它复制出的物品堆在被修改时各自绑定自己的 UUID。
+ * 子类可以覆盖 {@link #getInventory()} 操作其他来源的背包库存。
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class BackpackItemHandler implements IItemHandlerModifiable, ICapabilityProvider {
+
+    // 还没有绑定 UUID 的背包的堆叠上限，与 InventoryBackpack 相同
+    private static final int UNASSIGNED_STACK_LIMIT = 64;
+
+    private final ItemStack backpackStack;
+    // 从缓存中取得的背包库存，缓存代数变化后重新获取
+    @Nullable
+    private InventoryBackpackFunction inventory;
+    private long cacheGeneration;
+
+    /**
+     * @param backpackStack 背包物品堆，子类覆盖 getInventory 时可以传入空物品堆
+     */
+    public BackpackItemHandler(ItemStack backpackStack) {
+        this.backpackStack = backpackStack;
+    }
+
+    @Override
+    public boolean hasCapability(Capability<?> capability, @Nullable EnumFacing facing) {
+        return capability == CapabilityItemHandler.ITEM_HANDLER_CAPABILITY;
+    }
+
+    @Nullable
+    @Override
+    public <T> T getCapability(Capability<T> capability, @Nullable EnumFacing facing) {
+        return capability == CapabilityItemHandler.ITEM_HANDLER_CAPABILITY
+                ? CapabilityItemHandler.ITEM_HANDLER_CAPABILITY.cast(this) : null;
+    }
+
+    /**
+     * 获取背包库存。缓存只在服务器线程访问，其他线程调用时返回 null。
+     *
+     * @return 背包库存，不可用时返回 null
+     */
+    @Nullable
+    public InventoryBackpackFunction getInventory() {
+        BackpackStore store = BackpackStore.get();
+        if (store == null || FMLCommonHandler.instance().getEffectiveSide() != Side.SERVER) {
+            return null;
+        }
+        if (this.inventory == null || this.cacheGeneration != BackpackInventoryCache.getGeneration()) {
+            this.inventory = BackpackInventoryCache.get(this.backpackStack, store);
+            this.cacheGeneration = BackpackInventoryCache.getGeneration();
+        }
+        return this.inventory;
+    }
+
+    /**
+     * 检查背包是否还没有绑定 UUID，也没有需要迁移的旧内容。这样的背包是空的，读取时不需要创建库存。
+     *
+     * @return 如果背包还没有内容则返回true
+     */
+    protected boolean isUnassigned() {
+        return !this.backpackStack.isEmpty() && !BackpackStore.hasId(this.backpackStack)
+                && !InventoryBackpackFunction.hasInlineContents(this.backpackStack);
+    }
+
+    /**
+     * 只读操作使用的背包库存，还没有绑定 UUID 的背包返回 null，不会创建库存。
+     *
+     * @return 背包库存，背包为空或不可用时返回 null
+     */
+    @Nullable
+    public InventoryBackpackFunction getInventoryForRead() {
+        return isUnassigned() ? null : getInventory();
+    }
+
+    /**
+     * 背包库存是否可以在当前线程使用。
+     */
+    private static boolean isAvailable() {
+        return BackpackStore.get() != null && FMLCommonHandler.instance().getEffectiveSide() == Side.SERVER;
+    }
+
+    @Override
+    public int getSlots() {
+        if (isUnassigned()) {
+            return isAvailable() ? ItemModBackpack.getSlotCount(this.backpackStack) : 0;
+        }
+        InventoryBackpackFunction inventory = getInventory();
+        return inventory != null ? inventory.getSizeInventory() : 0;
+    }
+
+    @Override
+    public ItemStack getStackInSlot(int slot) {
+        InventoryBackpackFunction inventory = getInventoryForRead();
+        return inventory != null ? inventory.getStackInSlot(slot) : ItemStack.EMPTY;
+    }
+
+    @Override
+    public int getSlotLimit(int slot) {
+        if (isUnassigned()) {
+            return isAvailable() ? UNASSIGNED_STACK_LIMIT : 0;
+        }
+        InventoryBackpackFunction inventory = getInventory();
+        return inventory != null ? inventory.getInventoryStackLimit() : 0;
+    }
+
+    /**
+     * 与背包界面的槽位规则相同：背包不能放入背包，设置了记忆物品的槽位只能放入对应的物品。
+     */
+    @Override
+    public boolean isItemValid(int slot, ItemStack stack) {
+        if (isUnassigned()) {
+            return isAvailable() && !(stack.getItem() instanceof ItemModBackpack);
+        }
+        InventoryBackpackFunction inventory = getInventory();
+        return inventory != null && isItemValid(inventory, slot, stack.getItem());
+    }
+
+    protected static boolean isItemValid(InventoryBackpackFunction inventory, int slot, Item item) {
+        if (item instanceof ItemModBackpack) {
+            return false;
+        }
+        return !inventory.hasMemoryItem(slot) || inventory.isMemoryItem(slot, item);
+    }
+
+    @Override
+    public ItemStack insertItem(int slot, ItemStack stack, boolean simulate) {
+        if (simulate && isUnassigned()) {
+            return simulateInsertIntoEmpty(stack);
+        }
+        InventoryBackpackFunction inventory = getInventory();
+        if (stack.isEmpty() || inventory == null) {
+            return stack;
+        }
+        return insertIntoSlot(inventory, slot, stack, simulate);
+    }
+
+    /**
+     * 模拟放入还没有绑定 UUID 的空背包，与放入空库存的结果相同：最多放满一个槽位。
+     *
+     * @param stack 要放入的物品堆，不会被修改
+     * @return 放不下的剩余物品
+     */
+    private ItemStack simulateInsertIntoEmpty(ItemStack stack) {
+        if (stack.isEmpty() || !isAvailable() || stack.getItem() instanceof ItemModBackpack) {
+            return stack;
+        }
+        int moved = Math.min(Math.min(UNASSIGNED_STACK_LIMIT, stack.getMaxStackSize()), stack.getCount());
+        return moved == stack.getCount() ? ItemStack.EMPTY : ItemHandlerHelper.copyStackWithSize(stack, stack.getCount() - moved);
+    }
+
+    /**
+     * 把物品堆放入背包的指定槽位。
+     *
+     * @param inventory 背包库存
+     * @param slot      背包槽位索引
+     * @param stack     要放入的物品堆，不会被修改
+     * @param simulate  是否只模拟
+     * @return 放不下的剩余物品
+     */
+    protected ItemStack insertIntoSlot(InventoryBackpackFunction inventory, int slot, ItemStack stack, boolean simulate) {
+        if (!isItemValid(inventory, slot, stack.getItem())) {
+            return stack;
+        }
+        // 槽位中是其他物品时直接拒绝，不需要解码
+        Item slotItem = inventory.getSlotItem(slot);
+        if (slotItem != null && slotItem != stack.getItem()) {
+            return stack;
+        }
+        ItemStack existing = inventory.getStackInSlot(slot);
+        int space = Math.min(inventory.getInventoryStackLimit(), stack.getMaxStackSize());
+        if (!existing.isEmpty()) {
+            if (!InsertionIndex.canStack(stack, existing)) {
+                return stack;
+            }
+            space -= existing.getCount();
+        }
+        if (space <= 0) {
+            return stack;
+        }
+        int moved = Math.min(space, stack.getCount());
+        if (!simulate) {
+            if (existing.isEmpty()) {
+                inventory.setInventorySlotContents(slot, ItemHandlerHelper.copyStackWithSize(stack, moved));
+            } else {
+                existing.grow(moved);
+                inventory.markSlotDirty(slot);
+            }
+            onContentsChanged(inventory);
+        }
+        return moved == stack.getCount() ? ItemStack.EMPTY : ItemHandlerHelper.copyStackWithSize(stack, stack.getCount() - moved);
+    }
+
+    /**
+     * 把物品堆放入背包，不指定槽位。
+     * 与玩家放入背包的顺序相同：记忆槽位、已有的同种物品堆、可用的空槽位，只访问索引中匹配的槽位。
+     *
+     * @param stack    要放入的物品堆，不会被修改
+     * @param simulate 是否只模拟
+     * @return 放不下的剩余物品
+     */
+    public ItemStack insertItem(ItemStack stack, boolean simulate) {
+        if (simulate && isUnassigned()) {
+            return simulateInsertIntoEmpty(stack);
+        }
+        InventoryBackpackFunction inventory = getInventory();
+        if (stack.isEmpty() || inventory == null) {
+            return stack;
+        }
+        if (simulate) {
+            int insertable = inventory.getInsertableCount(stack);
+            return insertable >= stack.getCount() ? ItemStack.EMPTY : ItemHandlerHelper.copyStackWithSize(stack, stack.getCount() - insertable);
+        }
+        ItemStack remainder = stack.copy();
+        if (inventory.insertItemUnsaved(remainder, 0, inventory.getSizeInventory(), false)) {
+            onContentsChanged(inventory);
+        }
+        return remainder;
+    }
+
+    @Override
+    public ItemStack extractItem(int slot, int amount, boolean simulate) {
+        InventoryBackpackFunction inventory = getInventoryForRead();
+        return inventory != null ? extractFromSlot(inventory, slot, amount, simulate) : ItemStack.EMPTY;
+    }
+
+    /**
+     * 从背包的指定槽位取出物品。
+     *
+     * @param inventory 背包库存
+     * @param slot      背包槽位索引
+     * @param amount    最多取出的数量
+     * @param simulate  是否只模拟
+     * @return 取出的物品
+     */
+    protected ItemStack extractFromSlot(InventoryBackpackFunction inventory, int slot, int amount, boolean simulate) {
+        // 空槽位直接返回，不需要解码
+        if (amount <= 0 || inventory.getSlotItem(slot) == null) {
+            return ItemStack.EMPTY;
+        }
+        ItemStack existing = inventory.getStackInSlot(slot);
+        int taken = Math.min(amount, Math.min(existing.getCount(), existing.getMaxStackSize()));
+        if (taken <= 0) {
+            return ItemStack.EMPTY;
+        }
+        if (simulate) {
+            return ItemHandlerHelper.copyStackWithSize(existing, taken);
+        }
+        ItemStack result;
+        if (taken == existing.getCount()) {
+            inventory.setInventorySlotContents(slot, ItemStack.EMPTY);
+            result = existing;
+        } else {
+            result = existing.splitStack(taken);
+            inventory.markSlotDirty(slot);
+        }
+        onContentsChanged(inventory);
+        return result;
+    }
+
+    /**
+     * 从第一个有物品的槽位取出物品，不指定槽位。通过插入索引中的空槽位集合查找，不会逐个检查槽位。
+     *
+     * @param amount   最多取出的数量
+     * @param simulate 是否只模拟
+     * @return 取出的物品，背包为空时返回空物品堆
+     */
+    public ItemStack extractItem(int amount, boolean simulate) {
+        InventoryBackpackFunction inventory = getInventoryForRead();
+        int slot = inventory != null ? inventory.getFirstOccupiedSlot() : -1;
+        return slot >= 0 ? extractFromSlot(inventory, slot, amount, simulate) : ItemStack.EMPTY;
+    }
+
+    @Override
+    public void setStackInSlot(int slot, ItemStack stack) {
+        // 空背包中放入空物品堆不需要绑定 UUID
+        if (stack.isEmpty() && isUnassigned()) {
+            return;
+        }
+        InventoryBackpackFunction inventory = getInventory();
+        if (inventory != null) {
+            inventory.setInventorySlotContents(slot, stack);
+            onContentsChanged(inventory);
+        }
+    }
+
+    /**
+     * 背包内容被修改后调用，登记写回。缓存中的库存处于延迟写回模式，已经登记过时不再调用 markDirty。
+     *
+     * @param inventory 背包库存
+     */
+    protected void onContentsChanged(InventoryBackpackFunction inventory) {
+        if (!inventory.isFlushPending()) {
+            inventory.markDirty();
+        }
+    }
+}
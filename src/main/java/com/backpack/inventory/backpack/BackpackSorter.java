@@ -0,0 +1,140 @@
+package com.backpack.inventory.backpack;
+
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NBTTagCompound;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 背包整理
+ * 合并未堆满的同种物品，按注册名、元数据和 NBT 排序后重新排列。
+ * 设置了记忆物品的槽位只放入对应的物品，其余物品依次放入没有记忆物品的槽位。
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+final class BackpackSorter {
+
+    // 排序键：注册名、元数据、NBT，相同物品中数量多的在前；List.sort 是稳定排序
+    private static final Comparator<Entry> ORDER = Comparator.<Entry, String>comparing(entry -> entry.name)
+            .thenComparingInt(entry -> entry.stack.getMetadata())
+            .thenComparing(entry -> entry.nbt)
+            .thenComparing(Comparator.<Entry>comparingInt(entry -> entry.stack.getCount()).reversed());
+
+    private BackpackSorter() {
+    }
+
+    /**
+     * 整理背包，只修改内容发生变化的槽位，不触发保存。
+     *
+     * @param inventory 背包库存
+     * @return 如果有槽位发生变化则返回true
+     */
+    static boolean sort(InventoryBackpackFunction inventory) {
+        int size = inventory.getSizeInventory();
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            ItemStack stack = inventory.getStackInSlot(i);
+            if (!stack.isEmpty()) {
+                entries.add(new Entry(stack.copy()));
+            }
+        }
+        entries.sort(ORDER);
+        List<ItemStack> merged = merge(entries, inventory.getInventoryStackLimit());
+
+        ItemStack[] result = new ItemStack[size];
+        Arrays.fill(result, ItemStack.EMPTY);
+        List<ItemStack> rest = new ArrayList<>();
+
+        // 先把物品放入为它保留的记忆槽位，每种物品从上次放入的位置继续查找
+        Map<Item, Integer> nextTemplateSlot = new HashMap<>();
+        for (ItemStack stack : merged) {
+            Item item = stack.getItem();
+            BitSet templateSlots = inventory.getMemorySlots(item);
+            int slot = templateSlots.nextSetBit(nextTemplateSlot.getOrDefault(item, 0));
+            if (slot >= 0 && slot < size) {
+                result[slot] = stack;
+                nextTemplateSlot.put(item, slot + 1);
+            } else {
+                rest.add(stack);
+            }
+        }
+
+        // 其余物品依次放入没有记忆物品的槽位
+        BitSet templated = inventory.getMemorySlots();
+        int slot = templated.nextClearBit(0);
+        int fallback = 0;
+        for (ItemStack stack : rest) {
+            if (slot < size) {
+                result[slot] = stack;
+                slot = templated.nextClearBit(slot + 1);
+                continue;
+            }
+            // 原有物品不符合记忆物品时可能放不下，放入剩余的空槽位，不能丢失物品
+            while (!result[fallback].isEmpty()) {
+                fallback++;
+            }
+            result[fallback] = stack;
+        }
+
+        boolean changed = false;
+        for (int i = 0; i < size; i++) {
+            if (!ItemStack.areItemStacksEqual(inventory.getStackInSlot(i), result[i])) {
+                inventory.setInventorySlotContents(i, result[i]);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 合并已排序的物品中可以堆叠在一起的物品堆。
+     *
+     * @param entries    已排序的物品
+     * @param stackLimit 槽位的堆叠上限
+     * @return 合并后的物品堆，每组同种物品中满的在前
+     */
+    private static List<ItemStack> merge(List<Entry> entries, int stackLimit) {
+        List<ItemStack> merged = new ArrayList<>(entries.size());
+        ItemStack last = ItemStack.EMPTY;
+        for (Entry entry : entries) {
+            ItemStack stack = entry.stack;
+            int max = Math.min(stackLimit, stack.getMaxStackSize());
+            if (stack.isStackable() && InsertionIndex.canStack(stack, last) && last.getCount() < max) {
+                int moved = Math.min(max - last.getCount(), stack.getCount());
+                last.grow(moved);
+                stack.shrink(moved);
+            }
+            if (!stack.isEmpty()) {
+                merged.add(stack);
+                last = stack;
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * 带有预先计算的排序键的物品堆。
+     */
+    private static final class Entry {
+
+        private final ItemStack stack;
+        private final String name;
+        private final String nbt;
+
+        Entry(ItemStack stack) {
+            this.stack = stack;
+            this.name = String.valueOf(stack.getItem().getRegistryName());
+            NBTTagCompound tag = stack.getTagCompound();
+            this.nbt = tag != null ? tag.toString() : "";
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.backpack.inventory.backpack;
+
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 背包物品插入索引
+ * 记录所有空槽位，以及每种物品还可能继续堆叠的槽位，
+ * 插入物品时只需要访问匹配的槽位，不需要遍历整个背包。
+ * 索引在第一次插入时建立，之后随槽位修改增量更新。
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+final class InsertionIndex {
+
+    // 查询不到物品时返回的空集合，不允许修改
+    private static final BitSet NO_SLOTS = new BitSet();
+
+    private final LazyStackList stacks;
+    private final int stackLimit;
+    // 空槽位
+    private final BitSet freeSlots = new BitSet();
+    // 物品类型到还可能继续堆叠的槽位集合
+    private final Map<Item, BitSet> partialSlots = new HashMap<>();
+    // 每个槽位当前登记在哪个物品下，用于更新时移除旧条目
+    private final Item[] indexedItems;
+    private boolean built = false;
+
+    /**
+     * @param stacks     背包的物品列表
+     * @param stackLimit 每个槽位的堆叠上限
+     */
+    InsertionIndex(LazyStackList stacks, int stackLimit) {
+        this.stacks = stacks;
+        this.stackLimit = stackLimit;
+        this.indexedItems = new Item[stacks.size()];
+    }
+
+    /**
+     * 物品列表被整体替换后调用，下次查询时重新建立索引。
+     */
+    void invalidate() {
+        this.built = false;
+    }
+
+    /**
+     * 槽位内容发生变化后调用，更新该槽位的索引条目。
+     *
+     * @param slot 槽位索引
+     */
+    void update(int slot) {
+        if (!this.built || slot < 0 || slot >= this.indexedItems.length) {
+            return;
+        }
+        remove(slot);
+        add(slot);
+    }
+
+    /**
+     * 获取所有空槽位。返回的集合由索引持有，调用者不能修改。
+     */
+    BitSet getFreeSlots() {
+        build();
+        return this.freeSlots;
+    }
+
+    /**
+     * 获取指定物品还可能继续堆叠的槽位。
+     * 集合中可能包含已经堆满的槽位，访问后会通过 update 移除。
+     * 返回的集合由索引持有，调用者不能修改。
+     *
+     * @param item 物品类型
+     * @return 槽位集合
+     */
+    BitSet getPartialSlots(Item item) {
+        build();
+        BitSet slots = this.partialSlots.get(item);
+        return slots != null ? slots : NO_SLOTS;
+    }
+
+    private void build() {
+        if (this.built) {
+            return;
+        }
+        this.freeSlots.clear();
+        this.partialSlots.clear();
+        for (int i = 0; i < this.indexedItems.length; i++) {
+            this.indexedItems[i] = null;
+            add(i);
+        }
+        this.built = true;
+    }
+
+    private void add(int slot) {
+        if (this.stacks.isEmpty(slot)) {
+            this.freeSlots.set(slot);
+            return;
+        }
+        Item item = this.stacks.getItem(slot);
+        if (item == null || this.stacks.getCount(slot) >= getMaxSize(slot)) {
+            return;
+        }
+        this.partialSlots.computeIfAbsent(item, key -> new BitSet()).set(slot);
+        this.indexedItems[slot] = item;
+    }
+
+    private void remove(int slot) {
+        this.freeSlots.clear(slot);
+        Item item = this.indexedItems[slot];
+        if (item == null) {
+            return;
+        }
+        BitSet slots = this.partialSlots.get(item);
+        if (slots != null) {
+            slots.clear(slot);
+            if (slots.isEmpty()) {
+                this.partialSlots.remove(item);
+            }
+        }
+        this.indexedItems[slot] = null;
+    }
+
+    /**
+     * 获取槽位的堆叠上限。尚未解码的槽位不知道物品自身的上限，
+     * 只按槽位上限判断，堆满的槽位在第一次被访问后移出索引。
+     */
+    private int getMaxSize(int slot) {
+        if (this.stacks.getEncoded(slot) != null) {
+            return this.stackLimit;
+        }
+        return Math.min(this.stackLimit, this.stacks.get(slot).getMaxStackSize());
+    }
+
+    /**
+     * 获取集合中范围内的第一个槽位。
+     *
+     * @param slots            槽位集合
+     * @param startIndex       起始槽位索引
+     * @param endIndex         结束槽位索引（不包含）
+     * @param reverseDirection 是否从后往前查找
+     * @return 槽位索引，没有时返回-1
+     */
+    static int first(BitSet slots, int startIndex, int endIndex, boolean reverseDirection) {
+        int i = reverseDirection ? slots.previousSetBit(endIndex - 1) : slots.nextSetBit(startIndex);
+        return i >= startIndex && i < endIndex ? i : -1;
+    }
+
+    /**
+     * 获取集合中某个槽位之后的下一个槽位。
+     *
+     * @param slots            槽位集合
+     * @param slot             当前槽位索引
+     * @param startIndex       起始槽位索引
+     * @param endIndex         结束槽位索引（不包含）
+     * @param reverseDirection 是否从后往前查找
+     * @return 槽位索引，没有时返回-1
+     */
+    static int next(BitSet slots, int slot, int startIndex, int endIndex, boolean reverseDirection) {
+        int i = reverseDirection ? slots.previousSetBit(slot - 1) : slots.nextSetBit(slot + 1);
+        return i >= startIndex && i < endIndex ? i : -1;
+    }
+
+    /**
+     * 检查两个物品堆是否可以堆叠在一起。
+     */
+    static boolean canStack(ItemStack stack, ItemStack other) {
+        return !other.isEmpty() && other.getItem() == stack.getItem()
+                && (!stack.getHasSubtypes() || stack.getMetadata() == other.getMetadata())
+                && ItemStack.areItemStackTagsEqual(stack, other);
+    }
+}
@@ -1,12 +1,15 @@
 package com.backpack.inventory.backpack;
 
+import com.backpack.item.ItemModBackpack;
+import com.backpack.metrics.BackpackMetrics;
+import com.backpack.storage.BackpackSaveScheduler;
 import mcp.MethodsReturnNonnullByDefault;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.inventory.IInventory;
+import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.nbt.NBTTagList;
-import net.minecraft.util.NonNullList;
 import net.minecraft.util.text.ITextComponent;
 import net.minecraft.util.text.TextComponentString;
 import net.minecraftforge.common.util.Constants;
@@ -15,11 +18,14 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Arrays;
+import java.util.BitSet;
 
 /**
  * InventoryBackpack 类实现了 IInventory 接口，用于实现一个基础的背包功能。
- * 背包拥有36个槽位，允许物品堆叠，并且所有物品都可以放入。
+ * 槽位数量由背包等级决定，允许物品堆叠，并且所有物品都可以放入。
  */
 @ParametersAreNonnullByDefault
 @MethodsReturnNonnullByDefault
@@ -30,11 +36,29 @@ public class InventoryBackpack implements IInventory, INBTSerializable<NBTTagCom
 
     private final String name = "Backpack";
     private final boolean customName = false;
-    private final NonNullList<ItemStack> inventoryContents;
+    private final LazyStackList inventoryContents;
+    // 空槽位和可堆叠槽位的索引，用于快速插入物品
+    private final InsertionIndex insertionIndex;
     private final ItemStack openBackpackStack;
+    // 自上次写回以来内容发生变化的槽位
+    private final BitSet dirtySlots = new BitSet();
+    // 是否启用延迟写回模式：修改时只做标记，由调度器每个服务器刻统一写回
+    private boolean writeBack = false;
+    // 是否有尚未写回的修改
+    private boolean flushPending = false;
+    // 当前打开此背包的玩家数量
+    private int openCount = 0;
+    // 是否被方块常驻持有：持有期间不会被缓存淘汰，修改不登记到调度器，由持有者决定写回时机
+    private boolean held = false;
+    // 物品内容的版本号，每次槽位变化时递增
+    private long contentsVersion = 0;
+    // 每个槽位最后一次变化时的版本号
+    private final long[] slotVersions;
 
     // 定义 NBT 标签名称，用于存储背包中的物品列表
     private static final String ITEMS_TAG = "Items";
+    // 物品条目中记录槽位索引的键名
+    public static final String SLOT_TAG = "Slot";
 
     /**
      * 构造函数初始化背包。
@@ -42,8 +66,20 @@ public class InventoryBackpack implements IInventory, INBTSerializable<NBTTagCom
      * @param openBackpackStack 背包物品堆
      */
     public InventoryBackpack(ItemStack openBackpackStack) {
+        this(openBackpackStack, ItemModBackpack.getSlotCount(openBackpackStack));
+    }
+
+    /**
+     * 构造函数初始化指定大小的背包。
+     *
+     * @param openBackpackStack 背包物品堆
+     * @param size              槽位数量
+     */
+    public InventoryBackpack(ItemStack openBackpackStack, int size) {
         this.openBackpackStack = openBackpackStack;
-        this.inventoryContents = NonNullList.withSize(36, ItemStack.EMPTY);
+        this.inventoryContents = new LazyStackList(size);
+        this.slotVersions = new long[size];
+        this.insertionIndex = new InsertionIndex(this.inventoryContents, getInventoryStackLimit());
     }
 
     /**
@@ -93,8 +129,8 @@ public class InventoryBackpack implements IInventory, INBTSerializable<NBTTagCom
      */
     @Override
     public boolean isEmpty() {
-        for (ItemStack stack : this.inventoryContents) {
-            if (!stack.isEmpty()) {
+        for (int i = 0; i < this.inventoryContents.size(); i++) {
+            if (!this.inventoryContents.isEmpty(i)) {
                 return false;
             }
         }
@@ -102,7 +138,7 @@ public class InventoryBackpack implements IInventory, INBTSerializable<NBTTagCom
     }
 
     /**
-     * 获取指定槽位的物品堆。
+     * 获取指定槽位的物品堆，第一次访问时才从 NBT 解码。
      *
      * @param index 槽位索引
      * @return 槽位中的物品堆
@@ -127,6 +163,8 @@ public class InventoryBackpack implements IInventory, INBTSerializable<NBTTagCom
                 setInventorySlotContents(index, ItemStack.EMPTY);
             } else {
                 stack = stack.splitStack(count);
+                // splitStack 直接修改了槽位中的物品堆，需要手动标记
+                markSlotDirty(index);
             }
             this.markDirty();
         }
@@ -158,6 +196,82 @@ public class InventoryBackpack implements IInventory, INBTSerializable<NBTTagCom
     @Override
     public void setInventorySlotContents(int index, @Nonnull ItemStack stack) {
         this.inventoryContents.set(index, stack);
+        markSlotDirty(index);
+    }
+
+    /**
+     * 标记指定槽位的内容已更改，下次写回时只重写这些槽位。
+     * 物品堆被原地修改（如 grow/shrink）时需要调用此方法。
+     *
+     * @param index 槽位索引，超出背包范围时不做任何操作
+     */
+    public void markSlotDirty(int index) {
+        if (index < 0 || index >= this.slotVersions.length) {
+            return;
+        }
+        this.dirtySlots.set(index);
+        this.insertionIndex.update(index);
+        this.slotVersions[index] = ++this.contentsVersion;
+    }
+
+    /**
+     * 获取物品内容的当前版本号。
+     *
+     * @return 版本号
+     */
+    public long getContentsVersion() {
+        return this.contentsVersion;
+    }
+
+    /**
+     * 获取指定槽位最后一次变化时的版本号。
+     *
+     * @param index 槽位索引
+     * @return 版本号
+     */
+    public long getSlotVersion(int index) {
+        return this.slotVersions[index];
+    }
+
+    /**
+     * 获取物品插入索引。
+     *
+     * @return 插入索引
+     */
+    InsertionIndex getInsertionIndex() {
+        return this.insertionIndex;
+    }
+
+    /**
+     * 获取指定槽位中的物品种类，不会触发解码。
+     *
+     * @param index 槽位索引
+     * @return 物品种类，槽位为空时返回 null
+     */
+    @Nullable
+    public Item getSlotItem(int index) {
+        return this.inventoryContents.getItem(index);
+    }
+
+    /**
+     * 获取指定槽位中物品的 NBT 标签，不会触发解码。返回的标签不能修改。
+     *
+     * @param index 槽位索引
+     * @return 物品的 NBT 标签，没有标签时返回 null
+     */
+    @Nullable
+    public NBTTagCompound getSlotTag(int index) {
+        return this.inventoryContents.getTag(index);
+    }
+
+    /**
+     * 获取第一个有物品的槽位，只查询插入索引，不会触发解码。
+     *
+     * @return 槽位索引，背包为空时返回-1
+     */
+    int getFirstOccupiedSlot() {
+        int slot = this.insertionIndex.getFreeSlots().nextClearBit(0);
+        return slot < getSizeInventory() ? slot : -1;
     }
 
     /**
@@ -170,19 +284,113 @@ public class InventoryBackpack implements IInventory, INBTSerializable<NBTTagCom
         return 64; // 默认堆叠限制为64
     }
 
+    /**
+     * 设置是否启用延迟写回模式。
+     * 启用后 markDirty 只记录修改，同一刻内的多次修改只会写回一次。
+     *
+     * @param writeBack 是否启用延迟写回
+     */
+    public void setWriteBack(boolean writeBack) {
+        this.writeBack = writeBack;
+    }
+
+    /**
+     * 设置背包是否被方块常驻持有。
+     * 持有期间 markDirty 只记录修改，由持有者在合适的时机调用 flush；
+     * 取消持有时如果还有未写回的修改，交给调度器写回。
+     *
+     * @param held 是否常驻持有
+     */
+    public void setHeld(boolean held) {
+        this.held = held;
+        if (!held && this.flushPending && this.writeBack) {
+            BackpackSaveScheduler.schedule(this);
+        }
+    }
+
+    /**
+     * 检查是否有尚未写回的修改。
+     *
+     * @return 如果有待写回的修改则返回true
+     */
+    public boolean isFlushPending() {
+        return this.flushPending;
+    }
+
     /**
      * 标记库存已更改，通常会触发保存。
+     * 延迟写回模式下只登记到调度器，被方块持有时只做标记，否则立即写回。
      */
     @Override
     public void markDirty() {
-        if (openBackpackStack != null) {
-            NBTTagCompound nbt = openBackpackStack.getTagCompound();
-            if (nbt == null) {
-                nbt = new NBTTagCompound();
-                openBackpackStack.setTagCompound(nbt);
+        BackpackMetrics.MARK_DIRTY.increment();
+        if (this.writeBack || this.held) {
+            if (!this.flushPending) {
+                this.flushPending = true;
+                if (!this.held) {
+                    BackpackSaveScheduler.schedule(this);
+                }
             }
-            nbt.merge(this.serializeNBT());
+            return;
+        }
+        flush();
+    }
+
+    /**
+     * 立即把修改写回背包物品堆。
+     * 只把发生变化的槽位写回背包物品堆的 NBT 中，未变化的槽位条目保持不动。
+     */
+    public void flush() {
+        this.flushPending = false;
+        NBTTagCompound nbt = getSaveTarget();
+        if (nbt != null) {
+            long start = BackpackMetrics.startTimer();
+            writeDirtySlots(nbt);
+            onSaved();
+            BackpackMetrics.FLUSH.stop(start);
+        }
+    }
+
+    /**
+     * 获取保存背包内容的 NBT，默认保存在背包物品堆上。
+     *
+     * @return 保存背包内容的 NBT，返回 null 表示不需要写回
+     */
+    @Nullable
+    protected NBTTagCompound getSaveTarget() {
+        if (openBackpackStack == null) {
+            return null;
+        }
+        NBTTagCompound nbt = openBackpackStack.getTagCompound();
+        if (nbt == null) {
+            nbt = new NBTTagCompound();
+            openBackpackStack.setTagCompound(nbt);
         }
+        return nbt;
+    }
+
+    /**
+     * 背包内容写回完成后调用。
+     */
+    protected void onSaved() {
+    }
+
+    /**
+     * 获取打开的背包物品堆。
+     *
+     * @return 背包物品堆
+     */
+    public ItemStack getBackpackStack() {
+        return this.openBackpackStack;
+    }
+
+    /**
+     * 将脏槽位写入目标 NBT，子类可以追加自己的列表。
+     *
+     * @param nbt 保存背包内容的 NBT 标签复合对象
+     */
+    protected void writeDirtySlots(NBTTagCompound nbt) {
+        writeSlotDelta(nbt, ITEMS_TAG, this.inventoryContents, this.dirtySlots);
     }
 
     /**
@@ -202,17 +410,30 @@ public class InventoryBackpack implements IInventory, INBTSerializable<NBTTagCom
      */
     @Override
     public void openInventory(EntityPlayer player) {
+        this.openCount++;
+    }
 
+    /**
+     * 检查是否有玩家正在打开此背包，或者背包被方块持有。
+     *
+     * @return 如果正在使用则返回true
+     */
+    public boolean isInUse() {
+        return this.openCount > 0 || this.held;
     }
 
     /**
      * 关闭库存时调用。
+     * 无论是否处于延迟写回模式都立即写回，避免容器在刻中途关闭时丢失数据。
      *
      * @param player 玩家对象
      */
     @Override
     public void closeInventory(EntityPlayer player) {
-        this.markDirty();
+        if (this.openCount > 0) {
+            this.openCount--;
+        }
+        this.flush();
     }
 
     /**
@@ -280,56 +501,158 @@ public class InventoryBackpack implements IInventory, INBTSerializable<NBTTagCom
             LOGGER.debug("NBT 复合标签为空，无法读取背包数据");
             return;
         }
-        // 检查 NBT 中是否存在物品的标签 (ITEMS_TAG)
-        if (compound.hasKey(ITEMS_TAG, Constants.NBT.TAG_LIST)) {
-            // 从 NBT 中获取记忆物品的 NBTTagList
-            NBTTagList itemList = compound.getTagList(ITEMS_TAG, Constants.NBT.TAG_COMPOUND);
-            // 遍历 NBTTagList 中的每一个记忆物品
+        readSlotList(compound, ITEMS_TAG, this.inventoryContents);
+        // 刚读取的内容与 NBT 一致，无需写回
+        this.dirtySlots.clear();
+        this.insertionIndex.invalidate();
+        // 整体替换内容，所有槽位都视为发生了变化
+        Arrays.fill(this.slotVersions, ++this.contentsVersion);
+    }
+
+    /**
+     * 将背包的库存信息写入 NBT 数据，以便保存背包的状态。
+     *
+     * @return 包含背包库存信息的 NBT 标签复合对象。
+     */
+    @Override
+    public NBTTagCompound serializeNBT() {
+        NBTTagCompound compound = new NBTTagCompound();
+        // 将物品列表设置为 NBTTagCompound 的一个标签，使用 ITEMS_TAG 作为键名
+        compound.setTag(ITEMS_TAG, writeSlotList(this.inventoryContents));
+        // 返回包含所有数据的 NBTTagCompound
+        return compound;
+    }
+
+    /**
+     * 从 NBT 列表中读取物品，并按槽位索引填充到给定的物品列表中。
+     *
+     * @param compound 包含物品列表的 NBT 标签复合对象
+     * @param key      物品列表的键名
+     * @param stacks   要填充的物品列表
+     */
+    protected static void readSlotList(NBTTagCompound compound, String key, LazyStackList stacks) {
+        // 检查 NBT 中是否存在指定的列表标签
+        if (compound.hasKey(key, Constants.NBT.TAG_LIST)) {
+            NBTTagList itemList = compound.getTagList(key, Constants.NBT.TAG_COMPOUND);
+            // 遍历 NBTTagList 中的每一个物品
             for (int i = 0; i < itemList.tagCount(); i++) {
-                // 获取当前物品的 NBTTagCompound
                 NBTTagCompound itemTag = itemList.getCompoundTagAt(i);
                 // 从 NBTTagCompound 中读取槽位索引 (Slot)
-                byte slotIndex = itemTag.getByte("Slot");
+                int slotIndex = readSlotIndex(itemTag);
                 // 确保槽位索引在有效范围内
-                if (slotIndex >= 0 && slotIndex < getSizeInventory()) {
-                    // 使用 NBTTagCompound 创建 ItemStack 对象
-                    ItemStack stack = new ItemStack(itemTag);
-                    // 将 ItemStack 设置到对应的物品列表中
-                    this.setInventorySlotContents(slotIndex, stack);
+                if (slotIndex >= 0 && slotIndex < stacks.size()) {
+                    // 只保存原始标签，第一次访问时再解码
+                    stacks.setEncoded(slotIndex, itemTag);
                 }
             }
         }
     }
 
     /**
-     * 将背包的库存信息写入 NBT 数据，以便保存背包的状态。
+     * 将物品列表中所有非空的物品写入一个新的 NBT 列表。
+     * 尚未解码的槽位直接复制原始标签。
      *
-     * @return 包含背包库存信息的 NBT 标签复合对象。
+     * @param stacks 物品列表
+     * @return 带有槽位索引的物品 NBT 列表
      */
-    @Override
-    public NBTTagCompound serializeNBT() {
-        NBTTagCompound compound = new NBTTagCompound();
-        // 创建一个新的 NBTTagList 用于存储记忆物品信息
+    protected static NBTTagList writeSlotList(LazyStackList stacks) {
         NBTTagList itemList = new NBTTagList();
-        // 遍历记忆物品列表中的每一个槽位
-        for (int i = 0; i < getSizeInventory(); i++) {
-            // 获取当前槽位的记忆物品
-            ItemStack stack = getStackInSlot(i);
-            // 检查当前槽位是否包含有效的物品栈（非空）
+        for (int i = 0; i < stacks.size(); i++) {
+            NBTTagCompound encoded = stacks.getEncoded(i);
+            if (encoded != null) {
+                itemList.appendTag(encoded.copy());
+                continue;
+            }
+            ItemStack stack = stacks.get(i);
+            // 只保存非空的物品栈
             if (!stack.isEmpty()) {
-                // 创建一个新的 NBTTagCompound 用于存储单个记忆物品的信息
-                NBTTagCompound itemTag = new NBTTagCompound();
-                // 将槽位索引写入 NBTTagCompound，使用 "Slot" 作为键名
-                itemTag.setByte("Slot", (byte) i);
-                // 调用 ItemStack 的 writeToNBT 方法，将物品栈的所有数据写入 NBTTagCompound 中
-                stack.writeToNBT(itemTag);
-                // 将该物品栈的 NBTTagCompound 添加到 memoryItemList 中
-                itemList.appendTag(itemTag);
+                itemList.appendTag(writeSlotTag(i, stack));
             }
         }
-        // 将 itemList 设置为 NBTTagCompound 的一个标签，使用 ITEMS_TAG 作为键名
-        compound.setTag(ITEMS_TAG, itemList);
-        // 返回包含所有数据的 NBTTagCompound
-        return compound;
+        return itemList;
+    }
+
+    /**
+     * 只重写目标 NBT 列表中发生变化的槽位条目。
+     * 如果列表还不存在，则完整写入一次。写入完成后清空脏槽位集合。
+     *
+     * @param nbt    保存背包内容的 NBT 标签复合对象
+     * @param key    物品列表的键名
+     * @param stacks 物品列表
+     * @param dirty  发生变化的槽位集合
+     */
+    protected static void writeSlotDelta(NBTTagCompound nbt, String key, LazyStackList stacks, BitSet dirty) {
+        if (!nbt.hasKey(key, Constants.NBT.TAG_LIST)) {
+            nbt.setTag(key, writeSlotList(stacks));
+            dirty.clear();
+            return;
+        }
+        if (dirty.isEmpty()) {
+            return;
+        }
+        NBTTagList itemList = nbt.getTagList(key, Constants.NBT.TAG_COMPOUND);
+        // 已经在列表中找到条目的脏槽位
+        BitSet written = new BitSet();
+        // 倒序遍历，删除条目时不会影响尚未访问的下标
+        for (int i = itemList.tagCount() - 1; i >= 0; i--) {
+            int slotIndex = readSlotIndex(itemList.getCompoundTagAt(i));
+            if (slotIndex < 0 || slotIndex >= stacks.size() || !dirty.get(slotIndex)) {
+                continue;
+            }
+            ItemStack stack = stacks.get(slotIndex);
+            if (stack.isEmpty() || written.get(slotIndex)) {
+                itemList.removeTag(i);
+            } else {
+                itemList.set(i, writeSlotTag(slotIndex, stack));
+            }
+            written.set(slotIndex);
+        }
+        // 列表中原本没有条目的槽位，追加到末尾
+        for (int slotIndex = dirty.nextSetBit(0); slotIndex >= 0 && slotIndex < stacks.size(); slotIndex = dirty.nextSetBit(slotIndex + 1)) {
+            if (!written.get(slotIndex) && !stacks.get(slotIndex).isEmpty()) {
+                itemList.appendTag(writeSlotTag(slotIndex, stacks.get(slotIndex)));
+            }
+        }
+        dirty.clear();
+    }
+
+    /**
+     * 创建单个槽位的物品 NBT 条目。
+     *
+     * @param slotIndex 槽位索引
+     * @param stack     物品堆
+     * @return 带有槽位索引的物品 NBT
+     */
+    private static NBTTagCompound writeSlotTag(int slotIndex, ItemStack stack) {
+        NBTTagCompound itemTag = new NBTTagCompound();
+        writeSlotIndex(itemTag, slotIndex);
+        stack.writeToNBT(itemTag);
+        return itemTag;
+    }
+
+    /**
+     * 读取物品 NBT 条目中的槽位索引。
+     *
+     * @param itemTag 物品 NBT 条目
+     * @return 槽位索引
+     */
+    public static int readSlotIndex(NBTTagCompound itemTag) {
+        // 兼容以 byte 保存的旧条目和以 short 保存的大索引
+        return itemTag.getInteger(SLOT_TAG);
+    }
+
+    /**
+     * 将槽位索引写入物品 NBT 条目。
+     *
+     * @param itemTag   物品 NBT 条目
+     * @param slotIndex 槽位索引
+     */
+    public static void writeSlotIndex(NBTTagCompound itemTag, int slotIndex) {
+        // 小索引仍以 byte 保存，与旧版本的数据保持一致
+        if (slotIndex <= Byte.MAX_VALUE) {
+            itemTag.setByte(SLOT_TAG, (byte) slotIndex);
+        } else {
+            itemTag.setShort(SLOT_TAG, (short) slotIndex);
+        }
     }
 }
\ No newline at end of file
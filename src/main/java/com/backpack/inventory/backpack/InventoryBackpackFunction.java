@@ -1,15 +1,24 @@
 package com.backpack.inventory.backpack;
 
+import com.backpack.item.ItemModBackpack;
+import com.backpack.metrics.BackpackMetrics;
+import com.backpack.storage.BackpackStore;
 import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.inventory.IInventory;
+import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.NBTTagCompound;
-import net.minecraft.nbt.NBTTagList;
-import net.minecraft.util.NonNullList;
-import net.minecraftforge.common.util.Constants;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
 @ParametersAreNonnullByDefault
 @MethodsReturnNonnullByDefault
@@ -17,13 +26,53 @@ public class InventoryBackpackFunction extends InventoryBackpack {
     // 日志记录器
     private static final Logger LOGGER = LogManager.getLogger();
     // 用于存储记忆物品的列表
-    private final NonNullList<ItemStack> memoryItems;
+    private final LazyStackList memoryItems;
+    // 自上次写回以来发生变化的记忆槽位
+    private final BitSet dirtyMemorySlots = new BitSet();
+    // 记忆物品索引：物品类型到为其保留的槽位集合，第一次查询时建立
+    @Nullable
+    private Map<Item, BitSet> templateIndex;
+    // 所有设置了记忆物品的槽位，与 templateIndex 一起建立
+    private final BitSet templatedSlots = new BitSet();
+    // 查询不到物品时返回的空集合，不允许修改
+    private static final BitSet NO_SLOTS = new BitSet();
+    // 记忆物品的版本号，每次修改记忆物品时递增
+    private long memoryVersion = 0;
+    // 每个记忆槽位最后一次修改时的版本号，用于只同步变化的记忆物品
+    private final long[] memorySlotVersions;
     // 记忆物品的 NBT 标签名称
     private static final String MEMORY_ITEMS_TAG = "MemoryItems";
+    // 物品列表的 NBT 标签名称，用于迁移旧物品堆上的内容
+    private static final String ITEMS_TAG = "Items";
+    // 保存背包内容的存储，客户端为 null
+    @Nullable
+    private final BackpackStore store;
+    // 背包在存储中的 UUID，客户端为 null
+    @Nullable
+    private final UUID backpackId;
 
+    /**
+     * 客户端使用的构造函数，从背包物品堆的 NBT 中读取内容。
+     * 背包内容已经移到服务器存储中时，物品和记忆物品由服务器同步过来。
+     *
+     * @param backpackStack 背包物品堆
+     */
     public InventoryBackpackFunction(ItemStack backpackStack) {
-        super(backpackStack);
-        this.memoryItems = NonNullList.withSize(this.getSizeInventory(), ItemStack.EMPTY);
+        this(backpackStack, ItemModBackpack.getSlotCount(backpackStack));
+    }
+
+    /**
+     * 客户端使用的构造函数，使用服务器告知的槽位数量。
+     *
+     * @param backpackStack 背包物品堆
+     * @param size          槽位数量
+     */
+    public InventoryBackpackFunction(ItemStack backpackStack, int size) {
+        super(backpackStack, size);
+        this.memoryItems = new LazyStackList(this.getSizeInventory());
+        this.memorySlotVersions = new long[this.getSizeInventory()];
+        this.store = null;
+        this.backpackId = null;
         // 从 NBT 数据中读取库存信息
         if (backpackStack.hasTagCompound()) {
             NBTTagCompound nbt = backpackStack.getTagCompound();
@@ -31,16 +80,86 @@ public class InventoryBackpackFunction extends InventoryBackpack {
         }
     }
 
+    /**
+     * 服务器使用的构造函数，从世界存储中读取背包内容。
+     * 如果物品堆上仍带有旧版本保存的内容，会先迁移到存储中。
+     *
+     * @param backpackStack 背包物品堆
+     * @param store         背包存储
+     */
+    public InventoryBackpackFunction(ItemStack backpackStack, BackpackStore store) {
+        super(backpackStack, ItemModBackpack.initSlotCount(backpackStack));
+        this.memoryItems = new LazyStackList(this.getSizeInventory());
+        this.memorySlotVersions = new long[this.getSizeInventory()];
+        this.store = store;
+        this.backpackId = BackpackStore.getOrCreateId(backpackStack);
+        NBTTagCompound contents = store.getContents(this.backpackId);
+        migrateInlineContents(backpackStack, contents);
+        deserializeNBT(contents);
+    }
+
+    /**
+     * 将旧版本直接保存在背包物品堆上的内容移到存储中，并从物品堆上删除。
+     * 存储中已有内容时以存储为准。
+     *
+     * @param backpackStack 背包物品堆
+     * @param contents      存储中的背包内容
+     */
+    private void migrateInlineContents(ItemStack backpackStack, NBTTagCompound contents) {
+        NBTTagCompound nbt = backpackStack.getTagCompound();
+        if (nbt == null || !hasInlineContents(backpackStack)) {
+            return;
+        }
+        if (contents.hasNoTags()) {
+            for (String key : new String[]{ITEMS_TAG, MEMORY_ITEMS_TAG}) {
+                if (nbt.hasKey(key)) {
+                    contents.setTag(key, nbt.getTag(key));
+                }
+            }
+            this.store.markDirty(this.backpackId);
+            LOGGER.debug("背包 {} 的内容已迁移到世界存储", this.backpackId);
+        }
+        nbt.removeTag(ITEMS_TAG);
+        nbt.removeTag(MEMORY_ITEMS_TAG);
+    }
+
+    /**
+     * 检查背包物品堆上是否还带有旧版本保存的内容，这样的背包在第一次使用时迁移到存储中。
+     *
+     * @param backpackStack 背包物品堆
+     * @return 如果带有旧内容则返回true
+     */
+    public static boolean hasInlineContents(ItemStack backpackStack) {
+        NBTTagCompound nbt = backpackStack.getTagCompound();
+        return nbt != null && (nbt.hasKey(ITEMS_TAG) || nbt.hasKey(MEMORY_ITEMS_TAG));
+    }
+
+    /**
+     * 获取背包在存储中的 UUID。
+     *
+     * @return 背包的 UUID，客户端为 null
+     */
+    @Nullable
+    public UUID getBackpackId() {
+        return this.backpackId;
+    }
+
     public void setMemoryItem(int slotId, ItemStack item) {
-        if (memoryItems.get(slotId).isEmpty()) {
+        if (memoryItems.isEmpty(slotId)) {
             this.memoryItems.set(slotId, item.copy());
+            indexTemplate(slotId, item.getItem());
+            this.memorySlotVersions[slotId] = ++this.memoryVersion;
+            this.dirtyMemorySlots.set(slotId);
             this.markDirty();
         }
     }
 
     public void clearMemoryItem(int slotId) {
-        if (!(memoryItems.get(slotId).isEmpty())){
+        if (!memoryItems.isEmpty(slotId)) {
+            unindexTemplate(slotId);
             this.memoryItems.set(slotId, ItemStack.EMPTY);
+            this.memorySlotVersions[slotId] = ++this.memoryVersion;
+            this.dirtyMemorySlots.set(slotId);
             this.markDirty();
         }
     }
@@ -49,55 +168,473 @@ public class InventoryBackpackFunction extends InventoryBackpack {
         return this.memoryItems.get(slotId);
     }
 
+    /**
+     * 直接设置记忆物品，不触发保存，用于接收服务器同步的数据。
+     *
+     * @param slotId 槽位索引
+     * @param item   记忆物品
+     */
+    public void putMemoryItem(int slotId, ItemStack item) {
+        unindexTemplate(slotId);
+        this.memoryItems.set(slotId, item);
+        if (!item.isEmpty()) {
+            indexTemplate(slotId, item.getItem());
+        }
+        this.memorySlotVersions[slotId] = ++this.memoryVersion;
+    }
+
+    /**
+     * 获取记忆物品的当前版本号。
+     *
+     * @return 版本号
+     */
+    public long getMemoryVersion() {
+        return this.memoryVersion;
+    }
+
+    /**
+     * 获取在指定版本之后修改过的记忆槽位。
+     *
+     * @param version 版本号
+     * @return 槽位集合
+     */
+    public BitSet getMemorySlotsChangedSince(long version) {
+        BitSet changed = new BitSet();
+        if (version == this.memoryVersion) {
+            return changed;
+        }
+        for (int i = 0; i < this.memorySlotVersions.length; i++) {
+            if (this.memorySlotVersions[i] > version) {
+                changed.set(i);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 检查指定槽位是否设置了记忆物品。
+     *
+     * @param slotId 槽位索引
+     * @return 如果设置了记忆物品则返回true
+     */
+    public boolean hasMemoryItem(int slotId) {
+        return getMemorySlots().get(slotId);
+    }
+
+    /**
+     * 检查指定槽位的记忆物品是否为给定的物品类型。
+     *
+     * @param slotId 槽位索引
+     * @param item   物品类型
+     * @return 如果槽位为该物品保留则返回true
+     */
+    public boolean isMemoryItem(int slotId, Item item) {
+        return getMemorySlots(item).get(slotId);
+    }
+
+    /**
+     * 获取为指定物品类型保留的所有槽位，不会解码记忆物品。
+     * 返回的集合由索引持有，调用者不能修改。
+     *
+     * @param item 物品类型
+     * @return 槽位集合
+     */
+    public BitSet getMemorySlots(Item item) {
+        BitSet slots = getTemplateIndex().get(item);
+        return slots != null ? slots : NO_SLOTS;
+    }
+
+    /**
+     * 获取所有设置了记忆物品的槽位。
+     * 返回的集合由索引持有，调用者不能修改。
+     *
+     * @return 槽位集合
+     */
+    public BitSet getMemorySlots() {
+        getTemplateIndex();
+        return this.templatedSlots;
+    }
+
+    /**
+     * 将物品堆插入到指定范围的槽位中，物品堆会被原地减少。
+     * 插入顺序：为该物品保留的记忆槽位中已有的物品堆、其他已有的同种物品堆、
+     * 为该物品保留的第一个空槽位、第一个没有记忆物品的空槽位。
+     * 只访问插入索引和记忆物品索引中匹配的槽位，代价与背包大小无关。
+     *
+     * @param stack            要插入的物品堆
+     * @param startIndex       起始槽位索引
+     * @param endIndex         结束槽位索引（不包含）
+     * @param reverseDirection 是否从后往前插入
+     * @return 如果有物品被移动则返回true
+     */
+    public boolean insertItem(ItemStack stack, int startIndex, int endIndex, boolean reverseDirection) {
+        boolean moved = insertItemUnsaved(stack, startIndex, endIndex, reverseDirection);
+        if (moved) {
+            this.markDirty();
+        }
+        return moved;
+    }
+
+    /**
+     * 插入物品但不触发保存，由调用者在一组操作完成后统一调用 markDirty。
+     */
+    boolean insertItemUnsaved(ItemStack stack, int startIndex, int endIndex, boolean reverseDirection) {
+        if (stack.isEmpty()) {
+            return false;
+        }
+        long start = BackpackMetrics.startTimer();
+        // 访问过的槽位数量
+        int visited = 0;
+        InsertionIndex index = getInsertionIndex();
+        Item item = stack.getItem();
+        BitSet memorySlots = getMemorySlots(item);
+        boolean moved = false;
+
+        if (stack.isStackable()) {
+            // 先合并到为该物品保留的记忆槽位，再合并到其他已有同种物品的槽位
+            BitSet partialSlots = index.getPartialSlots(item);
+            for (int i = InsertionIndex.first(memorySlots, startIndex, endIndex, reverseDirection);
+                 i >= 0 && !stack.isEmpty(); i = InsertionIndex.next(memorySlots, i, startIndex, endIndex, reverseDirection)) {
+                visited++;
+                if (partialSlots.get(i)) {
+                    moved |= mergeIntoSlot(stack, i);
+                }
+            }
+            for (int i = InsertionIndex.first(partialSlots, startIndex, endIndex, reverseDirection);
+                 i >= 0 && !stack.isEmpty(); i = InsertionIndex.next(partialSlots, i, startIndex, endIndex, reverseDirection)) {
+                visited++;
+                moved |= mergeIntoSlot(stack, i);
+            }
+        }
+
+        if (!stack.isEmpty()) {
+            int slot = findFreeSlot(item, startIndex, endIndex, reverseDirection);
+            visited++;
+            if (slot >= 0) {
+                setInventorySlotContents(slot, stack.splitStack(Math.min(stack.getCount(), getInventoryStackLimit())));
+                moved = true;
+            }
+        }
+
+        BackpackMetrics.MERGE_SLOTS_VISITED.add(visited);
+        BackpackMetrics.MERGE.stop(start);
+        return moved;
+    }
+
+    /**
+     * 计算物品堆中有多少可以插入整个背包，不修改背包内容。
+     * 与 insertItem 访问相同的槽位：可以继续堆叠的同种物品槽位，以及一个可用的空槽位。
+     *
+     * @param stack 要插入的物品堆
+     * @return 可以插入的数量
+     */
+    int getInsertableCount(ItemStack stack) {
+        if (stack.isEmpty()) {
+            return 0;
+        }
+        int size = this.getSizeInventory();
+        int maxSize = Math.min(getInventoryStackLimit(), stack.getMaxStackSize());
+        int count = 0;
+        if (stack.isStackable()) {
+            BitSet partialSlots = getInsertionIndex().getPartialSlots(stack.getItem());
+            for (int i = partialSlots.nextSetBit(0); i >= 0 && i < size && count < stack.getCount(); i = partialSlots.nextSetBit(i + 1)) {
+                ItemStack existing = getStackInSlot(i);
+                if (InsertionIndex.canStack(stack, existing)) {
+                    count += Math.max(0, maxSize - existing.getCount());
+                }
+            }
+        }
+        if (count < stack.getCount() && findFreeSlot(stack.getItem(), 0, size, false) >= 0) {
+            count += maxSize;
+        }
+        return Math.min(count, stack.getCount());
+    }
+
+    /**
+     * 检查物品是否应该被自动拾取到背包：背包中有为它保留的记忆槽位或未堆满的同种物品，并且还放得下。
+     * 只查询记忆物品索引和插入索引，不遍历背包槽位。
+     *
+     * @param stack 拾取的物品堆
+     * @return 如果应该拾取到背包则返回true
+     */
+    public boolean canAutoPickup(ItemStack stack) {
+        Item item = stack.getItem();
+        if (getMemorySlots(item).isEmpty() && getInsertionIndex().getPartialSlots(item).isEmpty()) {
+            return false;
+        }
+        return getInsertableCount(stack) > 0;
+    }
+
+    /**
+     * 查找可以放入指定物品的空槽位。
+     * 优先使用为该物品保留的空槽位，其次是第一个没有记忆物品的空槽位，背包不能放入背包。
+     *
+     * @param item             物品类型
+     * @param startIndex       起始槽位索引
+     * @param endIndex         结束槽位索引（不包含）
+     * @param reverseDirection 是否从后往前查找
+     * @return 槽位索引，没有时返回-1
+     */
+    private int findFreeSlot(Item item, int startIndex, int endIndex, boolean reverseDirection) {
+        BitSet freeSlots = getInsertionIndex().getFreeSlots();
+        BitSet memorySlots = getMemorySlots(item);
+        if (memorySlots.intersects(freeSlots)) {
+            for (int i = InsertionIndex.first(memorySlots, startIndex, endIndex, reverseDirection);
+                 i >= 0; i = InsertionIndex.next(memorySlots, i, startIndex, endIndex, reverseDirection)) {
+                if (freeSlots.get(i)) {
+                    return i;
+                }
+            }
+        }
+        if (item instanceof ItemModBackpack) {
+            return -1;
+        }
+        BitSet templated = getMemorySlots();
+        for (int i = InsertionIndex.first(freeSlots, startIndex, endIndex, reverseDirection);
+             i >= 0; i = InsertionIndex.next(freeSlots, i, startIndex, endIndex, reverseDirection)) {
+            if (!templated.get(i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 把来源库存指定范围内与背包中已有物品或记忆物品同种的物品全部放入背包。
+     * 整个操作只在最后保存一次。
+     *
+     * @param source     来源库存，通常是玩家库存
+     * @param startIndex 起始槽位索引
+     * @param endIndex   结束槽位索引（不包含）
+     * @return 放入背包的物品数量
+     */
+    public int depositMatching(IInventory source, int startIndex, int endIndex) {
+        // 背包中已有的物品种类，不需要解码槽位
+        Set<Item> matching = new HashSet<>(getTemplateIndex().keySet());
+        for (int i = 0; i < this.getSizeInventory(); i++) {
+            Item item = getSlotItem(i);
+            if (item != null) {
+                matching.add(item);
+            }
+        }
+
+        int moved = 0;
+        for (int i = startIndex; i < endIndex; i++) {
+            ItemStack stack = source.getStackInSlot(i);
+            if (stack.isEmpty() || !matching.contains(stack.getItem())) {
+                continue;
+            }
+            int count = stack.getCount();
+            if (insertItemUnsaved(stack, 0, this.getSizeInventory(), false)) {
+                moved += count - stack.getCount();
+                if (stack.isEmpty()) {
+                    source.setInventorySlotContents(i, ItemStack.EMPTY);
+                }
+            }
+        }
+        if (moved > 0) {
+            source.markDirty();
+            this.markDirty();
+        }
+        return moved;
+    }
+
+    /**
+     * 用背包中的同种物品补满目标库存指定范围内未堆满的物品堆。
+     * 从背包靠后的槽位开始取，尽量保持前面槽位的排列。整个操作只在最后保存一次。
+     *
+     * @param target     目标库存，通常是玩家库存
+     * @param startIndex 起始槽位索引
+     * @param endIndex   结束槽位索引（不包含）
+     * @return 从背包取出的物品数量
+     */
+    public int restock(IInventory target, int startIndex, int endIndex) {
+        // 需要补充的物品种类到背包中存放该物品的槽位
+        Map<Item, BitSet> sources = new HashMap<>();
+        for (int i = startIndex; i < endIndex; i++) {
+            ItemStack stack = target.getStackInSlot(i);
+            if (!stack.isEmpty() && stack.isStackable() && stack.getCount() < stack.getMaxStackSize()) {
+                sources.put(stack.getItem(), new BitSet());
+            }
+        }
+        if (sources.isEmpty()) {
+            return 0;
+        }
+        for (int i = 0; i < this.getSizeInventory(); i++) {
+            Item item = getSlotItem(i);
+            BitSet slots = item != null ? sources.get(item) : null;
+            if (slots != null) {
+                slots.set(i);
+            }
+        }
+
+        int moved = 0;
+        for (int i = startIndex; i < endIndex; i++) {
+            ItemStack stack = target.getStackInSlot(i);
+            BitSet slots = stack.isEmpty() ? null : sources.get(stack.getItem());
+            if (slots == null) {
+                continue;
+            }
+            int needed = Math.min(stack.getMaxStackSize(), target.getInventoryStackLimit()) - stack.getCount();
+            for (int slot = slots.length() - 1; slot >= 0 && needed > 0; slot = slots.previousSetBit(slot - 1)) {
+                ItemStack stored = getStackInSlot(slot);
+                if (!InsertionIndex.canStack(stack, stored)) {
+                    continue;
+                }
+                int taken = Math.min(needed, stored.getCount());
+                stored.shrink(taken);
+                stack.grow(taken);
+                needed -= taken;
+                moved += taken;
+                if (stored.isEmpty()) {
+                    setInventorySlotContents(slot, ItemStack.EMPTY);
+                    slots.clear(slot);
+                } else {
+                    markSlotDirty(slot);
+                }
+            }
+        }
+        if (moved > 0) {
+            target.markDirty();
+            this.markDirty();
+        }
+        return moved;
+    }
+
+    /**
+     * 整理背包：合并未堆满的物品堆并按物品排序，记忆槽位保留给对应的物品。
+     * 只有内容变化的槽位会被写回和同步，整个操作只保存一次。
+     *
+     * @return 如果有槽位发生变化则返回true
+     */
+    public boolean sort() {
+        boolean changed = BackpackSorter.sort(this);
+        if (changed) {
+            this.markDirty();
+        }
+        return changed;
+    }
+
+    /**
+     * 将物品堆合并到已有同种物品的槽位中。
+     *
+     * @param stack 要合并的物品堆
+     * @param slot  目标槽位索引
+     * @return 如果有物品被合并则返回true
+     */
+    private boolean mergeIntoSlot(ItemStack stack, int slot) {
+        ItemStack itemstack = getStackInSlot(slot);
+        boolean merged = false;
+        if (InsertionIndex.canStack(stack, itemstack)) {
+            int j = itemstack.getCount() + stack.getCount();
+            int maxSize = Math.min(getInventoryStackLimit(), stack.getMaxStackSize());
+
+            if (j <= maxSize) {
+                stack.setCount(0);
+                itemstack.setCount(j);
+                merged = true;
+            } else if (itemstack.getCount() < maxSize) {
+                stack.shrink(maxSize - itemstack.getCount());
+                itemstack.setCount(maxSize);
+                merged = true;
+            }
+        }
+        if (merged) {
+            markSlotDirty(slot);
+        } else {
+            // 槽位刚解码或已经堆满，刷新它在插入索引中的条目
+            getInsertionIndex().update(slot);
+        }
+        return merged;
+    }
+
+    /**
+     * 获取记忆物品索引，尚未建立时根据记忆物品列表建立。
+     */
+    private Map<Item, BitSet> getTemplateIndex() {
+        if (this.templateIndex == null) {
+            this.templateIndex = new HashMap<>();
+            this.templatedSlots.clear();
+            for (int i = 0; i < this.memoryItems.size(); i++) {
+                Item item = this.memoryItems.getItem(i);
+                if (item != null) {
+                    indexTemplate(i, item);
+                }
+            }
+        }
+        return this.templateIndex;
+    }
+
+    private void indexTemplate(int slotId, Item item) {
+        if (this.templateIndex == null) {
+            return;
+        }
+        this.templateIndex.computeIfAbsent(item, key -> new BitSet()).set(slotId);
+        this.templatedSlots.set(slotId);
+    }
+
+    private void unindexTemplate(int slotId) {
+        if (this.templateIndex == null || !this.templatedSlots.get(slotId)) {
+            return;
+        }
+        Item item = this.memoryItems.getItem(slotId);
+        BitSet slots = item != null ? this.templateIndex.get(item) : null;
+        if (slots != null) {
+            slots.clear(slotId);
+            if (slots.isEmpty()) {
+                this.templateIndex.remove(item);
+            }
+        }
+        this.templatedSlots.clear(slotId);
+    }
+
+    @Nullable
+    @Override
+    protected NBTTagCompound getSaveTarget() {
+        if (this.store != null) {
+            return this.store.getContents(this.backpackId);
+        }
+        // 内容保存在服务器存储中的背包，客户端不需要写回
+        if (BackpackStore.hasId(this.getBackpackStack())) {
+            return null;
+        }
+        return super.getSaveTarget();
+    }
+
+    @Override
+    protected void onSaved() {
+        if (this.store != null) {
+            this.store.markDirty(this.backpackId);
+        }
+    }
+
+    @Override
+    protected void writeDirtySlots(NBTTagCompound nbt) {
+        super.writeDirtySlots(nbt);
+        writeSlotDelta(nbt, MEMORY_ITEMS_TAG, this.memoryItems, this.dirtyMemorySlots);
+    }
+
     @Override
     public void deserializeNBT(NBTTagCompound compound) {
+        long start = BackpackMetrics.startTimer();
         // 调用父类的 deserializeNBT 方法，确保父类的数据被正确反序列化
         super.deserializeNBT(compound);
-        // 检查 NBT 中是否存在记忆物品的标签 (MEMORY_ITEMS_TAG)
-        if (compound.hasKey(MEMORY_ITEMS_TAG,Constants.NBT.TAG_LIST)) {
-            // 从 NBT 中获取记忆物品的 NBTTagList
-            NBTTagList memoryItemList = compound.getTagList(MEMORY_ITEMS_TAG, Constants.NBT.TAG_COMPOUND);
-            // 遍历 NBTTagList 中的每一个记忆物品
-            for (int i = 0; i < memoryItemList.tagCount(); i++) {
-                // 获取当前物品的 NBTTagCompound
-                NBTTagCompound memoryItemTag = memoryItemList.getCompoundTagAt(i);
-                // 从 NBTTagCompound 中读取槽位索引 (Slot)
-                byte slotIndex = memoryItemTag.getByte("Slot");
-                // 确保槽位索引在有效范围内
-                if (slotIndex >= 0 && slotIndex < this.getSizeInventory()) {
-                    // 使用 NBTTagCompound 创建 ItemStack 对象
-                    ItemStack stack = new ItemStack(memoryItemTag);
-                    // 将 ItemStack 设置到对应的记忆物品列表中
-                    this.memoryItems.set(slotIndex, stack);
-                }
-            }
-        }
+        // 读取记忆物品列表
+        readSlotList(compound, MEMORY_ITEMS_TAG, this.memoryItems);
+        this.dirtyMemorySlots.clear();
+        // 记忆物品整体替换，索引在下次查询时重建
+        this.templateIndex = null;
+        BackpackMetrics.DESERIALIZE.stop(start);
     }
 
     @Override
     public NBTTagCompound serializeNBT() {
+        long start = BackpackMetrics.startTimer();
         // 调用父类的 serializeNBT 方法，获取父类的 NBTTagCompound
         NBTTagCompound compound = super.serializeNBT();
-        // 创建一个新的 NBTTagList 用于存储记忆物品信息
-        NBTTagList memoryItemList = new NBTTagList();
-        // 遍历记忆物品列表中的每一个槽位
-        for (int i = 0; i < this.memoryItems.size(); i++) {
-            // 获取当前槽位的记忆物品
-            ItemStack stack = this.memoryItems.get(i);
-            // 检查当前槽位是否包含有效的物品栈（非空）
-            if (!stack.isEmpty() && i >= 0 && i < this.getSizeInventory()) {
-                // 创建一个新的 NBTTagCompound 用于存储单个记忆物品的信息
-                NBTTagCompound memoryItemTag = new NBTTagCompound();
-                // 将槽位索引写入 NBTTagCompound，使用 "Slot" 作为键名
-                memoryItemTag.setByte("Slot", (byte) i);
-                // 调用 ItemStack 的 writeToNBT 方法，将物品栈的所有数据写入 NBTTagCompound 中
-                stack.writeToNBT(memoryItemTag);
-                // 将该物品栈的 NBTTagCompound 添加到 memoryItemList 中
-                memoryItemList.appendTag(memoryItemTag);
-            }
-        }
-        // 将 memoryItemList 设置为 NBTTagCompound 的一个标签，使用 MEMORY_ITEMS_TAG 作为键名
-        compound.setTag(MEMORY_ITEMS_TAG, memoryItemList);
+        // 将记忆物品列表设置为 NBTTagCompound 的一个标签，使用 MEMORY_ITEMS_TAG 作为键名
+        compound.setTag(MEMORY_ITEMS_TAG, writeSlotList(this.memoryItems));
+        BackpackMetrics.SERIALIZE.stop(start);
         // 返回包含所有数据的 NBTTagCompound
         return compound;
     }
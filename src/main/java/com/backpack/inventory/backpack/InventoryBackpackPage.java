@@ -0,0 +1,195 @@
+package com.backpack.inventory.backpack;
+
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.inventory.IInventory;
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.text.ITextComponent;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * 背包的分页视图
+ * 只暴露当前页的槽位，容器只需要为一页注册 Slot。
+ * 切换页面只修改偏移量，不会重新创建或解码背包库存。
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class InventoryBackpackPage implements IInventory {
+
+    // 每页的槽位数量，与背包界面的4行9列一致
+    public static final int PAGE_SIZE = 36;
+
+    private final InventoryBackpackFunction backpack;
+    // 当前页码，从0开始
+    private int page = 0;
+
+    /**
+     * 构造函数
+     *
+     * @param backpack 背包库存
+     */
+    public InventoryBackpackPage(InventoryBackpackFunction backpack) {
+        this.backpack = backpack;
+    }
+
+    public InventoryBackpackFunction getBackpack() {
+        return this.backpack;
+    }
+
+    public int getPage() {
+        return this.page;
+    }
+
+    /**
+     * 获取总页数。
+     *
+     * @return 总页数，至少为1
+     */
+    public int getPageCount() {
+        return Math.max(1, (this.backpack.getSizeInventory() + PAGE_SIZE - 1) / PAGE_SIZE);
+    }
+
+    /**
+     * 切换到指定页面，超出范围的页码会被限制在有效范围内。
+     *
+     * @param page 页码
+     * @return 如果页面发生变化则返回true
+     */
+    public boolean setPage(int page) {
+        int clamped = Math.max(0, Math.min(page, getPageCount() - 1));
+        if (clamped == this.page) {
+            return false;
+        }
+        this.page = clamped;
+        return true;
+    }
+
+    /**
+     * 获取当前页第一个槽位在背包中的索引。
+     *
+     * @return 偏移量
+     */
+    public int getOffset() {
+        return this.page * PAGE_SIZE;
+    }
+
+    /**
+     * 检查当前页的槽位在背包中是否存在，最后一页可能不满。
+     *
+     * @param index 页内槽位索引
+     * @return 如果槽位存在则返回true
+     */
+    public boolean contains(int index) {
+        return index >= 0 && getOffset() + index < this.backpack.getSizeInventory();
+    }
+
+    @Override
+    public String getName() {
+        return this.backpack.getName();
+    }
+
+    @Override
+    public boolean hasCustomName() {
+        return this.backpack.hasCustomName();
+    }
+
+    @Override
+    public ITextComponent getDisplayName() {
+        return this.backpack.getDisplayName();
+    }
+
+    @Override
+    public int getSizeInventory() {
+        return PAGE_SIZE;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            if (!getStackInSlot(i).isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public @Nonnull ItemStack getStackInSlot(int index) {
+        return contains(index) ? this.backpack.getStackInSlot(getOffset() + index) : ItemStack.EMPTY;
+    }
+
+    @Override
+    public ItemStack decrStackSize(int index, int count) {
+        return contains(index) ? this.backpack.decrStackSize(getOffset() + index, count) : ItemStack.EMPTY;
+    }
+
+    @Override
+    public ItemStack removeStackFromSlot(int index) {
+        return contains(index) ? this.backpack.removeStackFromSlot(getOffset() + index) : ItemStack.EMPTY;
+    }
+
+    @Override
+    public void setInventorySlotContents(int index, @Nonnull ItemStack stack) {
+        if (contains(index)) {
+            this.backpack.setInventorySlotContents(getOffset() + index, stack);
+        }
+    }
+
+    @Override
+    public int getInventoryStackLimit() {
+        return this.backpack.getInventoryStackLimit();
+    }
+
+    @Override
+    public void markDirty() {
+        this.backpack.markDirty();
+    }
+
+    @Override
+    public boolean isUsableByPlayer(EntityPlayer player) {
+        return this.backpack.isUsableByPlayer(player);
+    }
+
+    /**
+     * 背包的打开和关闭由容器直接处理，分页视图不做任何操作。
+     */
+    @Override
+    public void openInventory(EntityPlayer player) {
+    }
+
+    @Override
+    public void closeInventory(EntityPlayer player) {
+    }
+
+    @Override
+    public boolean isItemValidForSlot(int index, @Nonnull ItemStack stack) {
+        return contains(index) && this.backpack.isItemValidForSlot(getOffset() + index, stack);
+    }
+
+    @Override
+    public int getField(int id) {
+        return 0;
+    }
+
+    @Override
+    public void setField(int id, int value) {
+    }
+
+    @Override
+    public int getFieldCount() {
+        return 0;
+    }
+
+    /**
+     * 清空当前页的所有槽位。
+     */
+    @Override
+    public void clear() {
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            setInventorySlotContents(i, ItemStack.EMPTY);
+        }
+        this.markDirty();
+    }
+}
@@ -0,0 +1,145 @@
+package com.backpack.inventory.backpack;
+
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.util.NonNullList;
+import net.minecraftforge.common.util.Constants;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * 延迟解码的物品列表
+ * 从 NBT 读取时只保存每个槽位的原始标签，第一次访问该槽位时才创建 ItemStack。
+ * 从未访问过的槽位保存时直接复用原始标签，不需要重新编码。
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public final class LazyStackList {
+
+    // 已解码的物品
+    private final NonNullList<ItemStack> stacks;
+    // 尚未解码的槽位的原始标签，已解码的槽位为 null
+    private final NBTTagCompound[] encoded;
+
+    /**
+     * 创建指定大小的空列表。
+     *
+     * @param size 槽位数量
+     */
+    public LazyStackList(int size) {
+        this.stacks = NonNullList.withSize(size, ItemStack.EMPTY);
+        this.encoded = new NBTTagCompound[size];
+    }
+
+    public int size() {
+        return this.stacks.size();
+    }
+
+    /**
+     * 获取指定槽位的物品，如果尚未解码则先解码。
+     *
+     * @param index 槽位索引
+     * @return 槽位中的物品堆
+     */
+    public ItemStack get(int index) {
+        NBTTagCompound tag = this.encoded[index];
+        if (tag != null) {
+            this.encoded[index] = null;
+            ItemStack stack = new ItemStack(tag);
+            this.stacks.set(index, stack);
+            return stack;
+        }
+        return this.stacks.get(index);
+    }
+
+    /**
+     * 设置指定槽位的物品，丢弃尚未解码的原始标签。
+     *
+     * @param index 槽位索引
+     * @param stack 物品堆
+     */
+    public void set(int index, ItemStack stack) {
+        this.encoded[index] = null;
+        this.stacks.set(index, stack);
+    }
+
+    /**
+     * 设置指定槽位的原始标签，等到第一次访问时再解码。
+     *
+     * @param index 槽位索引
+     * @param tag   物品的 NBT 条目
+     */
+    public void setEncoded(int index, NBTTagCompound tag) {
+        this.encoded[index] = tag;
+        this.stacks.set(index, ItemStack.EMPTY);
+    }
+
+    /**
+     * 获取指定槽位尚未解码的原始标签。
+     *
+     * @param index 槽位索引
+     * @return 原始标签，已解码时返回 null
+     */
+    @Nullable
+    public NBTTagCompound getEncoded(int index) {
+        return this.encoded[index];
+    }
+
+    /**
+     * 获取指定槽位的物品类型，尚未解码的槽位直接从原始标签的 ID 中查找，不会触发解码。
+     *
+     * @param index 槽位索引
+     * @return 物品类型，槽位为空或物品不存在时返回 null
+     */
+    @Nullable
+    public Item getItem(int index) {
+        NBTTagCompound tag = this.encoded[index];
+        if (tag != null) {
+            return Item.getByNameOrId(tag.getString("id"));
+        }
+        ItemStack stack = this.stacks.get(index);
+        return stack.isEmpty() ? null : stack.getItem();
+    }
+
+    /**
+     * 获取指定槽位物品的 NBT 标签，尚未解码的槽位直接读取原始标签，不会触发解码。
+     *
+     * @param index 槽位索引
+     * @return 物品的 NBT 标签，没有标签时返回 null
+     */
+    @Nullable
+    public NBTTagCompound getTag(int index) {
+        NBTTagCompound tag = this.encoded[index];
+        if (tag != null) {
+            return tag.hasKey("tag", Constants.NBT.TAG_COMPOUND) ? tag.getCompoundTag("tag") : null;
+        }
+        return this.stacks.get(index).getTagCompound();
+    }
+
+    /**
+     * 获取指定槽位的物品数量，尚未解码的槽位直接读取原始标签，不会触发解码。
+     *
+     * @param index 槽位索引
+     * @return 物品数量，槽位为空时返回0
+     */
+    public int getCount(int index) {
+        NBTTagCompound tag = this.encoded[index];
+        if (tag != null) {
+            return tag.getByte("Count");
+        }
+        return this.stacks.get(index).getCount();
+    }
+
+    /**
+     * 检查指定槽位是否为空，不会触发解码。
+     *
+     * @param index 槽位索引
+     * @return 如果槽位为空则返回true
+     */
+    public boolean isEmpty(int index) {
+        return this.encoded[index] == null && this.stacks.get(index).isEmpty();
+    }
+}
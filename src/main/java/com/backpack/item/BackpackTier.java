@@ -0,0 +1,31 @@
+package com.backpack.item;
+
+import com.backpack.config.BackpackConfig;
+
+/**
+ * 背包等级，决定新背包的槽位数量
+ */
+public enum BackpackTier {
+    // 基础背包，固定36个槽位
+    BASIC,
+    // 大型背包，槽位数量由配置决定
+    LARGE,
+    // 巨型背包，槽位数量由配置决定
+    HUGE;
+
+    /**
+     * 获取该等级背包的槽位数量。
+     *
+     * @return 槽位数量
+     */
+    public int getSlots() {
+        switch (this) {
+            case LARGE:
+                return BackpackConfig.largeBackpackSlots;
+            case HUGE:
+                return BackpackConfig.hugeBackpackSlots;
+            default:
+                return 36;
+        }
+    }
+}
@@ -1,18 +1,28 @@
 package com.backpack.item;
 
+import com.backpack.config.BackpackConfig;
+import com.backpack.inventory.backpack.BackpackItemHandler;
 import com.backpack.network.OpenBackpackMessage;
 import com.backpack.network.PacketHandler;
 import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.client.resources.I18n;
+import net.minecraft.client.util.ITooltipFlag;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.util.ActionResult;
 import net.minecraft.util.EnumActionResult;
 import net.minecraft.util.EnumHand;
 import net.minecraft.world.World;
+import net.minecraftforge.common.capabilities.ICapabilityProvider;
+import net.minecraftforge.fml.relauncher.Side;
+import net.minecraftforge.fml.relauncher.SideOnly;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.List;
 
 @ParametersAreNonnullByDefault
 @MethodsReturnNonnullByDefault
@@ -21,14 +31,129 @@ public class ItemModBackpack extends ItemMod {
     // 日志记录器
     public static final Logger LOGGER = LogManager.getLogger();
 
+    // 背包物品堆上记录槽位数量的键名
+    public static final String SLOTS_TAG = "BackpackSlots";
+    // 背包物品堆上记录是否开启自动拾取的键名
+    public static final String AUTO_PICKUP_TAG = "AutoPickup";
+
+    // 背包等级
+    private final BackpackTier tier;
+
     public ItemModBackpack(String name) {
+        this(name, BackpackTier.BASIC);
+    }
+
+    public ItemModBackpack(String name, BackpackTier tier) {
         super(name);
+        this.tier = tier;
         // 背包物品的最大堆叠数为1
         this.setMaxStackSize(1);
     }
 
     /**
-     * 当玩家右击物品时触发。
+     * 获取背包等级。
+     *
+     * @return 背包等级
+     */
+    public BackpackTier getTier() {
+        return this.tier;
+    }
+
+    /**
+     * 获取背包的槽位数量。
+     * 物品堆上已经记录槽位数量时以记录为准，修改配置不会改变已有背包的大小。
+     *
+     * @param stack 背包物品堆
+     * @return 槽位数量
+     */
+    public static int getSlotCount(ItemStack stack) {
+        NBTTagCompound nbt = stack.getTagCompound();
+        if (nbt != null && nbt.getInteger(SLOTS_TAG) > 0) {
+            return Math.min(nbt.getInteger(SLOTS_TAG), BackpackConfig.MAX_SLOTS);
+        }
+        if (stack.getItem() instanceof ItemModBackpack) {
+            return ((ItemModBackpack) stack.getItem()).getTier().getSlots();
+        }
+        return BackpackTier.BASIC.getSlots();
+    }
+
+    /**
+     * 在服务器端把槽位数量记录到背包物品堆上，已经记录过时不做修改。
+     *
+     * @param stack 背包物品堆
+     * @return 槽位数量
+     */
+    public static int initSlotCount(ItemStack stack) {
+        int slots = getSlotCount(stack);
+        NBTTagCompound nbt = stack.getTagCompound();
+        if (nbt == null) {
+            nbt = new NBTTagCompound();
+            stack.setTagCompound(nbt);
+        }
+        if (!nbt.hasKey(SLOTS_TAG)) {
+            nbt.setInteger(SLOTS_TAG, slots);
+        }
+        return slots;
+    }
+
+    /**
+     * 检查背包是否开启了自动拾取。
+     *
+     * @param stack 背包物品堆
+     * @return 如果开启则返回true
+     */
+    public static boolean isAutoPickup(ItemStack stack) {
+        NBTTagCompound nbt = stack.getTagCompound();
+        return nbt != null && nbt.getBoolean(AUTO_PICKUP_TAG);
+    }
+
+    /**
+     * 切换背包的自动拾取。
+     *
+     * @param stack 背包物品堆
+     * @return 切换后是否开启
+     */
+    public static boolean toggleAutoPickup(ItemStack stack) {
+        boolean enabled = !isAutoPickup(stack);
+        NBTTagCompound nbt = stack.getTagCompound();
+        if (nbt == null) {
+            nbt = new NBTTagCompound();
+            stack.setTagCompound(nbt);
+        }
+        if (enabled) {
+            nbt.setBoolean(AUTO_PICKUP_TAG, true);
+        } else {
+            nbt.removeTag(AUTO_PICKUP_TAG);
+        }
+        return enabled;
+    }
+
+    /**
+     * 开启自动拾取的背包在提示信息中显示一行说明。
+     */
+    @Override
+    @SideOnly(Side.CLIENT)
+    public void addInformation(ItemStack stack, @Nullable World worldIn, List<String> tooltip, ITooltipFlag flagIn) {
+        if (isAutoPickup(stack)) {
+            tooltip.add(I18n.format("tooltip.backpack.autoPickup"));
+        }
+    }
+
+    /**
+     * 为背包物品堆提供 IItemHandler 能力，让自动化设备可以存取背包内容。
+     *
+     * @param stack 背包物品堆
+     * @param nbt   物品堆的能力数据
+     * @return 能力提供者
+     */
+    @Override
+    public ICapabilityProvider initCapabilities(ItemStack stack, @Nullable NBTTagCompound nbt) {
+        return new BackpackItemHandler(stack);
+    }
+
+    /**
+     * 当玩家右击物品时触发，打开背包。
+     * 自动拾取在背包界面中通过按钮切换。
      *
      * @param worldIn  世界对象
      * @param playerIn 玩家对象
@@ -43,7 +168,7 @@ public class ItemModBackpack extends ItemMod {
             int slotIndex = findSlotIndex(playerIn, handIn);
             try {
                 // 发送请求给服务器，要求打开背包
-                PacketHandler.sendToServer(new OpenBackpackMessage(slotIndex));
+                PacketHandler.sendToServer(OpenBackpackMessage.of(slotIndex));
             } catch (Exception e) {
                 LOGGER.error("无法打开玩家 {} 的背包 GUI: {}", playerIn.getName(), e.getMessage());
             }
@@ -1,15 +1,14 @@
 package com.backpack.keybindings;
 
-import com.backpack.item.ItemModBackpack;
 import com.backpack.network.OpenBackpackMessage;
 import com.backpack.network.OpenSelectMessage;
 import com.backpack.network.PacketHandler;
 import net.minecraft.client.Minecraft;
 import net.minecraft.entity.player.EntityPlayer;
-import net.minecraft.item.ItemStack;
 import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 import net.minecraftforge.fml.common.gameevent.InputEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
 import net.minecraftforge.fml.relauncher.Side;
 
 @Mod.EventBusSubscriber(Side.CLIENT)
@@ -17,27 +16,34 @@ public class BackpackClientEvents {
 
     @SubscribeEvent
     public static void onKeyInput(InputEvent.KeyInputEvent event) {
+        EntityPlayer player = Minecraft.getMinecraft().player;
+        if (player == null) {
+            return;
+        }
 
         if (KeyBindings.OPEN_SELECT.isKeyDown()) {
-            int slotIndex = findFirstBackpack();
-            PacketHandler.sendToServer(new OpenSelectMessage(slotIndex));
+            int slotIndex = BackpackLocator.findFirst(player);
+            // 没有背包时不发送请求
+            if (slotIndex >= 0) {
+                PacketHandler.sendToServer(OpenSelectMessage.of(slotIndex));
+            }
             return;
         }
         if (KeyBindings.OPEN_BACKPACK.isKeyDown()) {
-            int slotIndex = findFirstBackpack();
-            PacketHandler.sendToServer(new OpenBackpackMessage(slotIndex));
+            int slotIndex = BackpackLocator.findFirst(player);
+            if (slotIndex >= 0) {
+                PacketHandler.sendToServer(OpenBackpackMessage.of(slotIndex));
+            }
         }
     }
 
-    private static int findFirstBackpack() {
-        Minecraft mc = Minecraft.getMinecraft();
-        EntityPlayer player = mc.player;
-        for (int i = 0; i < player.inventory.getSizeInventory(); i++) {
-            ItemStack itemStack = player.inventory.getStackInSlot(i);
-            if (!itemStack.isEmpty() && itemStack.getItem() instanceof ItemModBackpack) {
-                return i;
-            }
+    /**
+     * 客户端刻结束时把本刻内界面产生的操作一起发送给服务器
+     */
+    @SubscribeEvent
+    public static void onClientTick(TickEvent.ClientTickEvent event) {
+        if (event.phase == TickEvent.Phase.END) {
+            PacketHandler.flushToServer();
         }
-        return -1;
     }
 }
\ No newline at end of file
@@ -0,0 +1,82 @@
+package com.backpack.keybindings;
+
+import com.backpack.item.ItemModBackpack;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.entity.player.InventoryPlayer;
+import net.minecraft.item.ItemStack;
+import net.minecraftforge.fml.relauncher.Side;
+import net.minecraftforge.fml.relauncher.SideOnly;
+
+import java.util.Arrays;
+
+/**
+ * 客户端背包定位器
+ * 缓存玩家库存中所有背包所在的槽位，只有库存发生变化后才重新查找。
+ * 按键时只需要校验缓存的槽位，不需要遍历整个库存。
+ */
+@SideOnly(Side.CLIENT)
+public class BackpackLocator {
+
+    // 没有背包时的结果
+    private static final int[] NONE = new int[0];
+
+    // 缓存对应的玩家库存
+    private static InventoryPlayer cachedInventory;
+    // 缓存建立时玩家库存的修改次数
+    private static int cachedTimesChanged;
+    // 所有背包所在的槽位，按槽位索引升序排列
+    private static int[] backpackSlots = NONE;
+
+    /**
+     * 获取第一个背包所在的槽位。
+     *
+     * @param player 玩家
+     * @return 槽位索引，没有背包时返回 -1
+     */
+    public static int findFirst(EntityPlayer player) {
+        int[] slots = getSlots(player);
+        return slots.length > 0 ? slots[0] : -1;
+    }
+
+    /**
+     * 获取所有背包所在的槽位。返回的数组由缓存持有，调用者不能修改。
+     *
+     * @param player 玩家
+     * @return 按槽位索引升序排列的槽位数组
+     */
+    public static int[] getSlots(EntityPlayer player) {
+        InventoryPlayer inventory = player.inventory;
+        if (inventory != cachedInventory || inventory.getTimesChanged() != cachedTimesChanged || !isValid(inventory)) {
+            rebuild(inventory);
+        }
+        return backpackSlots;
+    }
+
+    /**
+     * 校验缓存的第一个槽位仍然是背包，防止库存被原地修改而没有增加修改次数。
+     */
+    private static boolean isValid(InventoryPlayer inventory) {
+        if (backpackSlots.length == 0) {
+            return true;
+        }
+        ItemStack stack = inventory.getStackInSlot(backpackSlots[0]);
+        return !stack.isEmpty() && stack.getItem() instanceof ItemModBackpack;
+    }
+
+    /**
+     * 重新查找玩家库存中的所有背包。
+     */
+    private static void rebuild(InventoryPlayer inventory) {
+        int[] slots = new int[inventory.getSizeInventory()];
+        int count = 0;
+        for (int i = 0; i < inventory.getSizeInventory(); i++) {
+            ItemStack itemStack = inventory.getStackInSlot(i);
+            if (!itemStack.isEmpty() && itemStack.getItem() instanceof ItemModBackpack) {
+                slots[count++] = i;
+            }
+        }
+        backpackSlots = count == 0 ? NONE : Arrays.copyOf(slots, count);
+        cachedInventory = inventory;
+        cachedTimesChanged = inventory.getTimesChanged();
+    }
+}
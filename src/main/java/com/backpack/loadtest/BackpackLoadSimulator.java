@@ -0,0 +1,342 @@
+package com.backpack.loadtest;
+
+import com.Backpack;
+import com.backpack.container.ContainerBackpack;
+import com.backpack.container.ContainerSelect;
+import com.backpack.gui.GuiHandler;
+import com.backpack.inventory.backpack.InventoryBackpackPage;
+import com.backpack.register.RegisterItem;
+import com.backpack.storage.BackpackInventoryCache;
+import com.backpack.storage.BackpackStore;
+import com.mojang.authlib.GameProfile;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.init.Blocks;
+import net.minecraft.inventory.Container;
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.EnumHand;
+import net.minecraft.util.text.TextComponentTranslation;
+import net.minecraft.world.WorldServer;
+import net.minecraftforge.fml.common.Mod;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * 背包操作的负载模拟器
+ * 在本地服务器上创建一批假玩家，每个玩家循环执行打开背包、潜行点击放入、切换记忆物品、
+ * 潜行点击取出、关闭背包和使用选择界面，所有操作都在服务器线程上直接调用，不经过网络。
+ * 结束后报告服务器刻耗时的分布、背包操作本身的耗时和服务器线程的内存分配速率。
+ */
+@Mod.EventBusSubscriber
+public class BackpackLoadSimulator {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    // 背包所在的快捷栏槽位
+    private static final int BACKPACK_SLOT = 0;
+    // 使用选择界面时手持的快捷栏槽位
+    private static final int HELD_SLOT = 1;
+    // 潜行点击放入背包的玩家库存槽位
+    private static final int SOURCE_SLOT = 9;
+    // 该槽位在背包容器中的索引
+    private static final int SOURCE_CONTAINER_SLOT = InventoryBackpackPage.PAGE_SIZE;
+    // 每个玩家一轮操作的步骤数
+    private static final int CYCLE = 6;
+
+    // 与网络请求使用相同的界面创建逻辑
+    private static final GuiHandler GUI_HANDLER = new GuiHandler();
+
+    // 当前正在运行的测试，没有测试时为 null
+    private static Run current;
+
+    /**
+     * 开始一次负载测试，已有测试在运行时不做任何事。
+     *
+     * @param world   假玩家所在的世界
+     * @param players 假玩家数量
+     * @param ticks   测试持续的服务器刻数
+     * @param sender  接收结果的命令发送者
+     * @return 如果开始了新的测试则返回true
+     */
+    public static boolean start(WorldServer world, int players, int ticks, ICommandSender sender) {
+        if (current != null) {
+            return false;
+        }
+        current = new Run(world, players, ticks, sender);
+        LOGGER.info("背包负载测试开始：{} 个玩家，{} 个服务器刻", players, ticks);
+        return true;
+    }
+
+    /**
+     * 提前结束当前测试并报告已经收集到的结果。
+     *
+     * @return 如果有测试在运行则返回true
+     */
+    public static boolean stop() {
+        if (current == null) {
+            return false;
+        }
+        finish();
+        return true;
+    }
+
+    public static boolean isRunning() {
+        return current != null;
+    }
+
+    @SubscribeEvent
+    public static void onServerTick(TickEvent.ServerTickEvent event) {
+        Run run = current;
+        if (run == null) {
+            return;
+        }
+        if (event.phase == TickEvent.Phase.START) {
+            run.startTick();
+            return;
+        }
+        run.simulate();
+        run.endTick();
+        if (run.isDone()) {
+            finish();
+        }
+    }
+
+    private static void finish() {
+        Run run = current;
+        current = null;
+        run.closeAll();
+        run.report();
+    }
+
+    /**
+     * 一次负载测试的状态和统计数据。
+     */
+    private static final class Run {
+
+        private final WorldServer world;
+        private final ICommandSender sender;
+        private final List<LoadTestPlayer> players = new ArrayList<>();
+        private final Random random = new Random(0L);
+        private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        // 每个服务器刻的总耗时和背包操作耗时（纳秒）
+        private final long[] tickNanos;
+        private final long[] actionNanos;
+        private int tick = 0;
+        private long tickStart;
+        private long allocatedAtStart;
+        private long allocatedBytes = 0;
+        private long actions = 0;
+
+        Run(WorldServer world, int playerCount, int ticks, ICommandSender sender) {
+            this.world = world;
+            this.sender = sender;
+            this.tickNanos = new long[ticks];
+            this.actionNanos = new long[ticks];
+            for (int i = 0; i < playerCount; i++) {
+                this.players.add(createPlayer(i));
+            }
+        }
+
+        /**
+         * 创建一个带背包的假玩家，背包等级轮流使用。
+         * 玩家和背包的 UUID 都由编号决定，重复测试不会在存档中留下新的背包文件。
+         */
+        private LoadTestPlayer createPlayer(int index) {
+            String name = "[BackpackLoad" + index + "]";
+            UUID id = UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8));
+            LoadTestPlayer player = new LoadTestPlayer(this.world, new GameProfile(id, name));
+            ItemStack backpack;
+            switch (index % 3) {
+                case 1:
+                    backpack = new ItemStack(RegisterItem.backpack_large);
+                    break;
+                case 2:
+                    backpack = new ItemStack(RegisterItem.backpack_huge);
+                    break;
+                default:
+                    backpack = new ItemStack(RegisterItem.backpack);
+                    break;
+            }
+            // 背包的 UUID 由玩家的 UUID 决定，每次测试使用同一批存档文件，并从空背包开始
+            UUID backpackId = UUID.nameUUIDFromBytes(("backpack:" + id).getBytes(StandardCharsets.UTF_8));
+            BackpackStore.setId(backpack, backpackId);
+            BackpackInventoryCache.remove(backpackId);
+            BackpackStore store = BackpackStore.get();
+            if (store != null) {
+                store.reset(backpackId);
+            }
+            player.inventory.setInventorySlotContents(BACKPACK_SLOT, backpack);
+            player.inventory.currentItem = HELD_SLOT;
+            return player;
+        }
+
+        void startTick() {
+            this.tickStart = System.nanoTime();
+            this.allocatedAtStart = allocatedBytes();
+        }
+
+        void endTick() {
+            this.tickNanos[this.tick] = System.nanoTime() - this.tickStart;
+            long allocated = allocatedBytes();
+            if (allocated >= 0 && this.allocatedAtStart >= 0) {
+                this.allocatedBytes += allocated - this.allocatedAtStart;
+            }
+            this.tick++;
+        }
+
+        boolean isDone() {
+            return this.tick >= this.tickNanos.length;
+        }
+
+        /**
+         * 每个玩家执行一轮操作中的一步，玩家之间按编号错开，每个刻都有各个步骤的玩家。
+         * 打开着界面的玩家和真实玩家一样每刻同步一次容器。
+         */
+        void simulate() {
+            long elapsed = 0;
+            for (int i = 0; i < this.players.size(); i++) {
+                LoadTestPlayer player = this.players.get(i);
+                // 补充物品不属于背包操作，不计入耗时
+                refill(player);
+                long start = System.nanoTime();
+                step(player, (this.tick + i) % CYCLE);
+                if (player.openContainer != player.inventoryContainer) {
+                    player.openContainer.detectAndSendChanges();
+                }
+                elapsed += System.nanoTime() - start;
+                this.actions++;
+            }
+            this.actionNanos[this.tick] = elapsed;
+        }
+
+        private void refill(LoadTestPlayer player) {
+            if (player.inventory.getStackInSlot(SOURCE_SLOT).isEmpty()) {
+                player.inventory.setInventorySlotContents(SOURCE_SLOT, new ItemStack(Blocks.COBBLESTONE, 64));
+            }
+            if (player.getHeldItemMainhand().isEmpty()) {
+                player.setHeldItem(EnumHand.MAIN_HAND, new ItemStack(Blocks.COBBLESTONE, 16));
+            }
+        }
+
+        private void step(LoadTestPlayer player, int step) {
+            Container container = player.openContainer;
+            switch (step) {
+                case 0:
+                    open(player, Backpack.GUI_ID_BACKPACK);
+                    break;
+                case 1:
+                    if (container instanceof ContainerBackpack) {
+                        container.transferStackInSlot(player, SOURCE_CONTAINER_SLOT);
+                    }
+                    break;
+                case 2:
+                    if (container instanceof ContainerBackpack) {
+                        ((ContainerBackpack) container).handleSlotInteraction(
+                                this.random.nextInt(InventoryBackpackPage.PAGE_SIZE), this.random.nextInt(2));
+                    }
+                    break;
+                case 3:
+                    if (container instanceof ContainerBackpack) {
+                        container.transferStackInSlot(player, this.random.nextInt(InventoryBackpackPage.PAGE_SIZE));
+                    }
+                    break;
+                case 4:
+                    player.closeScreen();
+                    break;
+                default:
+                    open(player, Backpack.GUI_ID_SELECT);
+                    if (player.openContainer instanceof ContainerSelect) {
+                        // 放回主手物品后选择界面会自行关闭
+                        ((ContainerSelect) player.openContainer).buttonClicked(player);
+                    }
+                    player.closeScreen();
+                    break;
+            }
+        }
+
+        /**
+         * 通过 GuiHandler 创建服务器端容器并设为玩家当前打开的容器。
+         */
+        private void open(LoadTestPlayer player, int guiId) {
+            player.closeScreen();
+            Object container = GUI_HANDLER.getServerGuiElement(guiId, player, this.world, BACKPACK_SLOT, 0, 0);
+            if (container instanceof Container) {
+                player.getNextWindowId();
+                player.openContainer = (Container) container;
+                player.openContainer.windowId = player.currentWindowId;
+            }
+        }
+
+        void closeAll() {
+            for (LoadTestPlayer player : this.players) {
+                player.closeScreen();
+            }
+        }
+
+        /**
+         * 获取服务器线程到目前为止分配的字节数，JVM 不支持时返回 -1。
+         */
+        private long allocatedBytes() {
+            if (this.threads instanceof com.sun.management.ThreadMXBean) {
+                return ((com.sun.management.ThreadMXBean) this.threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+            return -1;
+        }
+
+        void report() {
+            int ticks = this.tick;
+            if (ticks == 0) {
+                return;
+            }
+            long[] total = Arrays.copyOf(this.tickNanos, ticks);
+            long[] action = Arrays.copyOf(this.actionNanos, ticks);
+            Arrays.sort(total);
+            Arrays.sort(action);
+            long totalSum = 0;
+            long actionSum = 0;
+            for (int i = 0; i < ticks; i++) {
+                totalSum += total[i];
+                actionSum += action[i];
+            }
+            double seconds = totalSum / 1e9;
+
+            send("commands.backpack.loadtest.finished", this.players.size(), ticks, this.actions);
+            send("commands.backpack.loadtest.ticks", millis(totalSum / ticks), millis(percentile(total, 0.5)),
+                    millis(percentile(total, 0.9)), millis(percentile(total, 0.99)), millis(total[ticks - 1]));
+            send("commands.backpack.loadtest.actions", millis(actionSum / ticks), millis(percentile(action, 0.5)),
+                    millis(percentile(action, 0.9)), millis(percentile(action, 0.99)), millis(action[ticks - 1]));
+            if (allocatedBytes() >= 0 && seconds > 0) {
+                send("commands.backpack.loadtest.allocation", String.format("%.1f", this.allocatedBytes / seconds / (1024 * 1024)),
+                        String.format("%.1f", this.allocatedBytes / (double) ticks / 1024));
+            } else {
+                send("commands.backpack.loadtest.allocation.unsupported");
+            }
+            LOGGER.info("背包负载测试完成：{} 个玩家，{} 个刻，刻耗时 p50 {} ms / p99 {} ms / 最大 {} ms，背包操作 p99 {} ms，分配 {} 字节",
+                    this.players.size(), ticks, millis(percentile(total, 0.5)), millis(percentile(total, 0.99)),
+                    millis(total[ticks - 1]), millis(percentile(action, 0.99)), this.allocatedBytes);
+        }
+
+        private void send(String key, Object... args) {
+            this.sender.sendMessage(new TextComponentTranslation(key, args));
+        }
+
+        private static long percentile(long[] sorted, double fraction) {
+            return sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))];
+        }
+
+        private static String millis(long nanos) {
+            return String.format("%.2f", nanos / 1e6);
+        }
+    }
+}
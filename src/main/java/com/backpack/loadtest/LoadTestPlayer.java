@@ -0,0 +1,21 @@
+package com.backpack.loadtest;
+
+import com.mojang.authlib.GameProfile;
+import net.minecraft.world.WorldServer;
+import net.minecraftforge.common.util.FakePlayer;
+
+/**
+ * 负载测试使用的假玩家。
+ * 假玩家没有网络连接，关闭界面时不发送数据包，直接关闭容器。
+ */
+class LoadTestPlayer extends FakePlayer {
+
+    LoadTestPlayer(WorldServer world, GameProfile profile) {
+        super(world, profile);
+    }
+
+    @Override
+    public void closeScreen() {
+        this.closeContainer();
+    }
+}
@@ -0,0 +1,192 @@
+package com.backpack.metrics;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 背包模组的运行时统计
+ * 计数器始终开启，只是一次 LongAdder 自增；计时需要读取系统时钟，默认关闭，
+ * 通过 /backpack stats timing 或 JMX 打开后才记录耗时。
+ */
+public final class BackpackMetrics {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    // JMX 中的对象名称
+    private static final String OBJECT_NAME = "com.backpack:type=Metrics";
+
+    // 是否记录耗时
+    private static volatile boolean timing = false;
+
+    // 打开背包界面和选择界面的次数
+    public static final LongAdder BACKPACK_OPENS = new LongAdder();
+    public static final LongAdder SELECT_OPENS = new LongAdder();
+    // 背包库存的完整读写
+    public static final Timer SERIALIZE = new Timer();
+    public static final Timer DESERIALIZE = new Timer();
+    // 写入和读取背包存储文件的字节数
+    public static final LongAdder BYTES_WRITTEN = new LongAdder();
+    public static final LongAdder BYTES_READ = new LongAdder();
+    // markDirty 调用次数和实际写回次数
+    public static final LongAdder MARK_DIRTY = new LongAdder();
+    public static final Timer FLUSH = new Timer();
+    // 合并物品的调用次数和访问的槽位数
+    public static final Timer MERGE = new Timer();
+    public static final LongAdder MERGE_SLOTS_VISITED = new LongAdder();
+    // 客户端每帧绘制记忆物品虚影层的耗时，只包括提交渲染命令的 CPU 时间，单人游戏中与服务器共用统计
+    public static final Timer GHOST_LAYER = new Timer();
+
+    // 按消息类型统计的发送和接收数量
+    private static final Map<String, LongAdder> PACKETS_SENT = new ConcurrentHashMap<>();
+    private static final Map<String, LongAdder> PACKETS_RECEIVED = new ConcurrentHashMap<>();
+
+    private static ObjectName registeredName;
+
+    private BackpackMetrics() {
+    }
+
+    public static boolean isTimingEnabled() {
+        return timing;
+    }
+
+    public static void setTimingEnabled(boolean enabled) {
+        timing = enabled;
+    }
+
+    /**
+     * 开始计时。
+     *
+     * @return 开始时间，未开启计时时返回 0
+     */
+    public static long startTimer() {
+        return timing ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * 记录发送了一个消息。
+     *
+     * @param type 消息类型
+     */
+    public static void packetSent(Class<?> type) {
+        PACKETS_SENT.computeIfAbsent(type.getSimpleName(), key -> new LongAdder()).increment();
+    }
+
+    /**
+     * 记录收到了一个消息。
+     *
+     * @param type 消息类型
+     */
+    public static void packetReceived(Class<?> type) {
+        PACKETS_RECEIVED.computeIfAbsent(type.getSimpleName(), key -> new LongAdder()).increment();
+    }
+
+    public static Map<String, Long> getPacketsSent() {
+        return snapshot(PACKETS_SENT);
+    }
+
+    public static Map<String, Long> getPacketsReceived() {
+        return snapshot(PACKETS_RECEIVED);
+    }
+
+    private static Map<String, Long> snapshot(Map<String, LongAdder> counters) {
+        Map<String, Long> result = new TreeMap<>();
+        counters.forEach((key, value) -> result.put(key, value.sum()));
+        return result;
+    }
+
+    /**
+     * 清零所有计数器。
+     */
+    public static void reset() {
+        BACKPACK_OPENS.reset();
+        SELECT_OPENS.reset();
+        SERIALIZE.reset();
+        DESERIALIZE.reset();
+        BYTES_WRITTEN.reset();
+        BYTES_READ.reset();
+        MARK_DIRTY.reset();
+        FLUSH.reset();
+        MERGE.reset();
+        MERGE_SLOTS_VISITED.reset();
+        GHOST_LAYER.reset();
+        PACKETS_SENT.clear();
+        PACKETS_RECEIVED.clear();
+    }
+
+    /**
+     * 把统计数据注册到平台 MBeanServer，服务器启动时调用。
+     */
+    public static void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new BackpackMetricsBean(), name);
+            }
+            registeredName = name;
+        } catch (JMException e) {
+            LOGGER.warn("无法注册背包统计 MBean: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 注销统计数据的 MBean，服务器关闭后调用。
+     */
+    public static void unregisterMBean() {
+        if (registeredName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+        } catch (JMException e) {
+            LOGGER.warn("无法注销背包统计 MBean: {}", e.getMessage());
+        }
+        registeredName = null;
+    }
+
+    /**
+     * 调用次数始终统计，耗时只在开启计时时统计。
+     */
+    public static final class Timer {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        private Timer() {
+        }
+
+        /**
+         * 结束一次计时。
+         *
+         * @param start {@link BackpackMetrics#startTimer()} 返回的开始时间
+         */
+        public void stop(long start) {
+            this.count.increment();
+            if (start != 0L) {
+                this.nanos.add(System.nanoTime() - start);
+            }
+        }
+
+        public long getCount() {
+            return this.count.sum();
+        }
+
+        public long getNanos() {
+            return this.nanos.sum();
+        }
+
+        void reset() {
+            this.count.reset();
+            this.nanos.reset();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.backpack.metrics;
+
+import com.backpack.network.BackpackSlotSyncMessage;
+import com.backpack.network.OpenRequestLimiter;
+import com.backpack.storage.BackpackInventoryCache;
+
+import java.util.Map;
+
+/**
+ * 背包统计数据的 MBean 实现，只读取 {@link BackpackMetrics} 和各模块已有的计数器。
+ */
+class BackpackMetricsBean implements BackpackMetricsMXBean {
+
+    @Override
+    public long getBackpackOpens() {
+        return BackpackMetrics.BACKPACK_OPENS.sum();
+    }
+
+    @Override
+    public long getSelectOpens() {
+        return BackpackMetrics.SELECT_OPENS.sum();
+    }
+
+    @Override
+    public long getSerializeCount() {
+        return BackpackMetrics.SERIALIZE.getCount();
+    }
+
+    @Override
+    public long getSerializeNanos() {
+        return BackpackMetrics.SERIALIZE.getNanos();
+    }
+
+    @Override
+    public long getDeserializeCount() {
+        return BackpackMetrics.DESERIALIZE.getCount();
+    }
+
+    @Override
+    public long getDeserializeNanos() {
+        return BackpackMetrics.DESERIALIZE.getNanos();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return BackpackMetrics.BYTES_WRITTEN.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return BackpackMetrics.BYTES_READ.sum();
+    }
+
+    @Override
+    public long getMarkDirtyCalls() {
+        return BackpackMetrics.MARK_DIRTY.sum();
+    }
+
+    @Override
+    public long getFlushCount() {
+        return BackpackMetrics.FLUSH.getCount();
+    }
+
+    @Override
+    public long getFlushNanos() {
+        return BackpackMetrics.FLUSH.getNanos();
+    }
+
+    @Override
+    public long getMergeCount() {
+        return BackpackMetrics.MERGE.getCount();
+    }
+
+    @Override
+    public long getMergeNanos() {
+        return BackpackMetrics.MERGE.getNanos();
+    }
+
+    @Override
+    public long getGhostLayerCount() {
+        return BackpackMetrics.GHOST_LAYER.getCount();
+    }
+
+    @Override
+    public long getGhostLayerNanos() {
+        return BackpackMetrics.GHOST_LAYER.getNanos();
+    }
+
+    @Override
+    public long getMergeSlotsVisited() {
+        return BackpackMetrics.MERGE_SLOTS_VISITED.sum();
+    }
+
+    @Override
+    public long getSlotSyncBytesSent() {
+        return BackpackSlotSyncMessage.getBytesSent();
+    }
+
+    @Override
+    public Map<String, Long> getPacketsSent() {
+        return BackpackMetrics.getPacketsSent();
+    }
+
+    @Override
+    public Map<String, Long> getPacketsReceived() {
+        return BackpackMetrics.getPacketsReceived();
+    }
+
+    @Override
+    public int getCachedInventories() {
+        return BackpackInventoryCache.getSize();
+    }
+
+    @Override
+    public int getCachedSlots() {
+        return BackpackInventoryCache.getCachedSlots();
+    }
+
+    @Override
+    public long getCacheHits() {
+        return BackpackInventoryCache.getHits();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return BackpackInventoryCache.getMisses();
+    }
+
+    @Override
+    public long getCacheEvictions() {
+        return BackpackInventoryCache.getEvictions();
+    }
+
+    @Override
+    public long getOpenRequestsAccepted() {
+        return OpenRequestLimiter.getAccepted();
+    }
+
+    @Override
+    public long getOpenRequestsCoalesced() {
+        return OpenRequestLimiter.getCoalesced();
+    }
+
+    @Override
+    public long getOpenRequestsDeferred() {
+        return OpenRequestLimiter.getDeferred();
+    }
+
+    @Override
+    public boolean isTimingEnabled() {
+        return BackpackMetrics.isTimingEnabled();
+    }
+
+    @Override
+    public void setTimingEnabled(boolean enabled) {
+        BackpackMetrics.setTimingEnabled(enabled);
+    }
+
+    @Override
+    public void reset() {
+        BackpackMetrics.reset();
+    }
+}
@@ -0,0 +1,69 @@
+package com.backpack.metrics;
+
+import java.util.Map;
+
+/**
+ * 通过 JMX 公开的背包统计数据，耗时的单位是纳秒。
+ */
+public interface BackpackMetricsMXBean {
+
+    long getBackpackOpens();
+
+    long getSelectOpens();
+
+    long getSerializeCount();
+
+    long getSerializeNanos();
+
+    long getDeserializeCount();
+
+    long getDeserializeNanos();
+
+    long getBytesWritten();
+
+    long getBytesRead();
+
+    long getMarkDirtyCalls();
+
+    long getFlushCount();
+
+    long getFlushNanos();
+
+    long getMergeCount();
+
+    long getMergeNanos();
+
+    long getMergeSlotsVisited();
+
+    long getGhostLayerCount();
+
+    long getGhostLayerNanos();
+
+    long getSlotSyncBytesSent();
+
+    Map<String, Long> getPacketsSent();
+
+    Map<String, Long> getPacketsReceived();
+
+    int getCachedInventories();
+
+    int getCachedSlots();
+
+    long getCacheHits();
+
+    long getCacheMisses();
+
+    long getCacheEvictions();
+
+    long getOpenRequestsAccepted();
+
+    long getOpenRequestsCoalesced();
+
+    long getOpenRequestsDeferred();
+
+    boolean isTimingEnabled();
+
+    void setTimingEnabled(boolean enabled);
+
+    void reset();
+}
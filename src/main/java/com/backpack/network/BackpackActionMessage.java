@@ -0,0 +1,100 @@
+package com.backpack.network;
+
+import com.backpack.container.ContainerBackpack;
+import io.netty.buffer.ByteBuf;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.inventory.Container;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+
+/**
+ * 对整个背包执行的批量操作的网络消息
+ * 一个消息在服务器上作为一次操作执行，代替逐个槽位的点击
+ */
+public class BackpackActionMessage implements IMessage {
+
+    /**
+     * 批量操作的种类
+     */
+    public enum Action {
+        // 把玩家库存中与背包内容或记忆物品相同的物品放入背包
+        DEPOSIT,
+        // 用背包中的物品补满玩家库存中未堆满的物品堆
+        RESTOCK,
+        // 整理背包
+        SORT,
+        // 切换背包的自动拾取
+        TOGGLE_AUTO_PICKUP
+    }
+
+    private static final Action[] ACTIONS = Action.values();
+
+    // 容器窗口ID
+    private int windowId;
+    // 操作种类，无法识别时为 null
+    private Action action;
+
+    public BackpackActionMessage() {
+    }
+
+    /**
+     * 构造函数，用于创建携带窗口ID和操作种类的实例
+     *
+     * @param windowId 容器窗口ID
+     * @param action   操作种类
+     */
+    public BackpackActionMessage(int windowId, Action action) {
+        this.windowId = windowId;
+        this.action = action;
+    }
+
+    @Override
+    public void fromBytes(ByteBuf buf) {
+        this.windowId = buf.readUnsignedByte();
+        int ordinal = buf.readUnsignedByte();
+        this.action = ordinal < ACTIONS.length ? ACTIONS[ordinal] : null;
+    }
+
+    @Override
+    public void toBytes(ByteBuf buf) {
+        buf.writeByte(this.windowId);
+        buf.writeByte(this.action.ordinal());
+    }
+
+    // 处理服务器端的消息
+    public static class Handler implements IMessageHandler<BackpackActionMessage, IMessage> {
+        @Override
+        public IMessage onMessage(BackpackActionMessage message, MessageContext ctx) {
+            if (message.action == null) {
+                return null;
+            }
+            // 在服务器线程中处理消息
+            ctx.getServerHandler().player.getServerWorld().addScheduledTask(() -> {
+                EntityPlayerMP player = ctx.getServerHandler().player;
+                Container container = player.openContainer;
+
+                // 只处理仍然打开着的同一个背包容器
+                if (!(container instanceof ContainerBackpack) || container.windowId != message.windowId) {
+                    return;
+                }
+                ContainerBackpack backpack = (ContainerBackpack) container;
+                switch (message.action) {
+                    case DEPOSIT:
+                        backpack.depositAll(player);
+                        break;
+                    case RESTOCK:
+                        backpack.restock(player);
+                        break;
+                    case SORT:
+                        backpack.sort();
+                        break;
+                    case TOGGLE_AUTO_PICKUP:
+                        backpack.toggleAutoPickup(player);
+                        break;
+                }
+            });
+            return null;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.backpack.network;
+
+import io.netty.buffer.ByteBuf;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 把多个发往服务器的背包操作打包在一个数据包中发送
+ * 每个操作以它在 PacketHandler 中的编号开头，服务器按顺序交给各自的处理器。
+ */
+public class BackpackBatchMessage implements IMessage {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    // 一个批量消息最多包含的操作数量
+    static final int MAX_MESSAGES = 64;
+
+    // 可以放入批量消息的操作：编号到消息工厂、消息类型到编号、消息类型到处理器
+    private static final Map<Integer, Supplier<? extends IMessage>> FACTORIES = new HashMap<>();
+    private static final Map<Class<?>, Integer> IDS = new HashMap<>();
+    private static final Map<Class<?>, IMessageHandler<IMessage, ?>> HANDLERS = new HashMap<>();
+
+    private final List<IMessage> messages = new ArrayList<>();
+
+    public BackpackBatchMessage() {
+    }
+
+    /**
+     * 添加一个操作
+     *
+     * @param message 可以批量发送的消息
+     * @return 当前实例
+     */
+    public BackpackBatchMessage add(IMessage message) {
+        this.messages.add(message);
+        return this;
+    }
+
+    public int size() {
+        return this.messages.size();
+    }
+
+    /**
+     * 登记可以放入批量消息的操作，编号与它单独发送时在 PacketHandler 中的编号相同
+     *
+     * @param discriminator 消息编号
+     * @param type          消息类型
+     * @param factory       创建空消息的工厂，用于从批量消息中解码
+     * @param handler       消息处理器
+     */
+    @SuppressWarnings("unchecked")
+    static <REQ extends IMessage> void register(int discriminator, Class<REQ> type, Supplier<REQ> factory,
+                                                IMessageHandler<REQ, ?> handler) {
+        FACTORIES.put(discriminator, factory);
+        IDS.put(type, discriminator);
+        HANDLERS.put(type, (IMessageHandler<IMessage, ?>) (IMessageHandler<?, ?>) handler);
+    }
+
+    /**
+     * 检查消息是否可以放入批量消息
+     *
+     * @param message 消息
+     * @return 如果已经登记则返回true
+     */
+    static boolean isBatchable(IMessage message) {
+        return IDS.containsKey(message.getClass());
+    }
+
+    /**
+     * 根据编号创建可以放入批量消息的空消息
+     *
+     * @param discriminator 消息编号
+     * @return 空消息，编号无效时返回 null
+     */
+    @Nullable
+    private static IMessage create(int discriminator) {
+        Supplier<? extends IMessage> factory = FACTORIES.get(discriminator);
+        return factory != null ? factory.get() : null;
+    }
+
+    /**
+     * 获取可以放入批量消息的消息编号
+     *
+     * @param message 消息
+     * @return 消息编号
+     */
+    private static int getId(IMessage message) {
+        Integer discriminator = IDS.get(message.getClass());
+        if (discriminator == null) {
+            throw new IllegalArgumentException("消息不能放入批量消息: " + message.getClass().getName());
+        }
+        return discriminator;
+    }
+
+    @Override
+    public void fromBytes(ByteBuf buf) {
+        int count = Math.min(PacketCodec.readVarInt(buf), MAX_MESSAGES);
+        for (int i = 0; i < count; i++) {
+            IMessage message = create(PacketCodec.readVarInt(buf));
+            if (message == null) {
+                // 无法识别的操作，后面的数据无法继续解析
+                break;
+            }
+            message.fromBytes(buf);
+            this.messages.add(message);
+        }
+    }
+
+    @Override
+    public void toBytes(ByteBuf buf) {
+        PacketCodec.writeVarInt(buf, this.messages.size());
+        for (IMessage message : this.messages) {
+            PacketCodec.writeVarInt(buf, getId(message));
+            message.toBytes(buf);
+        }
+    }
+
+    // 处理服务器端的消息
+    public static class Handler implements IMessageHandler<BackpackBatchMessage, IMessage> {
+
+        @Override
+        public IMessage onMessage(BackpackBatchMessage message, MessageContext ctx) {
+            for (IMessage child : message.messages) {
+                IMessageHandler<IMessage, ?> handler = HANDLERS.get(child.getClass());
+                if (handler == null) {
+                    LOGGER.warn("批量消息中包含无法处理的消息: {}", child.getClass().getName());
+                    continue;
+                }
+                handler.onMessage(child, ctx);
+            }
+            return null;
+        }
+    }
+}
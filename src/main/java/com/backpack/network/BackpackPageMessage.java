@@ -0,0 +1,81 @@
+package com.backpack.network;
+
+import com.backpack.container.ContainerBackpack;
+import io.netty.buffer.ByteBuf;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.inventory.Container;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+
+/**
+ * 玩家切换背包页面的网络消息
+ */
+public class BackpackPageMessage implements IMessage {
+
+    // 容器窗口ID
+    private int windowId;
+    // 目标页码
+    private int page;
+
+    public BackpackPageMessage() {
+    }
+
+    /**
+     * 构造函数，用于创建携带窗口ID和页码的实例
+     *
+     * @param windowId 容器窗口ID
+     * @param page     目标页码
+     */
+    public BackpackPageMessage(int windowId, int page) {
+        this.windowId = windowId;
+        this.page = page;
+    }
+
+    /**
+     * 从字节缓冲区中读取数据到消息对象
+     *
+     * @param buf 字节缓冲区
+     */
+    @Override
+    public void fromBytes(ByteBuf buf) {
+        this.windowId = buf.readUnsignedByte();
+        this.page = PacketCodec.readVarInt(buf);
+    }
+
+    /**
+     * 将消息对象的数据写入字节缓冲区
+     *
+     * @param buf 字节缓冲区
+     */
+    @Override
+    public void toBytes(ByteBuf buf) {
+        buf.writeByte(windowId);
+        PacketCodec.writeVarInt(buf, page);
+    }
+
+    // 处理服务器端的消息
+    public static class Handler implements IMessageHandler<BackpackPageMessage, IMessage> {
+        /**
+         * 当消息到来时，服务器端调用此方法进行处理
+         *
+         * @param message 收到的消息
+         * @param ctx     消息上下文
+         * @return 回复的消息，此处为null
+         */
+        @Override
+        public IMessage onMessage(BackpackPageMessage message, MessageContext ctx) {
+            // 在服务器线程中处理消息
+            ctx.getServerHandler().player.getServerWorld().addScheduledTask(() -> {
+                EntityPlayerMP player = ctx.getServerHandler().player;
+                Container container = player.openContainer;
+
+                // 只处理仍然打开着的同一个背包容器
+                if (container instanceof ContainerBackpack && container.windowId == message.windowId) {
+                    ((ContainerBackpack) container).setPage(message.page);
+                }
+            });
+            return null;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.backpack.network;
+
+import com.backpack.container.ContainerBackpack;
+import io.netty.buffer.ByteBuf;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.inventory.Container;
+import net.minecraftforge.fml.common.network.ByteBufUtils;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+
+/**
+ * 玩家修改背包搜索关键字的网络消息
+ * 客户端只有当前页的内容，服务器在整个背包中搜索，并用 BackpackSearchResultMessage 返回有匹配物品的页码
+ */
+public class BackpackSearchMessage implements IMessage {
+
+    // 容器窗口ID
+    private int windowId;
+    // 搜索输入框中的文本，为空时结束搜索
+    private String query;
+
+    public BackpackSearchMessage() {
+    }
+
+    /**
+     * 构造函数，用于创建携带窗口ID和搜索文本的实例
+     *
+     * @param windowId 容器窗口ID
+     * @param query    搜索输入框中的文本
+     */
+    public BackpackSearchMessage(int windowId, String query) {
+        this.windowId = windowId;
+        this.query = query;
+    }
+
+    @Override
+    public void fromBytes(ByteBuf buf) {
+        this.windowId = buf.readUnsignedByte();
+        this.query = ByteBufUtils.readUTF8String(buf);
+    }
+
+    @Override
+    public void toBytes(ByteBuf buf) {
+        buf.writeByte(this.windowId);
+        ByteBufUtils.writeUTF8String(buf, this.query);
+    }
+
+    // 处理服务器端的消息
+    public static class Handler implements IMessageHandler<BackpackSearchMessage, IMessage> {
+        @Override
+        public IMessage onMessage(BackpackSearchMessage message, MessageContext ctx) {
+            // 在服务器线程中处理消息
+            ctx.getServerHandler().player.getServerWorld().addScheduledTask(() -> {
+                EntityPlayerMP player = ctx.getServerHandler().player;
+                Container container = player.openContainer;
+
+                // 只处理仍然打开着的同一个背包容器，结果在下一次 detectAndSendChanges 中发送
+                if (container instanceof ContainerBackpack && container.windowId == message.windowId) {
+                    ((ContainerBackpack) container).setSearch(message.query);
+                }
+            });
+            return null;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.backpack.network;
+
+import com.backpack.container.ContainerBackpack;
+import io.netty.buffer.ByteBuf;
+import net.minecraft.client.Minecraft;
+import net.minecraft.inventory.Container;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+
+import java.util.BitSet;
+
+/**
+ * 服务器向客户端发送背包搜索结果的网络消息
+ * 只包含有匹配物品的页码，以位图编码，1024 格的背包也只需要几个字节
+ */
+public class BackpackSearchResultMessage implements IMessage {
+
+    // 容器窗口ID
+    private int windowId;
+    // 有匹配物品的页码
+    private BitSet pages = new BitSet();
+
+    public BackpackSearchResultMessage() {
+    }
+
+    /**
+     * 构造函数，用于创建携带窗口ID和匹配页码的实例
+     *
+     * @param windowId 容器窗口ID
+     * @param pages    有匹配物品的页码
+     */
+    public BackpackSearchResultMessage(int windowId, BitSet pages) {
+        this.windowId = windowId;
+        this.pages = pages;
+    }
+
+    @Override
+    public void fromBytes(ByteBuf buf) {
+        this.windowId = buf.readUnsignedByte();
+        byte[] bytes = new byte[PacketCodec.readVarInt(buf)];
+        buf.readBytes(bytes);
+        this.pages = BitSet.valueOf(bytes);
+    }
+
+    @Override
+    public void toBytes(ByteBuf buf) {
+        buf.writeByte(this.windowId);
+        byte[] bytes = this.pages.toByteArray();
+        PacketCodec.writeVarInt(buf, bytes.length);
+        buf.writeBytes(bytes);
+    }
+
+    // 处理客户端的消息
+    public static class Handler implements IMessageHandler<BackpackSearchResultMessage, IMessage> {
+
+        @Override
+        public IMessage onMessage(BackpackSearchResultMessage message, MessageContext ctx) {
+            // 在客户端主线程中处理消息
+            Minecraft.getMinecraft().addScheduledTask(() -> {
+                Container container = Minecraft.getMinecraft().player.openContainer;
+                if (container instanceof ContainerBackpack && container.windowId == message.windowId) {
+                    ((ContainerBackpack) container).setSearchPages(message.pages);
+                }
+            });
+            return null;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.backpack.network;
+
+import io.netty.buffer.ByteBuf;
+import net.minecraft.client.Minecraft;
+import net.minecraft.inventory.Container;
+import net.minecraft.item.ItemStack;
+import net.minecraftforge.fml.common.network.ByteBufUtils;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 服务器向客户端同步背包槽位的网络消息
+ * 一个服务器刻内发生变化的背包槽位合并到一个消息中发送，
+ * 代替原版为每个槽位单独发送的 SPacketSetSlot。槽位索引使用 PacketCodec 的变长整数编码。
+ */
+public class BackpackSlotSyncMessage implements IMessage {
+
+    // 已编码的消息字节总数，用于统计每个玩家的同步流量
+    private static final LongAdder BYTES_SENT = new LongAdder();
+
+    // 容器窗口ID
+    private int windowId;
+    // 发生变化的容器槽位索引
+    private final List<Integer> slots = new ArrayList<>();
+    // 对应槽位的新内容
+    private final List<ItemStack> items = new ArrayList<>();
+
+    public BackpackSlotSyncMessage() {
+    }
+
+    /**
+     * 构造函数，创建一个空的同步消息，之后通过 add 添加槽位
+     *
+     * @param windowId 容器窗口ID
+     */
+    public BackpackSlotSyncMessage(int windowId) {
+        this.windowId = windowId;
+    }
+
+    /**
+     * 添加一个发生变化的槽位
+     *
+     * @param slotId 容器槽位索引
+     * @param stack  槽位的新内容
+     */
+    public void add(int slotId, ItemStack stack) {
+        this.slots.add(slotId);
+        this.items.add(stack);
+    }
+
+    public boolean isEmpty() {
+        return this.slots.isEmpty();
+    }
+
+    /**
+     * 获取已发送的同步消息字节总数
+     *
+     * @return 字节数
+     */
+    public static long getBytesSent() {
+        return BYTES_SENT.sum();
+    }
+
+    @Override
+    public void fromBytes(ByteBuf buf) {
+        this.windowId = buf.readUnsignedByte();
+        int count = PacketCodec.readVarInt(buf);
+        for (int i = 0; i < count; i++) {
+            this.slots.add(PacketCodec.readVarInt(buf));
+            this.items.add(ByteBufUtils.readItemStack(buf));
+        }
+    }
+
+    @Override
+    public void toBytes(ByteBuf buf) {
+        int start = buf.writerIndex();
+        // 原版的窗口ID也只有一个字节
+        buf.writeByte(this.windowId);
+        PacketCodec.writeVarInt(buf, this.slots.size());
+        for (int i = 0; i < this.slots.size(); i++) {
+            PacketCodec.writeVarInt(buf, this.slots.get(i));
+            ByteBufUtils.writeItemStack(buf, this.items.get(i));
+        }
+        BYTES_SENT.add(buf.writerIndex() - start);
+    }
+
+    // 处理客户端的消息
+    public static class Handler implements IMessageHandler<BackpackSlotSyncMessage, IMessage> {
+
+        @Override
+        public IMessage onMessage(BackpackSlotSyncMessage message, MessageContext ctx) {
+            // 在客户端主线程中处理消息
+            Minecraft.getMinecraft().addScheduledTask(() -> {
+                Container container = Minecraft.getMinecraft().player.openContainer;
+                if (container == null || container.windowId != message.windowId) {
+                    return;
+                }
+
+                // 与原版处理 SPacketSetSlot 的方式相同
+                for (int i = 0; i < message.slots.size(); i++) {
+                    int slotId = message.slots.get(i);
+                    if (slotId >= 0 && slotId < container.inventorySlots.size()) {
+                        container.putStackInSlot(slotId, message.items.get(i));
+                    }
+                }
+            });
+            return null;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.backpack.network;
 
 import com.backpack.container.ContainerBackpack;
+import com.backpack.inventory.backpack.InventoryBackpackPage;
 import io.netty.buffer.ByteBuf;
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.inventory.Container;
@@ -10,12 +11,13 @@ import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
 
 /**
  * 用于处理背包槽位交互的网络消息
+ * 一次拖动涂抹或清除的所有槽位合并在一个消息中发送
  */
 public class MemorySlotMessage implements IMessage {
 
-    // 槽位ID
-    private int slotId;
-    // 鼠标按钮（0: 左键, 1: 右键, 2: 中键等）
+    // 槽位ID列表
+    private int[] slotIds = new int[0];
+    // 鼠标按钮（0: 左键, 1: 右键）
     private int mouseButton;
 
     /**
@@ -25,13 +27,13 @@ public class MemorySlotMessage implements IMessage {
     }
 
     /**
-     * 构造函数，用于创建携带槽位ID和鼠标按钮的实例
+     * 构造函数，用于创建携带槽位ID列表和鼠标按钮的实例
      *
-     * @param slotId     槽位ID
+     * @param slotIds     槽位ID列表
      * @param mouseButton 鼠标按钮
      */
-    public MemorySlotMessage(int slotId, int mouseButton) {
-        this.slotId = slotId;
+    public MemorySlotMessage(int[] slotIds, int mouseButton) {
+        this.slotIds = slotIds;
         this.mouseButton = mouseButton;
     }
 
@@ -42,8 +44,10 @@ public class MemorySlotMessage implements IMessage {
      */
     @Override
     public void fromBytes(ByteBuf buf) {
-        this.slotId = buf.readInt();
-        this.mouseButton = buf.readInt();
+        // 数量和鼠标按钮打包在同一个变长整数中，一次最多编辑一页的槽位
+        int[] header = PacketCodec.readPacked(buf, 1);
+        this.mouseButton = header[1];
+        this.slotIds = PacketCodec.readSlotDeltas(buf, header[0], InventoryBackpackPage.PAGE_SIZE);
     }
 
     /**
@@ -53,8 +57,8 @@ public class MemorySlotMessage implements IMessage {
      */
     @Override
     public void toBytes(ByteBuf buf) {
-        buf.writeInt(slotId);
-        buf.writeInt(mouseButton);
+        PacketCodec.writePacked(buf, slotIds.length, mouseButton, 1);
+        PacketCodec.writeSlotDeltas(buf, slotIds);
     }
 
     // 处理服务器端的消息
@@ -74,8 +78,10 @@ public class MemorySlotMessage implements IMessage {
                 Container container = player.openContainer;
 
                 if (container instanceof ContainerBackpack) {
-                    // 调用背包容器中的处理方法
-                    ((ContainerBackpack) container).handleSlotInteraction(message.slotId, message.mouseButton);
+                    // 调用背包容器中的处理方法，变化的记忆物品在下一次同步时发回客户端
+                    for (int slotId : message.slotIds) {
+                        ((ContainerBackpack) container).handleSlotInteraction(slotId, message.mouseButton);
+                    }
                 }
             });
             return null;
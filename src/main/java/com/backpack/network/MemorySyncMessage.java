@@ -0,0 +1,124 @@
+package com.backpack.network;
+
+import com.backpack.container.ContainerBackpack;
+import com.backpack.container.ContainerSelect;
+import com.backpack.inventory.backpack.InventoryBackpackFunction;
+import io.netty.buffer.ByteBuf;
+import net.minecraft.client.Minecraft;
+import net.minecraft.inventory.Container;
+import net.minecraft.item.ItemStack;
+import net.minecraftforge.fml.common.network.ByteBufUtils;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * 服务器向客户端同步记忆物品的网络消息
+ * 背包内容保存在服务器存储中，客户端打开界面时需要由服务器发送记忆物品，
+ * 之后记忆物品发生变化时只发送变化的槽位，客户端以服务器为准。
+ */
+public class MemorySyncMessage implements IMessage {
+
+    // 容器窗口ID
+    private int windowId;
+    // 同步的槽位索引
+    private final List<Integer> slots = new ArrayList<>();
+    // 对应槽位的记忆物品
+    private final List<ItemStack> items = new ArrayList<>();
+
+    public MemorySyncMessage() {
+    }
+
+    /**
+     * 构造函数，创建包含背包全部记忆物品的同步消息
+     *
+     * @param windowId          容器窗口ID
+     * @param backpackInventory 背包库存
+     */
+    public MemorySyncMessage(int windowId, InventoryBackpackFunction backpackInventory) {
+        this.windowId = windowId;
+        for (int i = 0; i < backpackInventory.getSizeInventory(); i++) {
+            ItemStack memoryItem = backpackInventory.getMemoryItem(i);
+            if (!memoryItem.isEmpty()) {
+                this.slots.add(i);
+                this.items.add(memoryItem);
+            }
+        }
+    }
+
+    /**
+     * 构造函数，创建只包含指定槽位记忆物品的同步消息，清除的记忆物品以空物品堆发送
+     *
+     * @param windowId          容器窗口ID
+     * @param backpackInventory 背包库存
+     * @param changed           需要同步的槽位
+     */
+    public MemorySyncMessage(int windowId, InventoryBackpackFunction backpackInventory, BitSet changed) {
+        this.windowId = windowId;
+        for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1)) {
+            this.slots.add(i);
+            this.items.add(backpackInventory.getMemoryItem(i));
+        }
+    }
+
+    @Override
+    public void fromBytes(ByteBuf buf) {
+        this.windowId = buf.readUnsignedByte();
+        int count = PacketCodec.readVarInt(buf);
+        int slot = 0;
+        for (int i = 0; i < count; i++) {
+            // 槽位按升序写入，只保存与前一个槽位的差值
+            slot += PacketCodec.readVarInt(buf);
+            this.slots.add(slot);
+            this.items.add(ByteBufUtils.readItemStack(buf));
+        }
+    }
+
+    @Override
+    public void toBytes(ByteBuf buf) {
+        buf.writeByte(this.windowId);
+        PacketCodec.writeVarInt(buf, this.slots.size());
+        int previous = 0;
+        for (int i = 0; i < this.slots.size(); i++) {
+            PacketCodec.writeVarInt(buf, this.slots.get(i) - previous);
+            previous = this.slots.get(i);
+            ByteBufUtils.writeItemStack(buf, this.items.get(i));
+        }
+    }
+
+    // 处理客户端的消息
+    public static class Handler implements IMessageHandler<MemorySyncMessage, IMessage> {
+
+        @Override
+        public IMessage onMessage(MemorySyncMessage message, MessageContext ctx) {
+            // 在客户端主线程中处理消息
+            Minecraft.getMinecraft().addScheduledTask(() -> {
+                Container container = Minecraft.getMinecraft().player.openContainer;
+                if (container == null || container.windowId != message.windowId) {
+                    return;
+                }
+
+                InventoryBackpackFunction backpackInventory;
+                if (container instanceof ContainerBackpack) {
+                    backpackInventory = ((ContainerBackpack) container).getBackpackInventory();
+                } else if (container instanceof ContainerSelect) {
+                    backpackInventory = ((ContainerSelect) container).getBackpackInventory();
+                } else {
+                    return;
+                }
+
+                for (int i = 0; i < message.slots.size(); i++) {
+                    int slotId = message.slots.get(i);
+                    if (slotId >= 0 && slotId < backpackInventory.getSizeInventory()) {
+                        backpackInventory.putMemoryItem(slotId, message.items.get(i));
+                    }
+                }
+            });
+            return null;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.backpack.network;
+
+import com.Backpack;
+import com.backpack.item.ItemModBackpack;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.item.ItemStack;
+import net.minecraftforge.fml.common.Mod;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 打开背包和选择界面请求的限流器
+ * 同一玩家在一个服务器刻内发来的多个打开请求只保留最后一个，只向服务器线程提交一次任务；
+ * 处理请求时再按玩家的令牌桶限流，防止按住或连按按键时占满服务器线程。
+ * 令牌用完时请求不会被丢弃，每个玩家保留最新的一个，在补充令牌后的服务器刻中打开。
+ */
+@Mod.EventBusSubscriber
+public class OpenRequestLimiter {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    // 令牌桶容量，允许短时间内连续打开的次数
+    private static final int BUCKET_CAPACITY = 4;
+    // 每隔多少个服务器刻补充一个令牌
+    private static final int REFILL_TICKS = 5;
+
+    // 每个玩家尚未处理的打开请求，在网络线程写入，在服务器线程取出
+    private static final Map<UUID, Request> PENDING = new ConcurrentHashMap<>();
+    // 因令牌用完而延后的请求，每个玩家只保留最新的一个，只在服务器线程访问
+    private static final Map<UUID, Deferred> DEFERRED_REQUESTS = new HashMap<>();
+    // 每个玩家的令牌桶，只在服务器线程访问
+    private static final Map<UUID, Bucket> BUCKETS = new HashMap<>();
+    // 服务器刻计数
+    private static long tick = 0;
+
+    // 统计计数
+    private static final LongAdder ACCEPTED = new LongAdder();
+    private static final LongAdder COALESCED = new LongAdder();
+    private static final LongAdder DEFERRED = new LongAdder();
+    private static final LongAdder INVALID = new LongAdder();
+
+    /**
+     * 提交一个打开请求，在网络线程调用。
+     *
+     * @param player    发出请求的玩家
+     * @param guiId     要打开的界面ID
+     * @param slotIndex 背包物品所在的槽位索引
+     */
+    public static void submit(EntityPlayerMP player, int guiId, int slotIndex) {
+        // 客户端没有找到背包时会发送 -1
+        if (slotIndex < 0 || slotIndex >= player.inventory.getSizeInventory()) {
+            INVALID.increment();
+            return;
+        }
+        Request previous = PENDING.put(player.getUniqueID(), new Request(guiId, slotIndex));
+        if (previous != null) {
+            // 已经有任务在等待执行，它会处理最新的请求
+            COALESCED.increment();
+            return;
+        }
+        player.getServerWorld().addScheduledTask(() -> process(player));
+    }
+
+    /**
+     * 在服务器线程处理玩家最新的打开请求。
+     */
+    private static void process(EntityPlayerMP player) {
+        Request request = PENDING.remove(player.getUniqueID());
+        if (request == null) {
+            return;
+        }
+        Deferred deferred = DEFERRED_REQUESTS.get(player.getUniqueID());
+        if (deferred != null) {
+            // 已经有请求在等待令牌，保持先后顺序，只保留最新的请求
+            deferred.request = request;
+            COALESCED.increment();
+            return;
+        }
+        if (!tryAcquire(player.getUniqueID())) {
+            DEFERRED_REQUESTS.put(player.getUniqueID(), new Deferred(player, request));
+            DEFERRED.increment();
+            LOGGER.debug("玩家 {} 打开背包过于频繁，请求延后到补充令牌后处理", player.getName());
+            return;
+        }
+        open(player, request);
+    }
+
+    /**
+     * 打开请求对应的界面。
+     */
+    private static void open(EntityPlayerMP player, Request request) {
+        ACCEPTED.increment();
+        ItemStack backpackItem = player.inventory.getStackInSlot(request.slotIndex);
+        if (!backpackItem.isEmpty() && backpackItem.getItem() instanceof ItemModBackpack) {
+            // 先在物品堆上记录槽位数量，通过 GUI 参数告知客户端
+            int slots = ItemModBackpack.initSlotCount(backpackItem);
+            player.openGui(Backpack.INSTANCE, request.guiId, player.getEntityWorld(), request.slotIndex, slots, 0);
+        }
+    }
+
+    /**
+     * 从玩家的令牌桶中取出一个令牌。
+     *
+     * @param playerId 玩家 UUID
+     * @return 如果取到令牌则返回true
+     */
+    private static boolean tryAcquire(UUID playerId) {
+        Bucket bucket = BUCKETS.computeIfAbsent(playerId, id -> new Bucket(tick));
+        long refills = (tick - bucket.lastRefill) / REFILL_TICKS;
+        if (refills > 0) {
+            bucket.tokens = (int) Math.min(BUCKET_CAPACITY, bucket.tokens + refills);
+            bucket.lastRefill += refills * REFILL_TICKS;
+        }
+        if (bucket.tokens == 0) {
+            return false;
+        }
+        bucket.tokens--;
+        return true;
+    }
+
+    @SubscribeEvent
+    public static void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase == TickEvent.Phase.START) {
+            tick++;
+            return;
+        }
+        if (DEFERRED_REQUESTS.isEmpty()) {
+            return;
+        }
+        // 处理延后的请求，令牌仍然不够的留到之后的刻
+        Iterator<Deferred> iterator = DEFERRED_REQUESTS.values().iterator();
+        while (iterator.hasNext()) {
+            Deferred deferred = iterator.next();
+            if (tryAcquire(deferred.player.getUniqueID())) {
+                iterator.remove();
+                open(deferred.player, deferred.request);
+            }
+        }
+    }
+
+    @SubscribeEvent
+    public static void onPlayerLoggedOut(PlayerEvent.PlayerLoggedOutEvent event) {
+        PENDING.remove(event.player.getUniqueID());
+        DEFERRED_REQUESTS.remove(event.player.getUniqueID());
+        BUCKETS.remove(event.player.getUniqueID());
+    }
+
+    public static long getAccepted() {
+        return ACCEPTED.sum();
+    }
+
+    public static long getCoalesced() {
+        return COALESCED.sum();
+    }
+
+    public static long getDeferred() {
+        return DEFERRED.sum();
+    }
+
+    public static long getInvalid() {
+        return INVALID.sum();
+    }
+
+    // 一个打开请求
+    private static final class Request {
+        private final int guiId;
+        private final int slotIndex;
+
+        private Request(int guiId, int slotIndex) {
+            this.guiId = guiId;
+            this.slotIndex = slotIndex;
+        }
+    }
+
+    // 一个等待令牌的打开请求
+    private static final class Deferred {
+        private final EntityPlayerMP player;
+        private Request request;
+
+        private Deferred(EntityPlayerMP player, Request request) {
+            this.player = player;
+            this.request = request;
+        }
+    }
+
+    // 玩家的令牌桶
+    private static final class Bucket {
+        private int tokens = BUCKET_CAPACITY;
+        private long lastRefill;
+
+        private Bucket(long tick) {
+            this.lastRefill = tick;
+        }
+    }
+}
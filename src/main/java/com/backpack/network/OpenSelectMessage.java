@@ -1,10 +1,7 @@
 package com.backpack.network;
 
 import com.Backpack;
-import com.backpack.item.ItemModBackpack;
 import io.netty.buffer.ByteBuf;
-import net.minecraft.entity.player.EntityPlayer;
-import net.minecraft.item.ItemStack;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
 import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
@@ -14,6 +11,15 @@ public class OpenSelectMessage implements IMessage {
     // 背包物品所在的槽位索引
     private int slotIndex;
 
+    // 玩家库存每个槽位对应的消息实例，消息内容不可变，可以重复发送
+    private static final OpenSelectMessage[] CACHED = new OpenSelectMessage[41];
+
+    static {
+        for (int i = 0; i < CACHED.length; i++) {
+            CACHED[i] = new OpenSelectMessage(i);
+        }
+    }
+
     public OpenSelectMessage() {
     }
 
@@ -21,30 +27,31 @@ public class OpenSelectMessage implements IMessage {
         this.slotIndex = slotIndex;
     }
 
+    /**
+     * 获取携带指定槽位索引的消息，常用的槽位复用同一个实例
+     *
+     * @param slotIndex 背包物品所在的槽位索引
+     * @return 消息实例
+     */
+    public static OpenSelectMessage of(int slotIndex) {
+        return slotIndex >= 0 && slotIndex < CACHED.length ? CACHED[slotIndex] : new OpenSelectMessage(slotIndex);
+    }
+
     @Override
     public void fromBytes(ByteBuf buf) {
-        this.slotIndex = buf.readInt();
+        this.slotIndex = PacketCodec.readSignedVarInt(buf);
     }
 
     @Override
     public void toBytes(ByteBuf buf) {
-        buf.writeInt(slotIndex);
+        PacketCodec.writeSignedVarInt(buf, slotIndex);
     }
 
     public static class Handler implements IMessageHandler<OpenSelectMessage, IMessage> {
         @Override
         public IMessage onMessage(OpenSelectMessage message, MessageContext ctx) {
-            // 在服务器线程中处理消息
-            ctx.getServerHandler().player.getServerWorld().addScheduledTask(() -> {
-                EntityPlayer player = ctx.getServerHandler().player;
-
-                ItemStack backpackItem = player.inventory.getStackInSlot(message.slotIndex);
-
-                if (!backpackItem.isEmpty() && backpackItem.getItem() instanceof ItemModBackpack) {
-                    // 打开 Select GUI
-                    player.openGui(Backpack.INSTANCE, Backpack.GUI_ID_SELECT, player.getEntityWorld(), message.slotIndex, 0, 0);
-                }
-            });
+            // 合并同一刻内的重复请求并限流，之后在服务器线程中打开 Select GUI
+            OpenRequestLimiter.submit(ctx.getServerHandler().player, Backpack.GUI_ID_SELECT, message.slotIndex);
             return null;
         }
     }
@@ -0,0 +1,122 @@
+package com.backpack.network;
+
+import io.netty.buffer.ByteBuf;
+import net.minecraftforge.fml.common.network.ByteBufUtils;
+
+/**
+ * 背包网络消息使用的紧凑编码
+ * 整数使用变长编码，绝大多数槽位索引、页码和数量只占一个字节；
+ * 可能为负数的值先做 ZigZag 变换；小的标志位和数量可以打包进同一个变长整数。
+ */
+public final class PacketCodec {
+
+    // 变长整数最多占用的字节数
+    private static final int MAX_VAR_INT_BYTES = 5;
+
+    private PacketCodec() {
+    }
+
+    /**
+     * 写入非负的变长整数。
+     */
+    public static void writeVarInt(ByteBuf buf, int value) {
+        ByteBufUtils.writeVarInt(buf, value, MAX_VAR_INT_BYTES);
+    }
+
+    /**
+     * 读取非负的变长整数。
+     */
+    public static int readVarInt(ByteBuf buf) {
+        return ByteBufUtils.readVarInt(buf, MAX_VAR_INT_BYTES);
+    }
+
+    /**
+     * 写入可能为负数的变长整数，-1 等小负数也只占一个字节。
+     */
+    public static void writeSignedVarInt(ByteBuf buf, int value) {
+        writeVarInt(buf, (value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * 读取可能为负数的变长整数。
+     */
+    public static int readSignedVarInt(ByteBuf buf) {
+        int value = readVarInt(buf);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * 把一个数值和若干低位标志打包为一个变长整数写入。
+     *
+     * @param buf   字节缓冲区
+     * @param value 非负数值
+     * @param flags 标志位
+     * @param bits  标志位占用的位数
+     */
+    public static void writePacked(ByteBuf buf, int value, int flags, int bits) {
+        writeVarInt(buf, (value << bits) | (flags & ((1 << bits) - 1)));
+    }
+
+    /**
+     * 读取 writePacked 写入的打包值。
+     *
+     * @param buf  字节缓冲区
+     * @param bits 标志位占用的位数
+     * @return 长度为2的数组，依次为数值和标志位
+     */
+    public static int[] readPacked(ByteBuf buf, int bits) {
+        int packed = readVarInt(buf);
+        return new int[]{packed >>> bits, packed & ((1 << bits) - 1)};
+    }
+
+    /**
+     * 写入升序排列的槽位索引数组，先写数量，每个索引只写与前一个索引的差值。
+     */
+    public static void writeSlotArray(ByteBuf buf, int[] slots) {
+        writeVarInt(buf, slots.length);
+        writeSlotDeltas(buf, slots);
+    }
+
+    /**
+     * 读取 writeSlotArray 写入的槽位索引数组。
+     *
+     * @param buf      字节缓冲区
+     * @param maxCount 允许的最大数量，超出的部分被丢弃
+     * @return 槽位索引数组
+     */
+    public static int[] readSlotArray(ByteBuf buf, int maxCount) {
+        return readSlotDeltas(buf, readVarInt(buf), maxCount);
+    }
+
+    /**
+     * 只写入槽位索引的差值，数量由调用者另外写入。
+     */
+    public static void writeSlotDeltas(ByteBuf buf, int[] slots) {
+        int previous = 0;
+        for (int slot : slots) {
+            writeSignedVarInt(buf, slot - previous);
+            previous = slot;
+        }
+    }
+
+    /**
+     * 读取 writeSlotDeltas 写入的槽位索引。
+     * 所有差值都会被读取，保证缓冲区位置正确，但只保留前 maxCount 个索引。
+     *
+     * @param buf      字节缓冲区
+     * @param count    索引数量
+     * @param maxCount 允许的最大数量
+     * @return 槽位索引数组
+     */
+    public static int[] readSlotDeltas(ByteBuf buf, int count, int maxCount) {
+        int[] slots = new int[Math.max(0, Math.min(count, maxCount))];
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            previous += readSignedVarInt(buf);
+            if (i < slots.length) {
+                slots[i] = previous;
+            }
+        }
+        return slots;
+    }
+}
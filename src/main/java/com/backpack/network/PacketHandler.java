@@ -1,30 +1,152 @@
 package com.backpack.network;
 
+import com.backpack.metrics.BackpackMetrics;
+import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraftforge.fml.common.network.NetworkRegistry;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
 import net.minecraftforge.fml.common.network.simpleimpl.SimpleNetworkWrapper;
 import net.minecraftforge.fml.relauncher.Side;
 
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
 public class PacketHandler {
-    // 创建一个名为 "backpack" 的网络通道
-    private static final SimpleNetworkWrapper INSTANCE = NetworkRegistry.INSTANCE.newSimpleChannel("Backpack");
+
+    // 网络通道名称
+    static final String CHANNEL_NAME = "Backpack";
+
+    // 客户端本刻内等待发送到服务器的操作，在客户端刻结束时一起发送
+    private static final List<IMessage> QUEUED = new ArrayList<>();
 
     // 初始化方法，用于注册消息
     public static void init() {
-        // 注册 OpenBackpackMessage 消息，从客户端发送到服务器
-        INSTANCE.registerMessage(OpenBackpackMessage.Handler.class, OpenBackpackMessage.class, 0, Side.SERVER);
-        INSTANCE.registerMessage(MemorySlotMessage.Handler.class, MemorySlotMessage.class, 1, Side.SERVER);
-        INSTANCE.registerMessage(OpenSelectMessage.Handler.class, OpenSelectMessage.class, 2, Side.SERVER);
-        INSTANCE.registerMessage(SelectQuickMove.Handler.class, SelectQuickMove.class, 3, Side.SERVER);
+        SimpleNetworkWrapper channel = Channel.INSTANCE;
+        // 注册从客户端发送到服务器的消息，这些消息也可以放入批量消息
+        registerServerMessages(channel);
+        // 注册从服务器发送到客户端的消息和批量消息本身
+        channel.registerMessage(MemorySyncMessage.Handler.class, MemorySyncMessage.class, 4, Side.CLIENT);
+        channel.registerMessage(BackpackSlotSyncMessage.Handler.class, BackpackSlotSyncMessage.class, 6, Side.CLIENT);
+        channel.registerMessage(BackpackBatchMessage.Handler.class, BackpackBatchMessage.class, 7, Side.SERVER);
+        channel.registerMessage(BackpackSearchResultMessage.Handler.class, BackpackSearchResultMessage.class, 10, Side.CLIENT);
+    }
+
+    /**
+     * 只登记可以放入批量消息的操作，不创建网络通道，编号与 {@link #init()} 相同
+     * 用于在没有 Forge 网络环境的单元测试中编码和解码批量消息
+     */
+    static void registerBatchMessages() {
+        registerServerMessages(null);
+    }
+
+    /**
+     * 从客户端发送到服务器的消息及其编号，init 和 registerBatchMessages 共用
+     *
+     * @param channel 网络通道，为 null 时只登记到批量消息
+     */
+    private static void registerServerMessages(@Nullable SimpleNetworkWrapper channel) {
+        registerServerMessage(channel, new OpenBackpackMessage.Handler(), OpenBackpackMessage.class, OpenBackpackMessage::new, 0);
+        registerServerMessage(channel, new MemorySlotMessage.Handler(), MemorySlotMessage.class, MemorySlotMessage::new, 1);
+        registerServerMessage(channel, new OpenSelectMessage.Handler(), OpenSelectMessage.class, OpenSelectMessage::new, 2);
+        registerServerMessage(channel, new SelectQuickMove.Handler(), SelectQuickMove.class, SelectQuickMove::new, 3);
+        registerServerMessage(channel, new BackpackPageMessage.Handler(), BackpackPageMessage.class, BackpackPageMessage::new, 5);
+        registerServerMessage(channel, new BackpackActionMessage.Handler(), BackpackActionMessage.class, BackpackActionMessage::new, 8);
+        registerServerMessage(channel, new BackpackSearchMessage.Handler(), BackpackSearchMessage.class, BackpackSearchMessage::new, 9);
+    }
+
+    /**
+     * 注册从客户端发送到服务器的消息，并登记为可以放入批量消息的操作
+     * 处理器外包一层接收计数，单独发送和放在批量消息中的操作都会被统计
+     *
+     * @param channel       网络通道，为 null 时只登记到批量消息
+     * @param handler       消息处理器
+     * @param type          消息类型
+     * @param factory       创建空消息的工厂，用于从批量消息中解码
+     * @param discriminator 消息编号
+     */
+    private static <REQ extends IMessage> void registerServerMessage(@Nullable SimpleNetworkWrapper channel,
+                                                                     IMessageHandler<REQ, IMessage> handler, Class<REQ> type,
+                                                                     Supplier<REQ> factory, int discriminator) {
+        IMessageHandler<REQ, IMessage> counted = (message, ctx) -> {
+            BackpackMetrics.packetReceived(type);
+            return handler.onMessage(message, ctx);
+        };
+        if (channel != null) {
+            channel.registerMessage(counted, type, discriminator, Side.SERVER);
+        }
+        BackpackBatchMessage.register(discriminator, type, factory, counted);
     }
 
     // 获取 SimpleNetworkWrapper 实例
     public static SimpleNetworkWrapper getInstance() {
-        return INSTANCE;
+        return Channel.INSTANCE;
     }
 
-    // 从客户端向服务器发送消息
+    // 从客户端向服务器发送消息，先发送队列中的操作以保持顺序
     public static void sendToServer(IMessage message) {
-        INSTANCE.sendToServer(message);
+        flushToServer();
+        send(message);
+    }
+
+    /**
+     * 把发往服务器的操作放入队列，同一客户端刻内的操作在刻结束时打包为一个数据包发送
+     * 操作与原版的点击等数据包有先后关系时，需要在发送原版数据包之前调用 {@link #flushToServer()}
+     *
+     * @param message 可以放入批量消息的操作
+     */
+    public static void queueToServer(IMessage message) {
+        if (!BackpackBatchMessage.isBatchable(message)) {
+            throw new IllegalArgumentException("消息不能放入批量消息: " + message.getClass().getName());
+        }
+        QUEUED.add(message);
+    }
+
+    /**
+     * 立即发送队列中的所有操作
+     */
+    public static void flushToServer() {
+        if (QUEUED.isEmpty()) {
+            return;
+        }
+        List<IMessage> messages = new ArrayList<>(QUEUED);
+        QUEUED.clear();
+        sendAll(messages);
+    }
+
+    // 发送多个操作，多于一个时打包为批量消息
+    private static void sendAll(List<IMessage> messages) {
+        if (messages.size() == 1) {
+            send(messages.get(0));
+            return;
+        }
+        for (int start = 0; start < messages.size(); start += BackpackBatchMessage.MAX_MESSAGES) {
+            BackpackBatchMessage batch = new BackpackBatchMessage();
+            for (IMessage message : messages.subList(start, Math.min(start + BackpackBatchMessage.MAX_MESSAGES, messages.size()))) {
+                batch.add(message);
+            }
+            send(batch.size() == 1 ? messages.get(start) : batch);
+        }
+    }
+
+    private static void send(IMessage message) {
+        BackpackMetrics.packetSent(message.getClass());
+        Channel.INSTANCE.sendToServer(message);
+    }
+
+    // 从服务器向指定玩家发送消息
+    public static void sendTo(IMessage message, EntityPlayerMP player) {
+        BackpackMetrics.packetSent(message.getClass());
+        Channel.INSTANCE.sendTo(message, player);
+    }
+
+    /**
+     * 网络通道在第一次使用时才创建，只登记批量消息时不需要 Forge 的网络环境
+     */
+    private static final class Channel {
+
+        // 创建一个名为 "backpack" 的网络通道
+        private static final SimpleNetworkWrapper INSTANCE = NetworkRegistry.INSTANCE.newSimpleChannel(CHANNEL_NAME);
     }
 }
@@ -11,6 +11,9 @@ import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
 
 public class SelectQuickMove implements IMessage {
 
+    // 消息没有内容，发送时复用同一个实例
+    public static final SelectQuickMove INSTANCE = new SelectQuickMove();
+
     public SelectQuickMove() {
     }
 
@@ -0,0 +1,179 @@
+package com.backpack.pickup;
+
+import com.backpack.inventory.backpack.BackpackItemHandler;
+import com.backpack.inventory.backpack.InventoryBackpackFunction;
+import com.backpack.item.ItemModBackpack;
+import net.minecraft.entity.item.EntityItem;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.item.ItemStack;
+import net.minecraft.stats.StatList;
+import net.minecraftforge.event.entity.player.EntityItemPickupEvent;
+import net.minecraftforge.fml.common.FMLCommonHandler;
+import net.minecraftforge.fml.common.Mod;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+import net.minecraftforge.fml.relauncher.ReflectionHelper;
+import net.minecraftforge.items.CapabilityItemHandler;
+import net.minecraftforge.items.IItemHandler;
+
+import javax.annotation.Nullable;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 背包自动拾取
+ * 玩家拾取物品时，如果身上开启了自动拾取的背包中有该物品的记忆槽位或未堆满的物品堆，
+ * 物品会被放入背包，而不是玩家库存。拾取时只通过背包的索引判断是否放得下，
+ * 同一服务器刻内的所有拾取在刻结束时一起放入背包，每个背包只保存一次。
+ * 放不下的剩余物品留在地上，之后由原版逻辑拾取到玩家库存。
+ */
+@Mod.EventBusSubscriber
+public class BackpackAutoPickup {
+
+    // 本刻内等待放入背包的拾取，只在服务器线程访问
+    private static final Map<EntityPlayer, Batch> PENDING = new IdentityHashMap<>();
+    // 掉落物已存在的刻数，getAge 只在客户端存在
+    private static final Field ITEM_AGE = ReflectionHelper.findField(EntityItem.class, "field_70292_b", "age");
+
+    /**
+     * 玩家碰到掉落物时触发，把应该放入背包的物品登记到本刻的批次中，并阻止原版拾取。
+     *
+     * @param event 物品拾取事件
+     */
+    @SubscribeEvent
+    public static void onItemPickup(EntityItemPickupEvent event) {
+        EntityPlayer player = event.getEntityPlayer();
+        EntityItem entity = event.getItem();
+        if (player.world.isRemote || entity.isDead || entity.cannotPickup()) {
+            return;
+        }
+        // 其他玩家丢出的物品仍然按原版规则处理
+        if (!canPickup(entity, player)) {
+            return;
+        }
+        ItemStack stack = entity.getItem();
+        if (stack.isEmpty()) {
+            return;
+        }
+
+        // 同一刻内只查找一次玩家身上的背包
+        Batch batch = PENDING.get(player);
+        if (batch == null) {
+            batch = new Batch(findBackpack(player));
+            PENDING.put(player, batch);
+        }
+        if (batch.handler == null || batch.items.contains(entity)) {
+            return;
+        }
+        // 空背包没有记忆槽位和物品堆，不会拾取物品，也不需要为它绑定 UUID
+        InventoryBackpackFunction inventory = batch.handler.getInventoryForRead();
+        if (inventory == null || !inventory.canAutoPickup(stack)) {
+            return;
+        }
+        batch.items.add(entity);
+        event.setCanceled(true);
+    }
+
+    /**
+     * 服务器刻结束时把本刻登记的物品一起放入背包。
+     *
+     * @param event 服务器刻事件
+     */
+    @SubscribeEvent
+    public static void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END || PENDING.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<EntityPlayer, Batch> entry : PENDING.entrySet()) {
+            Batch batch = entry.getValue();
+            if (batch.handler != null && !entry.getKey().isDead) {
+                apply(entry.getKey(), batch);
+            }
+        }
+        PENDING.clear();
+    }
+
+    /**
+     * 把一个批次中的掉落物放入背包。背包的修改只登记一次写回。
+     */
+    private static void apply(EntityPlayer player, Batch batch) {
+        for (EntityItem entity : batch.items) {
+            // 同一刻内可能已经被其他玩家拾取或与其他掉落物合并
+            ItemStack stack = entity.getItem();
+            if (entity.isDead || stack.isEmpty()) {
+                continue;
+            }
+            int count = stack.getCount();
+            ItemStack remainder = batch.handler.insertItem(stack, false);
+            int moved = count - remainder.getCount();
+            if (moved <= 0) {
+                continue;
+            }
+            ItemStack picked = stack.copy();
+            picked.setCount(moved);
+            FMLCommonHandler.instance().firePlayerItemPickupEvent(player, entity, picked);
+            player.onItemPickup(entity, moved);
+            player.addStat(StatList.getObjectsPickedUpStats(stack.getItem()), moved);
+            if (remainder.isEmpty()) {
+                entity.setDead();
+            } else {
+                entity.setItem(remainder);
+            }
+        }
+    }
+
+    /**
+     * 与原版 EntityItem.onCollideWithPlayer 相同的所有者判断：
+     * 没有所有者、即将消失或所有者就是该玩家时才能拾取。
+     */
+    private static boolean canPickup(EntityItem entity, EntityPlayer player) {
+        String owner = entity.getOwner();
+        if (owner == null || owner.equals(player.getName())) {
+            return true;
+        }
+        try {
+            return entity.lifespan - ITEM_AGE.getInt(entity) <= 200;
+        } catch (IllegalAccessException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 查找玩家身上第一个开启了自动拾取的背包。
+     *
+     * @param player 玩家
+     * @return 背包的 IItemHandler，没有时返回 null
+     */
+    @Nullable
+    private static BackpackItemHandler findBackpack(EntityPlayer player) {
+        for (int i = 0; i < player.inventory.getSizeInventory(); i++) {
+            ItemStack stack = player.inventory.getStackInSlot(i);
+            if (stack.getItem() instanceof ItemModBackpack && ItemModBackpack.isAutoPickup(stack)) {
+                IItemHandler handler = stack.getCapability(CapabilityItemHandler.ITEM_HANDLER_CAPABILITY, null);
+                if (handler instanceof BackpackItemHandler) {
+                    return (BackpackItemHandler) handler;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 一个玩家在一刻内的拾取。
+     */
+    private static final class Batch {
+
+        // 开启了自动拾取的背包，玩家没有时为 null
+        @Nullable
+        private final BackpackItemHandler handler;
+        // 等待放入背包的掉落物
+        private final List<EntityItem> items = new ArrayList<>();
+
+        Batch(@Nullable BackpackItemHandler handler) {
+            this.handler = handler;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.backpack.register;
+
+import com.Backpack;
+import com.backpack.block.BlockBackpackDock;
+import com.backpack.block.BlockMod;
+import com.backpack.tileentity.TileEntityBackpackDock;
+import net.minecraft.block.Block;
+import net.minecraft.client.renderer.block.model.ModelResourceLocation;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemBlock;
+import net.minecraft.util.ResourceLocation;
+import net.minecraftforge.client.event.ModelRegistryEvent;
+import net.minecraftforge.client.model.ModelLoader;
+import net.minecraftforge.event.RegistryEvent;
+import net.minecraftforge.fml.common.Mod;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.registry.GameRegistry;
+import net.minecraftforge.fml.relauncher.Side;
+import net.minecraftforge.fml.relauncher.SideOnly;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 方块注册类。
+ * 该类负责在游戏初始化时注册所有自定义方块、方块物品和方块实体，并在客户端注册方块物品的模型。
+ */
+@Mod.EventBusSubscriber
+public class RegisterBlock {
+
+    // 日志记录器
+    public static final Logger LOGGER = LogManager.getLogger();
+
+    // 方块列表
+    public static final List<Block> BLOCKS_LIST = new ArrayList<>();
+
+    // 方块实例
+    public static final BlockMod backpack_dock = new BlockBackpackDock("backpack_dock");
+
+    /**
+     * 注册所有方块和方块实体。
+     *
+     * @param event 注册事件
+     */
+    @SubscribeEvent
+    public static void registerBlocks(RegistryEvent.Register<Block> event) {
+        event.getRegistry().registerAll(BLOCKS_LIST.toArray(new Block[0]));
+        GameRegistry.registerTileEntity(TileEntityBackpackDock.class, new ResourceLocation(Backpack.MODID, "backpack_dock"));
+        LOGGER.info("Registered {} blocks.", BLOCKS_LIST.size());
+    }
+
+    /**
+     * 为每个方块注册对应的方块物品。
+     *
+     * @param event 注册事件
+     */
+    @SubscribeEvent
+    public static void registerItems(RegistryEvent.Register<Item> event) {
+        for (Block block : BLOCKS_LIST) {
+            event.getRegistry().register(new ItemBlock(block).setRegistryName(block.getRegistryName()));
+        }
+    }
+
+    /**
+     * 注册方块物品的模型。
+     *
+     * @param event 模型注册事件
+     */
+    @SideOnly(Side.CLIENT)
+    @SubscribeEvent
+    public static void onModelRegister(ModelRegistryEvent event) {
+        for (Block block : BLOCKS_LIST) {
+            ModelLoader.setCustomModelResourceLocation(
+                    Item.getItemFromBlock(block),
+                    0,
+                    new ModelResourceLocation(block.getRegistryName(), "inventory")
+            );
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.backpack.register;
 
+import com.backpack.item.BackpackTier;
 import com.backpack.item.ItemModBackpack;
 import com.backpack.item.ItemMod;
 import com.backpack.tab.ModTabs;
@@ -38,6 +39,8 @@ public class RegisterItem {
     // 物品实例
     // 背包类
     public static final ItemMod backpack = new ItemModBackpack("backpack");
+    public static final ItemMod backpack_large = new ItemModBackpack("backpack_large", BackpackTier.LARGE);
+    public static final ItemMod backpack_huge = new ItemModBackpack("backpack_huge", BackpackTier.HUGE);
     // 普通类
     //public static final ModItem backpack1 = new ModItem("backpack1");
 
@@ -1,11 +1,16 @@
 package com.backpack.slot;
 
 import com.backpack.inventory.backpack.InventoryBackpackFunction;
+import com.backpack.inventory.backpack.InventoryBackpackPage;
 import com.backpack.item.ItemModBackpack;
 import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.inventory.Slot;
 import net.minecraft.item.ItemStack;
+import net.minecraftforge.fml.relauncher.Side;
+import net.minecraftforge.fml.relauncher.SideOnly;
 
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 
 /**
@@ -17,7 +22,9 @@ import javax.annotation.ParametersAreNonnullByDefault;
 public class SlotBackpack extends Slot {
 
     private final InventoryBackpackFunction backpackInventory;
-    private final int slotId;
+    // 槽位所在的分页视图，直接放在背包上的槽位为 null
+    @Nullable
+    private final InventoryBackpackPage page;
 
     /**
      * 构造函数
@@ -31,7 +38,41 @@ public class SlotBackpack extends Slot {
     public SlotBackpack(InventoryBackpackFunction backpackInventory, int index, int xPosition, int yPosition) {
         super(backpackInventory, index, xPosition, yPosition);
         this.backpackInventory = backpackInventory;
-        this.slotId = index;
+        this.page = null;
+    }
+
+    /**
+     * 构造函数
+     * 初始化分页背包中的槽位，对应的背包槽位随当前页变化
+     *
+     * @param page      背包的分页视图
+     * @param index     页内槽位索引
+     * @param xPosition 槽位的X坐标
+     * @param yPosition 槽位的Y坐标
+     */
+    public SlotBackpack(InventoryBackpackPage page, int index, int xPosition, int yPosition) {
+        super(page, index, xPosition, yPosition);
+        this.backpackInventory = page.getBackpack();
+        this.page = page;
+    }
+
+    /**
+     * 获取槽位当前对应的背包槽位索引
+     *
+     * @return 背包中的槽位索引
+     */
+    public int getBackpackIndex() {
+        return this.page != null ? this.page.getOffset() + getSlotIndex() : getSlotIndex();
+    }
+
+    /**
+     * 检查槽位在背包中是否存在
+     * 分页容器每页都注册36个槽位，最后一页超出背包大小的槽位视为不存在
+     *
+     * @return 如果槽位对应背包中的槽位则返回true
+     */
+    public boolean isPresent() {
+        return this.page == null || this.page.contains(getSlotIndex());
     }
 
     /**
@@ -48,16 +89,20 @@ public class SlotBackpack extends Slot {
             return false;
         }
 
-        // 获取当前槽位的记忆物品
-        ItemStack memoryItem = this.backpackInventory.getMemoryItem(slotId);
+        // 最后一页超出背包大小的槽位不允许放入
+        if (!isPresent()) {
+            return false;
+        }
 
-        // 如果记忆物品为空，则允许放入任何物品
-        if (memoryItem.isEmpty()) {
+        int slotId = getBackpackIndex();
+
+        // 如果没有记忆物品，则允许放入任何物品
+        if (!this.backpackInventory.hasMemoryItem(slotId)) {
             return true;
         }
 
-        // 比较放入的物品与记忆物品是否相同
-        return stack.getItem() == memoryItem.getItem();
+        // 通过记忆物品索引比较放入的物品与记忆物品是否相同
+        return this.backpackInventory.isMemoryItem(slotId, stack.getItem());
     }
 
     /**
@@ -68,6 +113,9 @@ public class SlotBackpack extends Slot {
      */
     @Override
     public void putStack(ItemStack stack) {
+        if (!isPresent()) {
+            return;
+        }
         // 在这里也可以添加额外的逻辑，但通常来说 isItemValid 应该已经足够了
         if (isItemValid(stack)) {
             super.putStack(stack);
@@ -77,5 +125,41 @@ public class SlotBackpack extends Slot {
         }
     }
 
+    /**
+     * 槽位内容发生变化时调用
+     * 合并等操作会原地修改物品堆的数量，这里先标记该槽位需要写回
+     */
+    @Override
+    public void onSlotChanged() {
+        // 最后一页超出背包大小的槽位没有对应的背包槽位
+        if (isPresent()) {
+            this.backpackInventory.markSlotDirty(getBackpackIndex());
+        }
+        super.onSlotChanged();
+    }
+
+    @Override
+    public ItemStack getStack() {
+        return isPresent() ? super.getStack() : ItemStack.EMPTY;
+    }
+
+    @Override
+    public ItemStack decrStackSize(int amount) {
+        return isPresent() ? super.decrStackSize(amount) : ItemStack.EMPTY;
+    }
+
+    @Override
+    public boolean canTakeStack(EntityPlayer playerIn) {
+        return isPresent() && super.canTakeStack(playerIn);
+    }
+
+    /**
+     * 不存在的槽位不绘制，也不响应鼠标悬停和点击
+     */
+    @Override
+    @SideOnly(Side.CLIENT)
+    public boolean isEnabled() {
+        return isPresent();
+    }
 
 }
@@ -0,0 +1,296 @@
+package com.backpack.storage;
+
+import com.backpack.inventory.backpack.InventoryBackpack;
+import com.backpack.metrics.BackpackMetrics;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTBase;
+import net.minecraft.nbt.NBTSizeTracker;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraftforge.common.util.Constants;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 背包内容的紧凑二进制编码
+ * 物品 ID 只在调色板中出现一次，槽位占用情况用位图表示，数量和损伤值用变长整数编码，
+ * 只有带额外数据（如附魔、自定义名称）的物品才会写入 NBT。
+ * 格式：
+ * <pre>
+ * 魔数 "BPK" | 版本号 | 调色板 | 物品列表段 | 其他 NBT 数据
+ * 物品列表段：名称 | 位图长度 | 占用位图 | 每个占用槽位的 (调色板索引, 数量, 损伤值, 额外 NBT)
+ * </pre>
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public final class BackpackCodec {
+
+    // 文件头魔数
+    private static final byte[] MAGIC = {'B', 'P', 'K'};
+    // 当前的格式版本
+    public static final int VERSION = 1;
+
+    // ItemStack.writeToNBT 写入的基本字段
+    private static final String ID_TAG = "id";
+    private static final String COUNT_TAG = "Count";
+    private static final String DAMAGE_TAG = "Damage";
+
+    private BackpackCodec() {
+    }
+
+    /**
+     * 检查数据是否为此格式编码。
+     *
+     * @param data 解压后的数据
+     * @return 如果以本格式的魔数开头则返回true
+     */
+    public static boolean isEncoded(byte[] data) {
+        if (data.length < MAGIC.length + 1) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (data[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 将背包内容编码为二进制数据。
+     *
+     * @param contents 背包内容
+     * @return 编码后的数据
+     * @throws IOException 写入失败时抛出
+     */
+    public static byte[] encode(NBTTagCompound contents) throws IOException {
+        List<String> sectionNames = new ArrayList<>();
+        NBTTagCompound rest = new NBTTagCompound();
+        List<String> palette = new ArrayList<>();
+        Map<String, Integer> paletteIndex = new HashMap<>();
+
+        // 区分可以按槽位编码的物品列表和其他数据，同时建立调色板
+        for (String key : contents.getKeySet()) {
+            NBTBase tag = contents.getTag(key);
+            if (isSlotList(tag)) {
+                sectionNames.add(key);
+                NBTTagList list = (NBTTagList) tag;
+                for (int i = 0; i < list.tagCount(); i++) {
+                    String id = list.getCompoundTagAt(i).getString(ID_TAG);
+                    if (!paletteIndex.containsKey(id)) {
+                        paletteIndex.put(id, palette.size());
+                        palette.add(id);
+                    }
+                }
+            } else {
+                rest.setTag(key, tag.copy());
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.write(MAGIC);
+        output.writeByte(VERSION);
+
+        writeVarInt(output, palette.size());
+        for (String id : palette) {
+            output.writeUTF(id);
+        }
+
+        writeVarInt(output, sectionNames.size());
+        for (String name : sectionNames) {
+            output.writeUTF(name);
+            writeSection(output, contents.getTagList(name, Constants.NBT.TAG_COMPOUND), paletteIndex);
+        }
+
+        output.writeBoolean(!rest.hasNoTags());
+        if (!rest.hasNoTags()) {
+            CompressedStreamTools.write(rest, output);
+        }
+        output.flush();
+        BackpackMetrics.BYTES_WRITTEN.add(bytes.size());
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 将二进制数据解码为背包内容，结果与编码前的 NBT 结构相同。
+     *
+     * @param data 编码后的数据
+     * @return 背包内容
+     * @throws IOException 数据损坏或版本不支持时抛出
+     */
+    public static NBTTagCompound decode(byte[] data) throws IOException {
+        if (!isEncoded(data)) {
+            throw new IOException("不是背包编码数据");
+        }
+        BackpackMetrics.BYTES_READ.add(data.length);
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(data, MAGIC.length, data.length - MAGIC.length));
+        int version = input.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("不支持的背包数据版本 " + version);
+        }
+
+        String[] palette = new String[readVarInt(input)];
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] = input.readUTF();
+        }
+
+        NBTTagCompound contents = new NBTTagCompound();
+        int sectionCount = readVarInt(input);
+        for (int i = 0; i < sectionCount; i++) {
+            String name = input.readUTF();
+            contents.setTag(name, readSection(input, palette));
+        }
+
+        if (input.readBoolean()) {
+            NBTTagCompound rest = CompressedStreamTools.read(input, NBTSizeTracker.INFINITE);
+            for (String key : rest.getKeySet()) {
+                contents.setTag(key, rest.getTag(key));
+            }
+        }
+        return contents;
+    }
+
+    /**
+     * 检查标签是否为可以按槽位编码的物品列表：每个条目都有 ID 和互不重复的非负槽位索引。
+     */
+    private static boolean isSlotList(NBTBase tag) {
+        if (!(tag instanceof NBTTagList)) {
+            return false;
+        }
+        NBTTagList list = (NBTTagList) tag;
+        if (list.tagCount() > 0 && list.getTagType() != Constants.NBT.TAG_COMPOUND) {
+            return false;
+        }
+        BitSet seen = new BitSet();
+        for (int i = 0; i < list.tagCount(); i++) {
+            NBTTagCompound itemTag = list.getCompoundTagAt(i);
+            if (!itemTag.hasKey(ID_TAG, Constants.NBT.TAG_STRING)) {
+                return false;
+            }
+            int slotIndex = InventoryBackpack.readSlotIndex(itemTag);
+            if (slotIndex < 0 || seen.get(slotIndex)) {
+                return false;
+            }
+            seen.set(slotIndex);
+        }
+        return true;
+    }
+
+    private static void writeSection(DataOutput output, NBTTagList list, Map<String, Integer> paletteIndex) throws IOException {
+        NBTTagCompound[] bySlot = new NBTTagCompound[0];
+        BitSet occupied = new BitSet();
+        for (int i = 0; i < list.tagCount(); i++) {
+            NBTTagCompound itemTag = list.getCompoundTagAt(i);
+            int slotIndex = InventoryBackpack.readSlotIndex(itemTag);
+            if (slotIndex >= bySlot.length) {
+                NBTTagCompound[] grown = new NBTTagCompound[Math.max(slotIndex + 1, bySlot.length * 2)];
+                System.arraycopy(bySlot, 0, grown, 0, bySlot.length);
+                bySlot = grown;
+            }
+            bySlot[slotIndex] = itemTag;
+            occupied.set(slotIndex);
+        }
+
+        // 占用位图
+        int length = occupied.length();
+        writeVarInt(output, length);
+        byte[] bitmap = new byte[(length + 7) / 8];
+        byte[] bits = occupied.toByteArray();
+        System.arraycopy(bits, 0, bitmap, 0, bits.length);
+        output.write(bitmap);
+
+        for (int slotIndex = occupied.nextSetBit(0); slotIndex >= 0; slotIndex = occupied.nextSetBit(slotIndex + 1)) {
+            NBTTagCompound itemTag = bySlot[slotIndex];
+            writeVarInt(output, paletteIndex.get(itemTag.getString(ID_TAG)));
+            writeVarInt(output, itemTag.getByte(COUNT_TAG) & 0xFF);
+            writeVarInt(output, zigZag(itemTag.getShort(DAMAGE_TAG)));
+
+            // 基本字段以外的数据（tag、ForgeCaps 等）保留为 NBT
+            NBTTagCompound extra = itemTag.copy();
+            extra.removeTag(InventoryBackpack.SLOT_TAG);
+            extra.removeTag(ID_TAG);
+            extra.removeTag(COUNT_TAG);
+            extra.removeTag(DAMAGE_TAG);
+            output.writeBoolean(!extra.hasNoTags());
+            if (!extra.hasNoTags()) {
+                CompressedStreamTools.write(extra, output);
+            }
+        }
+    }
+
+    private static NBTTagList readSection(DataInput input, String[] palette) throws IOException {
+        int length = readVarInt(input);
+        byte[] bitmap = new byte[(length + 7) / 8];
+        input.readFully(bitmap);
+        BitSet occupied = BitSet.valueOf(bitmap);
+
+        NBTTagList list = new NBTTagList();
+        for (int slotIndex = occupied.nextSetBit(0); slotIndex >= 0; slotIndex = occupied.nextSetBit(slotIndex + 1)) {
+            int id = readVarInt(input);
+            if (id >= palette.length) {
+                throw new IOException("调色板索引越界 " + id);
+            }
+            NBTTagCompound itemTag = new NBTTagCompound();
+            itemTag.setString(ID_TAG, palette[id]);
+            itemTag.setByte(COUNT_TAG, (byte) readVarInt(input));
+            itemTag.setShort(DAMAGE_TAG, (short) unZigZag(readVarInt(input)));
+            if (input.readBoolean()) {
+                NBTTagCompound extra = CompressedStreamTools.read(input, NBTSizeTracker.INFINITE);
+                for (String key : extra.getKeySet()) {
+                    itemTag.setTag(key, extra.getTag(key));
+                }
+            }
+            InventoryBackpack.writeSlotIndex(itemTag, slotIndex);
+            list.appendTag(itemTag);
+        }
+        return list;
+    }
+
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * 写入变长整数，每个字节使用低 7 位，最高位表示后面还有字节。
+     */
+    static void writeVarInt(DataOutput output, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    /**
+     * 读取变长整数。
+     */
+    static int readVarInt(DataInput input) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = input.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("变长整数过长");
+    }
+}
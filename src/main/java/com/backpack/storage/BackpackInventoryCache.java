@@ -0,0 +1,177 @@
+package com.backpack.storage;
+
+import com.backpack.inventory.backpack.InventoryBackpackFunction;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.item.ItemStack;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 服务器端已解码背包库存的 LRU 缓存
+ * 以背包 UUID 为键，容量按槽位总数计算。被淘汰的背包会先写回存储，
+ * 正在被容器使用的背包不会被淘汰。只在服务器线程访问。
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class BackpackInventoryCache {
+
+    // 日志记录器
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    // 缓存中所有背包的槽位总数上限
+    private static final int MAX_CACHED_SLOTS = 36 * 256;
+
+    // 按访问顺序排列的缓存，最久未使用的在最前面
+    private static final LinkedHashMap<UUID, InventoryBackpackFunction> CACHE = new LinkedHashMap<>(64, 0.75F, true);
+    // 缓存中所有背包的槽位总数
+    private static int cachedSlots = 0;
+
+    // 统计计数
+    private static long hits = 0;
+    private static long misses = 0;
+    private static long evictions = 0;
+    // 缓存中有背包被移除时递增，持有库存引用的调用者据此判断引用是否仍然有效
+    private static long generation = 0;
+
+    /**
+     * 获取背包对应的库存，缓存未命中时从存储中解码并放入缓存。
+     *
+     * @param backpackStack 背包物品堆
+     * @param store         背包存储
+     * @return 处于延迟写回模式的背包库存
+     */
+    public static InventoryBackpackFunction get(ItemStack backpackStack, BackpackStore store) {
+        UUID id = BackpackStore.getOrCreateId(backpackStack);
+        InventoryBackpackFunction inventory = CACHE.get(id);
+        if (inventory != null) {
+            hits++;
+            // 正在被使用的背包属于另一个物品堆，说明有复制出的物品堆共用同一个 UUID
+            if (inventory.getBackpackStack() != backpackStack && inventory.isInUse()) {
+                LOGGER.warn("背包 {} 正在使用时另一个物品堆以同一个 UUID 访问，两者会共用内容", id);
+            }
+            return inventory;
+        }
+
+        misses++;
+        inventory = new InventoryBackpackFunction(backpackStack, store);
+        inventory.setWriteBack(true);
+        CACHE.put(id, inventory);
+        cachedSlots += inventory.getSizeInventory();
+        evict(id);
+        return inventory;
+    }
+
+    /**
+     * 让背包物品堆改用新的 UUID，内容复制自原 UUID 当前的内容，包括缓存中尚未写回的修改。
+     *
+     * @param backpackStack 共用 UUID 的背包物品堆之一
+     * @param store         背包存储
+     * @return 新的 UUID
+     */
+    public static UUID separate(ItemStack backpackStack, BackpackStore store) {
+        UUID oldId = BackpackStore.getOrCreateId(backpackStack);
+        InventoryBackpackFunction cached = CACHE.get(oldId);
+        if (cached != null) {
+            cached.flush();
+        }
+        UUID newId = store.reassignId(backpackStack);
+        // 物品堆的能力可能还持有原 UUID 的库存，让它们重新获取
+        generation++;
+        LOGGER.warn("背包 {} 被多个物品堆共用，打开的物品堆改用新的 UUID {}", oldId, newId);
+        return newId;
+    }
+
+    /**
+     * 写回背包在缓存中的库存并把它移出缓存，之后的访问重新从存储中解码。
+     * 用于在清空背包内容之前，避免旧的库存之后再写回存储。
+     *
+     * @param id 背包的 UUID
+     */
+    public static void remove(UUID id) {
+        InventoryBackpackFunction inventory = CACHE.remove(id);
+        if (inventory != null) {
+            inventory.flush();
+            cachedSlots -= inventory.getSizeInventory();
+            generation++;
+        }
+    }
+
+    /**
+     * 淘汰最久未使用且没有被容器使用的背包，直到槽位总数不超过上限。
+     *
+     * @param keep 刚放入缓存、即将被使用的背包，不参与淘汰
+     */
+    private static void evict(UUID keep) {
+        Iterator<Map.Entry<UUID, InventoryBackpackFunction>> iterator = CACHE.entrySet().iterator();
+        while (cachedSlots > MAX_CACHED_SLOTS && iterator.hasNext()) {
+            Map.Entry<UUID, InventoryBackpackFunction> entry = iterator.next();
+            InventoryBackpackFunction inventory = entry.getValue();
+            if (inventory.isInUse() || entry.getKey().equals(keep)) {
+                continue;
+            }
+            // 淘汰前写回尚未保存的修改
+            inventory.flush();
+            iterator.remove();
+            cachedSlots -= inventory.getSizeInventory();
+            evictions++;
+            generation++;
+        }
+    }
+
+    /**
+     * 写回并清空整个缓存，在服务器关闭时调用。
+     */
+    public static void clear() {
+        for (InventoryBackpackFunction inventory : CACHE.values()) {
+            inventory.flush();
+        }
+        CACHE.clear();
+        cachedSlots = 0;
+        generation++;
+    }
+
+    /**
+     * 获取缓存的代数。代数不变时，之前从缓存取得的库存仍在缓存中，可以继续使用。
+     *
+     * @return 代数
+     */
+    public static long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * 检查背包是否有已解码的库存在缓存中。
+     *
+     * @param id 背包的 UUID
+     * @return 如果在缓存中则返回true
+     */
+    public static boolean contains(UUID id) {
+        return CACHE.containsKey(id);
+    }
+
+    public static int getSize() {
+        return CACHE.size();
+    }
+
+    public static int getCachedSlots() {
+        return cachedSlots;
+    }
+
+    public static long getHits() {
+        return hits;
+    }
+
+    public static long getMisses() {
+        return misses;
+    }
+
+    public static long getEvictions() {
+        return evictions;
+    }
+}
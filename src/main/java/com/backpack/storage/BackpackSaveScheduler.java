@@ -0,0 +1,81 @@
+package com.backpack.storage;
+
+import com.backpack.container.ContainerBackpack;
+import com.backpack.container.ContainerSelect;
+import com.backpack.inventory.backpack.InventoryBackpack;
+import net.minecraft.inventory.Container;
+import net.minecraftforge.fml.common.Mod;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 背包写回调度器
+ * 处于延迟写回模式的背包在修改时登记到这里，每个服务器刻结束时统一写回一次，
+ * 玩家退出和服务器关闭时也会立即写回。
+ */
+@Mod.EventBusSubscriber
+public class BackpackSaveScheduler {
+
+    // 等待写回的背包库存，只在服务器线程访问
+    private static final Set<InventoryBackpack> PENDING = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * 登记一个有待写回修改的背包库存。
+     *
+     * @param inventory 背包库存
+     */
+    public static void schedule(InventoryBackpack inventory) {
+        PENDING.add(inventory);
+    }
+
+    /**
+     * 立即写回所有登记的背包库存。
+     */
+    public static void flushAll() {
+        if (PENDING.isEmpty()) {
+            return;
+        }
+        // 写回过程中可能再次登记，先复制一份
+        List<InventoryBackpack> inventories = new ArrayList<>(PENDING);
+        PENDING.clear();
+        for (InventoryBackpack inventory : inventories) {
+            if (inventory.isFlushPending()) {
+                inventory.flush();
+            }
+        }
+    }
+
+    /**
+     * 服务器刻结束时写回本刻内的所有修改。
+     *
+     * @param event 服务器刻事件
+     */
+    @SubscribeEvent
+    public static void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase == TickEvent.Phase.END) {
+            flushAll();
+        }
+    }
+
+    /**
+     * 玩家退出时在保存玩家数据之前写回其打开的背包。
+     *
+     * @param event 玩家退出事件
+     */
+    @SubscribeEvent
+    public static void onPlayerLoggedOut(PlayerEvent.PlayerLoggedOutEvent event) {
+        Container container = event.player.openContainer;
+        if (container instanceof ContainerBackpack) {
+            ((ContainerBackpack) container).getBackpackInventory().flush();
+        } else if (container instanceof ContainerSelect) {
+            ((ContainerSelect) container).getBackpackInventory().flush();
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.backpack.storage;
+
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraftforge.common.DimensionManager;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.fml.common.Mod;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 世界级别的背包内容存储
+ * 背包物品堆上只保存一个 UUID，背包内容以 UUID 为键保存在存档目录的 backpacks 文件夹中，
+ * 每个背包对应一个压缩文件（格式见 {@link BackpackCodec}）。保存时只为发生变化的背包创建快照，由后台线程写入文件。
+ * 已经写入文件且没有被库存缓存使用的背包内容在保存时从内存中移除，再次使用时重新读取。
+ */
+@Mod.EventBusSubscriber
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class BackpackStore {
+
+    // 日志记录器
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    // 背包物品堆上保存 UUID 的键名
+    private static final String BACKPACK_ID_TAG = "BackpackId";
+    // 存档目录中保存背包内容的文件夹名称
+    private static final String DIRECTORY_NAME = "backpacks";
+
+    // 当前服务器的存储实例，服务器未运行时为 null
+    @Nullable
+    private static BackpackStore instance;
+
+    // 保存背包文件的目录
+    private final File directory;
+    // 已加载的背包内容，已保存且不再使用的背包会被移除
+    private final Map<UUID, NBTTagCompound> contents = new HashMap<>();
+    // 自上次保存以来发生变化的背包
+    private final Set<UUID> dirty = new HashSet<>();
+    // 后台写入器
+    private final BackpackWriter writer;
+
+    BackpackStore(File directory) {
+        this.directory = directory;
+        this.writer = new BackpackWriter(directory);
+        removeTempFiles();
+    }
+
+    /**
+     * 删除上次写入中途被终止时留下的临时文件，对应的旧文件仍然完整。
+     */
+    private void removeTempFiles() {
+        File[] tempFiles = this.directory.listFiles((dir, name) -> name.endsWith(BackpackWriter.TEMP_SUFFIX));
+        if (tempFiles == null) {
+            return;
+        }
+        for (File file : tempFiles) {
+            LOGGER.warn("删除未完成写入的背包文件 {}", file);
+            if (!file.delete()) {
+                LOGGER.error("无法删除文件 {}", file);
+            }
+        }
+    }
+
+    /**
+     * 获取当前服务器的存储实例。
+     *
+     * @return 存储实例，如果服务器未运行则返回 null
+     */
+    @Nullable
+    public static BackpackStore get() {
+        return instance;
+    }
+
+    /**
+     * 服务器启动时打开当前存档的背包存储。
+     */
+    public static void open() {
+        File root = DimensionManager.getCurrentSaveRootDirectory();
+        if (root == null) {
+            LOGGER.error("无法获取存档目录，背包存储未启用");
+            return;
+        }
+        instance = new BackpackStore(new File(root, DIRECTORY_NAME));
+    }
+
+    /**
+     * 服务器关闭后保存剩余修改，等待后台写入完成并释放存储。
+     */
+    public static void close() {
+        if (instance != null) {
+            instance.save();
+            instance.writer.shutdown();
+            Set<UUID> failed = new HashSet<>();
+            if (instance.writer.drainFailed(failed)) {
+                LOGGER.error("服务器关闭时有 {} 个背包未能保存: {}", failed.size(), failed);
+            }
+            instance = null;
+        }
+    }
+
+    /**
+     * 检查背包物品堆是否已经绑定了 UUID。
+     *
+     * @param backpackStack 背包物品堆
+     * @return 如果已经绑定则返回true
+     */
+    public static boolean hasId(ItemStack backpackStack) {
+        NBTTagCompound nbt = backpackStack.getTagCompound();
+        return nbt != null && nbt.hasUniqueId(BACKPACK_ID_TAG);
+    }
+
+    /**
+     * 获取背包物品堆绑定的 UUID，不会生成新的 UUID。
+     *
+     * @param backpackStack 背包物品堆
+     * @return 背包的 UUID，还没有绑定时返回 null
+     */
+    @Nullable
+    public static UUID getId(ItemStack backpackStack) {
+        return hasId(backpackStack) ? backpackStack.getTagCompound().getUniqueId(BACKPACK_ID_TAG) : null;
+    }
+
+    /**
+     * 获取背包物品堆绑定的 UUID，如果还没有则生成一个并写入物品堆。
+     *
+     * @param backpackStack 背包物品堆
+     * @return 背包的 UUID
+     */
+    public static UUID getOrCreateId(ItemStack backpackStack) {
+        NBTTagCompound nbt = backpackStack.getTagCompound();
+        if (nbt == null) {
+            nbt = new NBTTagCompound();
+            backpackStack.setTagCompound(nbt);
+        }
+        if (!nbt.hasUniqueId(BACKPACK_ID_TAG)) {
+            nbt.setUniqueId(BACKPACK_ID_TAG, UUID.randomUUID());
+        }
+        return nbt.getUniqueId(BACKPACK_ID_TAG);
+    }
+
+    /**
+     * 让背包物品堆绑定指定的 UUID，用于需要固定 UUID 的负载测试等场合。
+     *
+     * @param backpackStack 背包物品堆
+     * @param id            背包的 UUID
+     */
+    public static void setId(ItemStack backpackStack, UUID id) {
+        NBTTagCompound nbt = backpackStack.getTagCompound();
+        if (nbt == null) {
+            nbt = new NBTTagCompound();
+            backpackStack.setTagCompound(nbt);
+        }
+        nbt.setUniqueId(BACKPACK_ID_TAG, id);
+    }
+
+    /**
+     * 获取背包内容，如果尚未加载则从文件读取，文件不存在时返回一个新的空内容。
+     * 返回的对象是存储中的实际数据，修改后需要调用 {@link #markDirty(UUID)}。
+     *
+     * @param id 背包的 UUID
+     * @return 背包内容
+     */
+    public NBTTagCompound getContents(UUID id) {
+        NBTTagCompound compound = this.contents.get(id);
+        if (compound == null) {
+            compound = read(id);
+            this.contents.put(id, compound);
+        }
+        return compound;
+    }
+
+    /**
+     * 为背包物品堆绑定一个新的 UUID，并复制原 UUID 当前的内容。
+     * 用于把复制出的、共用同一个 UUID 的物品堆分开，之后两者的内容各自独立。
+     * 调用前需要先把库存缓存中尚未写回的修改写回存储。
+     *
+     * @param backpackStack 已经绑定 UUID 的背包物品堆
+     * @return 新的 UUID
+     */
+    public UUID reassignId(ItemStack backpackStack) {
+        UUID oldId = getOrCreateId(backpackStack);
+        UUID newId = UUID.randomUUID();
+        this.contents.put(newId, getContents(oldId).copy());
+        this.dirty.add(newId);
+        backpackStack.getTagCompound().setUniqueId(BACKPACK_ID_TAG, newId);
+        return newId;
+    }
+
+    /**
+     * 清空背包内容，下次保存时用空内容覆盖原来的文件。
+     * 调用前需要先把该背包的库存移出库存缓存。
+     *
+     * @param id 背包的 UUID
+     */
+    public void reset(UUID id) {
+        this.contents.put(id, new NBTTagCompound());
+        this.dirty.add(id);
+    }
+
+    /**
+     * 标记背包内容已更改，下次保存时写入文件。
+     *
+     * @param id 背包的 UUID
+     */
+    public void markDirty(UUID id) {
+        this.dirty.add(id);
+    }
+
+    /**
+     * 为所有发生变化的背包创建快照并提交给后台写入器。
+     * 上次写入失败的背包重新加入保存，直到写入成功为止。
+     */
+    public void save() {
+        this.writer.drainFailed(this.dirty);
+        for (UUID id : this.dirty) {
+            NBTTagCompound compound = this.contents.get(id);
+            if (compound != null) {
+                // 复制一份快照，之后服务器线程对内容的修改不会影响正在写入的数据
+                this.writer.submit(id, compound.copy());
+            }
+        }
+        this.dirty.clear();
+        evictSaved();
+    }
+
+    /**
+     * 从内存中移除文件已是最新、且没有被库存缓存使用的背包内容。
+     * 刚提交或写入失败的背包要等到写入成功后的下一次保存才会被移除。
+     */
+    private void evictSaved() {
+        Iterator<UUID> iterator = this.contents.keySet().iterator();
+        while (iterator.hasNext()) {
+            UUID id = iterator.next();
+            if (!this.writer.hasUnsavedWrites(id) && !BackpackInventoryCache.contains(id)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 从文件读取背包内容。
+     *
+     * @param id 背包的 UUID
+     * @return 背包内容，文件不存在或损坏时返回空内容
+     */
+    private NBTTagCompound read(UUID id) {
+        File file = getFile(id);
+        if (!file.isFile()) {
+            return new NBTTagCompound();
+        }
+        try (InputStream input = new GZIPInputStream(new FileInputStream(file))) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            byte[] data = bytes.toByteArray();
+            if (BackpackCodec.isEncoded(data)) {
+                return BackpackCodec.decode(data);
+            }
+            // 旧版本直接以压缩 NBT 保存的文件
+            return CompressedStreamTools.read(new DataInputStream(new ByteArrayInputStream(data)));
+        } catch (IOException e) {
+            LOGGER.error("读取背包 {} 失败，已将损坏的文件重命名", id, e);
+            // 保留损坏的文件，避免下次保存时被空内容覆盖
+            if (!file.renameTo(new File(this.directory, id + ".dat.corrupt"))) {
+                LOGGER.error("无法重命名损坏的背包文件 {}", file);
+            }
+            return new NBTTagCompound();
+        }
+    }
+
+    /**
+     * 等待已提交的快照全部写入完成。
+     *
+     * @throws InterruptedException 等待时被中断
+     */
+    void awaitWrites() throws InterruptedException {
+        this.writer.awaitWrites();
+    }
+
+    private File getFile(UUID id) {
+        return new File(this.directory, id + ".dat");
+    }
+
+    /**
+     * 主世界保存时先写回所有待保存的背包库存，再把背包内容写入文件。
+     *
+     * @param event 世界保存事件
+     */
+    @SubscribeEvent
+    public static void onWorldSave(WorldEvent.Save event) {
+        if (instance != null && !event.getWorld().isRemote && event.getWorld().provider.getDimension() == 0) {
+            BackpackSaveScheduler.flushAll();
+            instance.save();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.backpack.storage;
+
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.nbt.NBTTagCompound;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 背包文件的后台写入器
+ * 服务器线程只提交背包内容的快照，编码、压缩和写入文件都在后台线程完成。
+ * 文件内容为 GZIP 压缩的 {@link BackpackCodec} 编码数据。
+ * 同一个背包在写入前被多次提交时只写入最新的快照。
+ * 写入失败的背包会被记录下来，由服务器线程通过 {@link #drainFailed(Collection)} 取回后重新标记为需要保存。
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class BackpackWriter {
+
+    // 日志记录器
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    // 临时文件的后缀
+    static final String TEMP_SUFFIX = ".dat.tmp";
+
+    // 保存背包文件的目录
+    private final File directory;
+    // 等待写入的快照，每个背包只保留最新的一份
+    private final Map<UUID, NBTTagCompound> pending = new ConcurrentHashMap<>();
+    // 写入失败、需要在下次保存时重新写入的背包
+    private final Queue<UUID> failed = new ConcurrentLinkedQueue<>();
+    // 已提交但还没有写入成功的背包及其未完成的写入任务数，失败的任务在被取回前一直计入
+    private final Map<UUID, Integer> unsaved = new ConcurrentHashMap<>();
+    // 单线程执行器，保证同一个背包的写入按顺序进行
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Backpack Writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public BackpackWriter(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * 提交一个背包内容的快照，快照提交后不能再被修改。
+     *
+     * @param id       背包的 UUID
+     * @param snapshot 背包内容的快照
+     */
+    public void submit(UUID id, NBTTagCompound snapshot) {
+        // 已有等待写入的快照时直接替换，由已提交的任务写入最新内容
+        if (this.pending.put(id, snapshot) == null) {
+            this.unsaved.merge(id, 1, Integer::sum);
+            this.executor.execute(() -> writePending(id));
+        }
+    }
+
+    /**
+     * 检查背包是否有已提交但还没有写入成功的快照。
+     *
+     * @param id 背包的 UUID
+     * @return 如果文件中的内容可能不是最新的则返回true
+     */
+    public boolean hasUnsavedWrites(UUID id) {
+        return this.unsaved.containsKey(id);
+    }
+
+    /**
+     * 取出写入失败的背包。
+     *
+     * @param ids 用于接收写入失败的背包 UUID
+     * @return 如果有写入失败的背包则返回true
+     */
+    public boolean drainFailed(Collection<UUID> ids) {
+        boolean any = false;
+        UUID id;
+        while ((id = this.failed.poll()) != null) {
+            ids.add(id);
+            release(id);
+            any = true;
+        }
+        return any;
+    }
+
+    /**
+     * 等待在此之前提交的快照全部写入完成，后台线程继续运行。
+     *
+     * @throws InterruptedException 等待时被中断
+     */
+    void awaitWrites() throws InterruptedException {
+        try {
+            this.executor.submit(() -> {
+            }).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 等待所有已提交的快照写入完成并停止后台线程。
+     */
+    public void shutdown() {
+        this.executor.shutdown();
+        try {
+            if (!this.executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOGGER.error("等待背包写入超时，仍有 {} 个背包未写入", this.pending.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("等待背包写入时被中断", e);
+        }
+    }
+
+    private void writePending(UUID id) {
+        NBTTagCompound snapshot = this.pending.remove(id);
+        if (snapshot == null || write(id, snapshot)) {
+            release(id);
+        } else {
+            this.failed.add(id);
+        }
+    }
+
+    /**
+     * 一个写入任务成功完成，或者失败的背包已经被服务器线程取回。
+     */
+    private void release(UUID id) {
+        this.unsaved.computeIfPresent(id, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    /**
+     * 先写入临时文件再替换，写入中途被终止时旧文件保持完整。
+     *
+     * @param id       背包的 UUID
+     * @param snapshot 背包内容的快照
+     * @return 如果写入成功则返回true
+     */
+    private boolean write(UUID id, NBTTagCompound snapshot) {
+        if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+            LOGGER.error("无法创建背包存储目录 {}", this.directory);
+            return false;
+        }
+        File file = new File(this.directory, id + ".dat");
+        File temp = new File(this.directory, id + TEMP_SUFFIX);
+        try {
+            byte[] data = BackpackCodec.encode(snapshot);
+            try (OutputStream output = new GZIPOutputStream(new FileOutputStream(temp))) {
+                output.write(data);
+            }
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (IOException e) {
+            LOGGER.error("保存背包 {} 失败，将在下次保存时重试", id, e);
+            if (temp.exists() && !temp.delete()) {
+                LOGGER.error("无法删除临时文件 {}", temp);
+            }
+            return false;
+        }
+    }
+}
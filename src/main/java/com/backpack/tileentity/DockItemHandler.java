@@ -0,0 +1,106 @@
+package com.backpack.tileentity;
+
+import com.backpack.inventory.backpack.BackpackItemHandler;
+import com.backpack.inventory.backpack.InventoryBackpackFunction;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * 背包坞对外提供的 IItemHandler
+ * 槽位 0 是只用于放入的虚拟槽位：放入的物品按记忆槽位、已有物品堆、空槽位的顺序进入背包，
+ * 漏斗从第一个槽位开始尝试放入，因此每次传输只需要一次插入，不需要逐个尝试背包槽位。
+ * 槽位 1 起依次对应背包的槽位，用于取出物品和按槽位放入。
+ * 背包设置了记忆物品时，记忆物品同时作为过滤器，只接受有记忆槽位的物品。
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class DockItemHandler extends BackpackItemHandler {
+
+    // 虚拟放入槽位的数量，背包槽位索引需要加上这个偏移
+    private static final int INPUT_SLOTS = 1;
+
+    private final TileEntityBackpackDock dock;
+
+    public DockItemHandler(TileEntityBackpackDock dock) {
+        // 背包库存由背包坞提供，不需要背包物品堆
+        super(ItemStack.EMPTY);
+        this.dock = dock;
+    }
+
+    @Nullable
+    @Override
+    public InventoryBackpackFunction getInventory() {
+        return this.dock.getInventory();
+    }
+
+    @Override
+    public int getSlots() {
+        InventoryBackpackFunction inventory = getInventory();
+        return inventory != null ? inventory.getSizeInventory() + INPUT_SLOTS : 0;
+    }
+
+    @Override
+    public ItemStack getStackInSlot(int slot) {
+        return slot < INPUT_SLOTS ? ItemStack.EMPTY : super.getStackInSlot(slot - INPUT_SLOTS);
+    }
+
+    @Override
+    public int getSlotLimit(int slot) {
+        return super.getSlotLimit(Math.max(slot - INPUT_SLOTS, 0));
+    }
+
+    @Override
+    public boolean isItemValid(int slot, ItemStack stack) {
+        InventoryBackpackFunction inventory = getInventory();
+        if (inventory == null || !acceptsItem(inventory, stack.getItem())) {
+            return false;
+        }
+        return slot < INPUT_SLOTS || isItemValid(inventory, slot - INPUT_SLOTS, stack.getItem());
+    }
+
+    @Override
+    public ItemStack insertItem(int slot, ItemStack stack, boolean simulate) {
+        InventoryBackpackFunction inventory = getInventory();
+        if (stack.isEmpty() || inventory == null || !acceptsItem(inventory, stack.getItem())) {
+            return stack;
+        }
+        if (slot < INPUT_SLOTS) {
+            return insertItem(stack, simulate);
+        }
+        return insertIntoSlot(inventory, slot - INPUT_SLOTS, stack, simulate);
+    }
+
+    @Override
+    public ItemStack extractItem(int slot, int amount, boolean simulate) {
+        return slot < INPUT_SLOTS ? ItemStack.EMPTY : super.extractItem(slot - INPUT_SLOTS, amount, simulate);
+    }
+
+    @Override
+    public void setStackInSlot(int slot, ItemStack stack) {
+        if (slot >= INPUT_SLOTS) {
+            super.setStackInSlot(slot - INPUT_SLOTS, stack);
+        }
+    }
+
+    /**
+     * 停靠期间背包只在区块保存时写回，第一次修改时标记方块实体，让区块在下次保存时被写入。
+     */
+    @Override
+    protected void onContentsChanged(InventoryBackpackFunction inventory) {
+        if (!inventory.isFlushPending()) {
+            inventory.markDirty();
+            this.dock.markDirty();
+        }
+    }
+
+    /**
+     * 记忆物品作为过滤器：背包没有记忆物品时接受所有物品，否则只接受有记忆槽位的物品。
+     */
+    private static boolean acceptsItem(InventoryBackpackFunction inventory, Item item) {
+        return inventory.getMemorySlots().isEmpty() || !inventory.getMemorySlots(item).isEmpty();
+    }
+}
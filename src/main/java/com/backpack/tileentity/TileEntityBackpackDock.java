@@ -0,0 +1,163 @@
+package com.backpack.tileentity;
+
+import com.backpack.inventory.backpack.InventoryBackpackFunction;
+import com.backpack.item.ItemModBackpack;
+import com.backpack.storage.BackpackInventoryCache;
+import com.backpack.storage.BackpackStore;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.EnumFacing;
+import net.minecraftforge.common.capabilities.Capability;
+import net.minecraftforge.common.util.Constants;
+import net.minecraftforge.items.CapabilityItemHandler;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * 背包坞的方块实体
+ * 放入的背包在停靠期间保持解码状态，漏斗和管道通过 {@link DockItemHandler} 存取背包内容。
+ * 停靠期间的修改只做标记，在取出背包、区块卸载或区块保存时才写回。
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class TileEntityBackpackDock extends TileEntity {
+
+    // 保存停靠背包的 NBT 键名
+    private static final String BACKPACK_TAG = "Backpack";
+
+    // 停靠的背包物品堆
+    private ItemStack backpack = ItemStack.EMPTY;
+    // 停靠背包的库存，第一次使用时获取，停靠期间常驻
+    @Nullable
+    private InventoryBackpackFunction inventory;
+    private final DockItemHandler itemHandler = new DockItemHandler(this);
+
+    /**
+     * 获取停靠的背包物品堆。
+     *
+     * @return 背包物品堆，没有背包时返回空物品堆
+     */
+    public ItemStack getBackpack() {
+        return this.backpack;
+    }
+
+    public boolean hasBackpack() {
+        return !this.backpack.isEmpty();
+    }
+
+    /**
+     * 放入背包。背包坞中已有背包或物品不是背包时不做任何操作。
+     *
+     * @param stack 背包物品堆
+     * @return 如果放入成功则返回true
+     */
+    public boolean insertBackpack(ItemStack stack) {
+        if (hasBackpack() || !(stack.getItem() instanceof ItemModBackpack)) {
+            return false;
+        }
+        this.backpack = stack;
+        this.markDirty();
+        return true;
+    }
+
+    /**
+     * 取出背包，先写回停靠期间的修改。
+     *
+     * @return 背包物品堆，没有背包时返回空物品堆
+     */
+    public ItemStack removeBackpack() {
+        release();
+        ItemStack stack = this.backpack;
+        this.backpack = ItemStack.EMPTY;
+        if (!stack.isEmpty()) {
+            this.markDirty();
+        }
+        return stack;
+    }
+
+    /**
+     * 获取停靠背包的库存，第一次调用时获取并常驻持有，不会被缓存淘汰。
+     * 背包存储可用时使用缓存中的库存，否则直接读写背包物品堆。
+     *
+     * @return 背包库存，没有背包或在客户端时返回 null
+     */
+    @Nullable
+    public InventoryBackpackFunction getInventory() {
+        if (this.inventory == null && hasBackpack() && (this.world == null || !this.world.isRemote)) {
+            BackpackStore store = BackpackStore.get();
+            if (store != null) {
+                this.inventory = BackpackInventoryCache.get(this.backpack, store);
+            } else {
+                this.inventory = new InventoryBackpackFunction(this.backpack);
+                this.inventory.setWriteBack(true);
+            }
+            this.inventory.setHeld(true);
+        }
+        return this.inventory;
+    }
+
+    /**
+     * 写回停靠期间的修改并释放库存，之后由缓存按正常规则管理。
+     */
+    private void release() {
+        if (this.inventory == null) {
+            return;
+        }
+        if (this.inventory.isFlushPending()) {
+            this.inventory.flush();
+        }
+        this.inventory.setHeld(false);
+        this.inventory = null;
+    }
+
+    @Override
+    public void invalidate() {
+        super.invalidate();
+        release();
+    }
+
+    @Override
+    public void onChunkUnload() {
+        release();
+    }
+
+    @Override
+    public void readFromNBT(NBTTagCompound compound) {
+        super.readFromNBT(compound);
+        release();
+        this.backpack = compound.hasKey(BACKPACK_TAG, Constants.NBT.TAG_COMPOUND)
+                ? new ItemStack(compound.getCompoundTag(BACKPACK_TAG)) : ItemStack.EMPTY;
+    }
+
+    /**
+     * 区块保存时调用，先把停靠期间的修改写回。
+     */
+    @Override
+    public NBTTagCompound writeToNBT(NBTTagCompound compound) {
+        super.writeToNBT(compound);
+        if (this.inventory != null && this.inventory.isFlushPending()) {
+            this.inventory.flush();
+        }
+        if (hasBackpack()) {
+            compound.setTag(BACKPACK_TAG, this.backpack.writeToNBT(new NBTTagCompound()));
+        }
+        return compound;
+    }
+
+    @Override
+    public boolean hasCapability(Capability<?> capability, @Nullable EnumFacing facing) {
+        return capability == CapabilityItemHandler.ITEM_HANDLER_CAPABILITY || super.hasCapability(capability, facing);
+    }
+
+    @Nullable
+    @Override
+    public <T> T getCapability(Capability<T> capability, @Nullable EnumFacing facing) {
+        if (capability == CapabilityItemHandler.ITEM_HANDLER_CAPABILITY) {
+            return CapabilityItemHandler.ITEM_HANDLER_CAPABILITY.cast(this.itemHandler);
+        }
+        return super.getCapability(capability, facing);
+    }
+}
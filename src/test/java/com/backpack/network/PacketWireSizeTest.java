@@ -0,0 +1,157 @@
+package com.backpack.network;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.BitSet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 每种背包网络消息编码后的字节数，不包括数据包本身的通道名和编号。
+ */
+public class PacketWireSizeTest {
+
+    @BeforeClass
+    public static void registerBatchable() {
+        // 与 PacketHandler.init 使用同一张编号表，不需要创建网络通道
+        PacketHandler.registerBatchMessages();
+    }
+
+    @Test
+    public void openBackpack() {
+        assertEquals(1, sizeOf(OpenBackpackMessage.of(8)));
+        assertEquals(1, sizeOf(OpenBackpackMessage.of(-1)));
+        assertEquals(1, sizeOf(OpenBackpackMessage.of(40)));
+    }
+
+    @Test
+    public void openSelect() {
+        assertEquals(1, sizeOf(OpenSelectMessage.of(8)));
+    }
+
+    @Test
+    public void selectQuickMove() {
+        assertEquals(0, sizeOf(SelectQuickMove.INSTANCE));
+    }
+
+    @Test
+    public void memorySlot() {
+        // 数量和鼠标按钮共用一个字节，每个槽位只写与前一个槽位的差值
+        assertEquals(2, sizeOf(new MemorySlotMessage(new int[]{5}, 0)));
+        int[] page = new int[36];
+        for (int i = 0; i < page.length; i++) {
+            page[i] = i;
+        }
+        assertEquals(37, sizeOf(new MemorySlotMessage(page, 1)));
+    }
+
+    @Test
+    public void page() {
+        assertEquals(2, sizeOf(new BackpackPageMessage(3, 27)));
+    }
+
+    @Test
+    public void action() {
+        assertEquals(2, sizeOf(new BackpackActionMessage(3, BackpackActionMessage.Action.SORT)));
+    }
+
+    @Test
+    public void search() {
+        // 窗口ID、文本长度和 UTF-8 编码的文本
+        assertEquals(2 + 4, sizeOf(new BackpackSearchMessage(3, "iron")));
+        assertEquals(2, sizeOf(new BackpackSearchMessage(3, "")));
+    }
+
+    @Test
+    public void searchResult() {
+        // 1024 格的背包有 29 页，页码位图最多 4 个字节
+        BitSet pages = new BitSet();
+        pages.set(0);
+        pages.set(28);
+        assertEquals(2 + 4, sizeOf(new BackpackSearchResultMessage(3, pages)));
+        assertEquals(2, sizeOf(new BackpackSearchResultMessage(3, new BitSet())));
+    }
+
+    @Test
+    public void searchResultRoundTrip() {
+        BitSet pages = new BitSet();
+        pages.set(2);
+        pages.set(17);
+        byte[] encoded = encode(new BackpackSearchResultMessage(3, pages));
+        BackpackSearchResultMessage decoded = new BackpackSearchResultMessage();
+        decoded.fromBytes(Unpooled.wrappedBuffer(encoded));
+        assertArrayEquals(encoded, encode(decoded));
+    }
+
+    @Test
+    public void searchIsBatchable() {
+        assertTrue(BackpackBatchMessage.isBatchable(new BackpackSearchMessage(3, "iron")));
+    }
+
+    @Test
+    public void emptySlotSync() {
+        assertEquals(2, sizeOf(new BackpackSlotSyncMessage(3)));
+    }
+
+    @Test
+    public void batch() {
+        // 数量一个字节，每个操作多一个字节的编号
+        BackpackBatchMessage batch = new BackpackBatchMessage()
+                .add(new BackpackPageMessage(3, 1))
+                .add(new BackpackActionMessage(3, BackpackActionMessage.Action.DEPOSIT))
+                .add(new MemorySlotMessage(new int[]{0, 1, 2}, 0));
+        assertEquals(1 + (1 + 2) + (1 + 2) + (1 + 4), sizeOf(batch));
+    }
+
+    @Test
+    public void batchRoundTrip() {
+        BackpackBatchMessage batch = new BackpackBatchMessage()
+                .add(new BackpackPageMessage(3, 6))
+                .add(new MemorySlotMessage(new int[]{4, 9, 35}, 1));
+        byte[] encoded = encode(batch);
+        BackpackBatchMessage decoded = new BackpackBatchMessage();
+        decoded.fromBytes(Unpooled.wrappedBuffer(encoded));
+        assertEquals(2, decoded.size());
+        assertArrayEquals(encoded, encode(decoded));
+    }
+
+    @Test
+    public void openMessagesAreBatchable() {
+        assertTrue(BackpackBatchMessage.isBatchable(OpenBackpackMessage.of(8)));
+        assertTrue(BackpackBatchMessage.isBatchable(OpenSelectMessage.of(8)));
+        assertTrue(BackpackBatchMessage.isBatchable(SelectQuickMove.INSTANCE));
+    }
+
+    @Test
+    public void openBatchRoundTrip() {
+        // 打开背包、打开选择界面和快速移动，编号分别为 0、2、3
+        BackpackBatchMessage batch = new BackpackBatchMessage()
+                .add(OpenBackpackMessage.of(40))
+                .add(OpenSelectMessage.of(-1))
+                .add(SelectQuickMove.INSTANCE);
+        byte[] encoded = encode(batch);
+        assertEquals(1 + (1 + 1) + (1 + 1) + 1, encoded.length);
+        BackpackBatchMessage decoded = new BackpackBatchMessage();
+        decoded.fromBytes(Unpooled.wrappedBuffer(encoded));
+        assertEquals(3, decoded.size());
+        assertArrayEquals(encoded, encode(decoded));
+    }
+
+    private static int sizeOf(IMessage message) {
+        return encode(message).length;
+    }
+
+    private static byte[] encode(IMessage message) {
+        ByteBuf buf = Unpooled.buffer();
+        message.toBytes(buf);
+        byte[] bytes = new byte[buf.readableBytes()];
+        buf.readBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,130 @@
+package com.backpack.network;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.minecraft.init.Blocks;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.init.Enchantments;
+import net.minecraft.init.Items;
+import net.minecraft.item.ItemStack;
+import net.minecraft.network.EnumConnectionState;
+import net.minecraft.network.EnumPacketDirection;
+import net.minecraft.network.Packet;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.network.play.server.SPacketCustomPayload;
+import net.minecraft.network.play.server.SPacketSetSlot;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 背包槽位同步的流量测试。
+ * 对同一组点击脚本，分别按原版每个槽位一个 SPacketSetSlot 和每刻一个 BackpackSlotSyncMessage 计算发送的字节数，
+ * 包括数据包编号、通道名称和帧长度，不包括压缩。结果输出到标准输出，用 gradlew test -i 查看。
+ */
+public class SlotSyncBandwidthTest {
+
+    // 与 PacketHandler.init 中 BackpackSlotSyncMessage 的编号相同
+    private static final int DISCRIMINATOR = 6;
+    private static final int WINDOW_ID = 3;
+    private static final int PAGE_SIZE = 36;
+
+    @BeforeClass
+    public static void bootstrap() {
+        // 物品堆需要原版注册表，必须在访问任何物品之前初始化
+        Bootstrap.register();
+    }
+
+    @Test
+    public void clickScript() throws Exception {
+        List<List<Integer>> ticks = new ArrayList<>();
+        // 潜行点击放入一组物品
+        ticks.add(Arrays.asList(4));
+        // 放入一组与已有物品堆合并，溢出到下一个槽位
+        ticks.add(Arrays.asList(4, 5));
+        // 全部放入，12 个槽位发生变化
+        List<Integer> deposit = new ArrayList<>();
+        for (int i = 10; i < 22; i++) {
+            deposit.add(i);
+        }
+        ticks.add(deposit);
+        // 整理和翻页，整页发生变化
+        List<Integer> page = new ArrayList<>();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            page.add(i);
+        }
+        ticks.add(page);
+        ticks.add(page);
+
+        long vanillaTotal = 0;
+        long syncTotal = 0;
+        for (int tick = 0; tick < ticks.size(); tick++) {
+            List<Integer> changed = ticks.get(tick);
+            long vanilla = 0;
+            BackpackSlotSyncMessage message = new BackpackSlotSyncMessage(WINDOW_ID);
+            for (int slot : changed) {
+                ItemStack stack = stackFor(slot);
+                vanilla += vanillaBytes(slot, stack);
+                message.add(slot, stack);
+            }
+            long sync = syncBytes(message);
+            System.out.printf("tick %d: %d slots, SPacketSetSlot %d bytes, BackpackSlotSyncMessage %d bytes%n",
+                    tick, changed.size(), vanilla, sync);
+            if (changed.size() > 1) {
+                assertTrue(sync < vanilla);
+            }
+            vanillaTotal += vanilla;
+            syncTotal += sync;
+        }
+        System.out.printf("total: SPacketSetSlot %d bytes, BackpackSlotSyncMessage %d bytes (%.1f%%)%n",
+                vanillaTotal, syncTotal, 100.0 * syncTotal / vanillaTotal);
+        assertTrue(syncTotal < vanillaTotal);
+    }
+
+    /**
+     * 脚本中槽位的内容：大多数是普通物品堆，每 9 个槽位中有一个带附魔和名称的物品。
+     */
+    private static ItemStack stackFor(int slot) {
+        if (slot % 9 == 8) {
+            ItemStack sword = new ItemStack(Items.DIAMOND_SWORD);
+            sword.addEnchantment(Enchantments.SHARPNESS, 5);
+            sword.addEnchantment(Enchantments.UNBREAKING, 3);
+            sword.setStackDisplayName("Sword " + slot);
+            return sword;
+        }
+        return new ItemStack(slot % 2 == 0 ? Blocks.COBBLESTONE : Blocks.DIRT, 1 + slot);
+    }
+
+    /**
+     * 原版为一个槽位发送的 SPacketSetSlot 的字节数。
+     */
+    private static int vanillaBytes(int slot, ItemStack stack) throws Exception {
+        return frameBytes(new SPacketSetSlot(WINDOW_ID, slot, stack));
+    }
+
+    /**
+     * 一个 BackpackSlotSyncMessage 在模组通道上的字节数，FML 在消息前写入一个字节的编号。
+     */
+    private static int syncBytes(BackpackSlotSyncMessage message) throws Exception {
+        ByteBuf payload = Unpooled.buffer();
+        payload.writeByte(DISCRIMINATOR);
+        message.toBytes(payload);
+        return frameBytes(new SPacketCustomPayload(PacketHandler.CHANNEL_NAME, new PacketBuffer(payload)));
+    }
+
+    /**
+     * 数据包在连接上的字节数：帧长度、数据包编号和数据包内容。
+     */
+    private static int frameBytes(Packet<?> packet) throws Exception {
+        PacketBuffer buf = new PacketBuffer(Unpooled.buffer());
+        packet.writePacketData(buf);
+        int id = EnumConnectionState.PLAY.getPacketId(EnumPacketDirection.CLIENTBOUND, packet);
+        int frame = PacketBuffer.getVarIntSize(id) + buf.readableBytes();
+        return PacketBuffer.getVarIntSize(frame) + frame;
+    }
+}
@@ -0,0 +1,128 @@
+package com.backpack.storage;
+
+import net.minecraft.nbt.NBTTagCompound;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 背包存储的写入和恢复测试。
+ */
+public class BackpackStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * 写入中途被终止时只留下临时文件，重新打开存储时删除临时文件，旧文件保持完整。
+     */
+    @Test
+    public void interruptedWriteKeepsOldFile() throws Exception {
+        File directory = folder.newFolder("backpacks");
+        UUID id = UUID.randomUUID();
+        BackpackStore store = new BackpackStore(directory);
+        store.getContents(id).setInteger("Value", 1);
+        store.markDirty(id);
+        store.save();
+        store.awaitWrites();
+
+        // 模拟写入器在写入新内容时被终止
+        File temp = new File(directory, id + BackpackWriter.TEMP_SUFFIX);
+        try (OutputStream output = new FileOutputStream(temp)) {
+            output.write(new byte[]{0x1f, (byte) 0x8b, 0x08});
+        }
+
+        BackpackStore reopened = new BackpackStore(directory);
+        assertFalse("未完成的临时文件应被删除", temp.exists());
+        assertEquals(1, reopened.getContents(id).getInteger("Value"));
+    }
+
+    /**
+     * 写入失败的背包在下次保存时重新写入，不需要再次被修改。
+     */
+    @Test
+    public void failedWriteIsRetried() throws Exception {
+        File directory = folder.newFolder("backpacks");
+        UUID id = UUID.randomUUID();
+        // 用非空目录占据背包文件的位置，替换文件时会失败
+        File blocker = new File(directory, id + ".dat");
+        assertTrue(blocker.mkdir());
+        assertTrue(new File(blocker, "lock").createNewFile());
+
+        BackpackStore store = new BackpackStore(directory);
+        NBTTagCompound contents = store.getContents(id);
+        contents.setInteger("Value", 2);
+        store.markDirty(id);
+        store.save();
+        store.awaitWrites();
+        assertTrue("写入应该失败", blocker.isDirectory());
+        assertFalse("失败的写入不应留下临时文件", new File(directory, id + BackpackWriter.TEMP_SUFFIX).exists());
+
+        delete(blocker);
+        store.save();
+        store.awaitWrites();
+        assertTrue(blocker.isFile());
+        assertEquals(2, new BackpackStore(directory).getContents(id).getInteger("Value"));
+    }
+
+    /**
+     * 写入成功后不再重复写入。
+     */
+    @Test
+    public void successfulWriteIsNotRepeated() throws Exception {
+        File directory = folder.newFolder("backpacks");
+        UUID id = UUID.randomUUID();
+        BackpackStore store = new BackpackStore(directory);
+        store.getContents(id).setInteger("Value", 3);
+        store.markDirty(id);
+        store.save();
+        store.awaitWrites();
+
+        File file = new File(directory, id + ".dat");
+        assertTrue(file.setLastModified(0L));
+        store.save();
+        store.awaitWrites();
+        assertEquals(0L, file.lastModified());
+    }
+
+    /**
+     * 写入完成后的下一次保存把背包内容移出内存，再次获取时从文件读取同样的内容。
+     */
+    @Test
+    public void savedContentsAreEvicted() throws Exception {
+        File directory = folder.newFolder("backpacks");
+        UUID id = UUID.randomUUID();
+        BackpackStore store = new BackpackStore(directory);
+        NBTTagCompound contents = store.getContents(id);
+        contents.setInteger("Value", 4);
+        store.markDirty(id);
+        store.save();
+        store.awaitWrites();
+        store.save();
+        NBTTagCompound reloaded = store.getContents(id);
+        assertNotSame(contents, reloaded);
+        assertEquals(4, reloaded.getInteger("Value"));
+    }
+
+    private static void delete(File directory) throws IOException {
+        File[] children = directory.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                Files.delete(child.toPath());
+            }
+        }
+        Files.delete(directory.toPath());
+    }
+}
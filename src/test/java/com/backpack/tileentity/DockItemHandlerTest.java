@@ -0,0 +1,112 @@
+package com.backpack.tileentity;
+
+import com.backpack.inventory.backpack.InventoryBackpackFunction;
+import com.backpack.register.RegisterItem;
+import net.minecraft.init.Blocks;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.item.ItemStack;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 背包坞虚拟放入槽位的测试。
+ * 背包坞不在世界中、服务器存储不可用，背包内容直接读写背包物品堆，与没有存储时的背包坞相同。
+ */
+public class DockItemHandlerTest {
+
+    private TileEntityBackpackDock dock;
+    private DockItemHandler handler;
+    private InventoryBackpackFunction inventory;
+
+    @BeforeClass
+    public static void bootstrap() {
+        // 物品堆需要原版注册表，必须在访问任何物品之前初始化
+        Bootstrap.register();
+    }
+
+    @Before
+    public void setUp() {
+        this.dock = new TileEntityBackpackDock();
+        assertTrue(this.dock.insertBackpack(new ItemStack(RegisterItem.backpack)));
+        this.handler = new DockItemHandler(this.dock);
+        this.inventory = this.dock.getInventory();
+    }
+
+    @Test
+    public void slotsAreOffsetByInputSlot() {
+        assertEquals(this.inventory.getSizeInventory() + 1, this.handler.getSlots());
+        this.inventory.setInventorySlotContents(0, new ItemStack(Blocks.DIRT, 5));
+        assertTrue(this.handler.getStackInSlot(0).isEmpty());
+        assertEquals(5, this.handler.getStackInSlot(1).getCount());
+        // 虚拟放入槽位不能取出物品
+        assertTrue(this.handler.extractItem(0, 64, false).isEmpty());
+        assertEquals(5, this.handler.extractItem(1, 64, false).getCount());
+    }
+
+    @Test
+    public void inputSlotFillsEmptyBackpack() {
+        ItemStack remainder = this.handler.insertItem(0, new ItemStack(Blocks.COBBLESTONE, 64), false);
+        assertTrue(remainder.isEmpty());
+        assertEquals(64, this.inventory.getStackInSlot(0).getCount());
+        // 虚拟放入槽位本身始终为空，漏斗下一次仍然从它开始尝试
+        assertTrue(this.handler.getStackInSlot(0).isEmpty());
+    }
+
+    @Test
+    public void inputSlotMergesIntoExistingStack() {
+        this.inventory.setInventorySlotContents(5, new ItemStack(Blocks.COBBLESTONE, 10));
+        assertTrue(this.handler.insertItem(0, new ItemStack(Blocks.COBBLESTONE, 20), false).isEmpty());
+        assertEquals(30, this.inventory.getStackInSlot(5).getCount());
+        assertTrue(this.inventory.getStackInSlot(0).isEmpty());
+    }
+
+    @Test
+    public void simulatedInsertDoesNotChangeBackpack() {
+        assertTrue(this.handler.insertItem(0, new ItemStack(Blocks.COBBLESTONE, 64), true).isEmpty());
+        for (int i = 0; i < this.inventory.getSizeInventory(); i++) {
+            assertTrue(this.inventory.getStackInSlot(i).isEmpty());
+        }
+    }
+
+    @Test
+    public void memoryItemsFilterInput() {
+        this.inventory.setMemoryItem(3, new ItemStack(Blocks.DIRT));
+        ItemStack cobblestone = new ItemStack(Blocks.COBBLESTONE, 8);
+        assertFalse(this.handler.isItemValid(0, cobblestone));
+        assertSame(cobblestone, this.handler.insertItem(0, cobblestone, false));
+
+        assertTrue(this.handler.insertItem(0, new ItemStack(Blocks.DIRT, 8), false).isEmpty());
+        assertEquals(8, this.inventory.getStackInSlot(3).getCount());
+    }
+
+    @Test
+    public void fullBackpackReturnsRemainder() {
+        for (int i = 0; i < this.inventory.getSizeInventory(); i++) {
+            this.inventory.setInventorySlotContents(i, new ItemStack(Blocks.COBBLESTONE, 63));
+        }
+        int size = this.inventory.getSizeInventory();
+        ItemStack remainder = this.handler.insertItem(0, new ItemStack(Blocks.COBBLESTONE, size + 5), false);
+        assertEquals(5, remainder.getCount());
+        for (int i = 0; i < size; i++) {
+            assertEquals(64, this.inventory.getStackInSlot(i).getCount());
+        }
+    }
+
+    @Test
+    public void hopperTransfersAreWrittenBackOnRemoval() {
+        // 漏斗每次只传输一个物品
+        for (int i = 0; i < 100; i++) {
+            assertTrue(this.handler.insertItem(0, new ItemStack(Blocks.COBBLESTONE), false).isEmpty());
+        }
+        ItemStack backpack = this.dock.removeBackpack();
+        InventoryBackpackFunction reloaded = new InventoryBackpackFunction(backpack);
+        assertEquals(64, reloaded.getStackInSlot(0).getCount());
+        assertEquals(36, reloaded.getStackInSlot(1).getCount());
+    }
+}